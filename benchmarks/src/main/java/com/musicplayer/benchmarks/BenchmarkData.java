@@ -0,0 +1,63 @@
+package com.musicplayer.benchmarks;
+
+import com.musicplayer.model.Song;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Deterministic fixtures shared by the suites, so runs on different builds measure the same input
+final class BenchmarkData {
+
+    static final long SEED = 42L;
+
+    private static final String[] ARTISTS = {
+            "Beyoncé", "Sigur Rós", "Daft Punk", "Björk", "The Beatles", "Mötley Crüe", "Radiohead", "Adele"
+    };
+    private static final String[] WORDS = {
+            "love", "night", "river", "fire", "dream", "light", "heart", "road", "sky", "gold", "rain", "echo"
+    };
+
+    private BenchmarkData() {
+    }
+
+    static List<File> files(File directory, int count) {
+        Random random = new Random(SEED);
+        List<File> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String artist = ARTISTS[random.nextInt(ARTISTS.length)];
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            files.add(new File(directory, artist + " - " + title + ".mp3"));
+        }
+        return files;
+    }
+
+    static List<Song> songs(int count) {
+        List<Song> songs = new ArrayList<>(count);
+        for (File file : files(new File("/music"), count)) {
+            songs.add(new Song(file));
+        }
+        return songs;
+    }
+
+    static String lrc(int lines) {
+        Random random = new Random(SEED);
+        StringBuilder sb = new StringBuilder();
+        sb.append("[ar:Benchmark]\n[ti:Synthetic]\n");
+        for (int i = 0; i < lines; i++) {
+            int centis = i * 350;
+            sb.append(String.format("[%02d:%02d.%02d]", centis / 6000, (centis / 100) % 60, centis % 100));
+            for (int w = 0; w < 6; w++) {
+                // Every other line carries enhanced-LRC word timings
+                if (i % 2 == 1) {
+                    int word = centis + w * 50;
+                    sb.append(String.format("<%02d:%02d.%02d>", word / 6000, (word / 100) % 60, word % 100));
+                }
+                sb.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
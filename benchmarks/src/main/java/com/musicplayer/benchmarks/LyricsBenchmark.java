@@ -0,0 +1,75 @@
+package com.musicplayer.benchmarks;
+
+import com.musicplayer.model.LyricTimeline;
+import com.musicplayer.services.LrcParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LyricsBenchmark {
+
+    @Param({"60", "5000"})
+    public int lines;
+
+    private String lrc;
+    private Path lrcFile;
+    private LyricTimeline timeline;
+    private double position;
+    private double end;
+
+    @Setup
+    public void setUp() throws IOException {
+        lrc = BenchmarkData.lrc(lines);
+        lrcFile = Files.createTempFile("bench", ".lrc");
+        Files.write(lrcFile, lrc.getBytes(StandardCharsets.UTF_8));
+        timeline = LrcParser.parse(lrc);
+        end = timeline.timeAt(timeline.size() - 1) + 5;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(lrcFile);
+    }
+
+    @Benchmark
+    public LyricTimeline parseLrc() {
+        return LrcParser.parse(lrc);
+    }
+
+    // Includes the channel read and charset detection, as when opening a song's .lrc
+    @Benchmark
+    public LyricTimeline parseLrcFile() throws IOException {
+        return LrcParser.parse(lrcFile);
+    }
+
+    // One playback tick: what LyricsController.highlightCurrentLyric does before touching the UI
+    @Benchmark
+    public int timelineLookup() {
+        position += 0.1;
+        if (position > end) {
+            position = 0;
+        }
+        return timeline.closestIndex(position + 0.3, 1.0);
+    }
+}
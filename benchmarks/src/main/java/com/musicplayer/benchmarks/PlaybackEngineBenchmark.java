@@ -0,0 +1,99 @@
+package com.musicplayer.benchmarks;
+
+import com.musicplayer.model.Song;
+import com.musicplayer.services.AudioService;
+import com.musicplayer.services.PlaybackEngine;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Queue navigation with a no-op player, i.e. the engine's own cost per user action
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PlaybackEngineBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean shuffle;
+
+    private PlaybackEngine engine;
+    private List<Song> songs;
+    private int[] picks;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ObservableList<Song> queue = FXCollections.observableArrayList(BenchmarkData.songs(size));
+        songs = queue;
+        engine = new PlaybackEngine(queue, new SilentPlayer());
+        Random random = new Random(BenchmarkData.SEED);
+        picks = new int[4096];
+        for (int i = 0; i < picks.length; i++) {
+            picks[i] = random.nextInt(size);
+        }
+        engine.playAt(0);
+        engine.setShuffle(shuffle);
+    }
+
+    // Clicking a song in the list: finding its queue position used to be an indexOf scan
+    @Benchmark
+    public int playSelected() {
+        next = (next + 1) & 4095;
+        engine.play(songs.get(picks[next]));
+        return engine.getCurrentPosition();
+    }
+
+    @Benchmark
+    public int skipNext() {
+        engine.next();
+        return engine.getCurrentPosition();
+    }
+
+    @Benchmark
+    public int skipPrevious() {
+        engine.previous();
+        return engine.getCurrentPosition();
+    }
+
+    @Benchmark
+    public List<Song> upcoming() {
+        return engine.upcoming(3);
+    }
+
+    // Pressing the shuffle button twice; used to be an in-place shuffle of the whole list
+    @Benchmark
+    public boolean toggleShuffle() {
+        engine.setShuffle(!engine.isShuffle());
+        engine.setShuffle(!engine.isShuffle());
+        return engine.isShuffle();
+    }
+
+    private static final class SilentPlayer implements PlaybackEngine.Player {
+        @Override public void setPlaybackListener(AudioService.PlaybackListener listener) { }
+        @Override public void loadSong(Song song) { }
+        @Override public void play() { }
+        @Override public void pause() { }
+        @Override public void stop() { }
+        @Override public void restart() { }
+    }
+}
@@ -0,0 +1,44 @@
+package com.musicplayer.benchmarks;
+
+import com.musicplayer.model.Playlist;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PlaylistBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<File> files;
+
+    @Setup
+    public void createFiles() {
+        files = BenchmarkData.files(new File("/music"), size);
+    }
+
+    @Benchmark
+    public Playlist addSongs() {
+        Playlist playlist = new Playlist("bench");
+        playlist.addSongs(files);
+        return playlist;
+    }
+}
@@ -0,0 +1,93 @@
+package com.musicplayer.benchmarks;
+
+import com.musicplayer.model.Song;
+import com.musicplayer.services.PlaylistFiles;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Saving and re-loading a playlist whose entries exist on disk (load checks every entry)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaylistFileBenchmark {
+
+    @Param({"1000", "20000"})
+    public int size;
+
+    private Path directory;
+    private File playlistFile;
+    private File nativeFile;
+    private List<Song> songs;
+    private List<PlaylistFiles.Entry> entries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("playlist-bench");
+        songs = new ArrayList<>(size);
+        for (File file : BenchmarkData.files(directory.toFile(), size)) {
+            Files.createFile(file.toPath());
+            songs.add(new Song(file));
+        }
+        playlistFile = directory.resolve("playlist.txt").toFile();
+        PlaylistFiles.saveText(songs, playlistFile);
+        entries = PlaylistFiles.snapshot(songs);
+        nativeFile = directory.resolve("playlist.mpl").toFile();
+        PlaylistFiles.save(entries, nativeFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        PlaylistFiles.saveText(songs, playlistFile);
+        return playlistFile;
+    }
+
+    @Benchmark
+    public List<File> load() throws IOException {
+        return PlaylistFiles.loadText(playlistFile);
+    }
+
+    @Benchmark
+    public File saveNative() throws IOException {
+        PlaylistFiles.save(entries, nativeFile);
+        return nativeFile;
+    }
+
+    // Parsing only; the existence checks happen in LibraryImporter.importPlaylistAsync
+    @Benchmark
+    public int readNative() throws IOException {
+        int[] count = new int[1];
+        PlaylistFiles.read(nativeFile, entry -> count[0]++);
+        return count[0];
+    }
+}
@@ -0,0 +1,62 @@
+package com.musicplayer.benchmarks;
+
+import com.musicplayer.model.Song;
+import com.musicplayer.services.SearchIndex;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Re-filtering the playlist for one keystroke, as updatePlaylistFilter does
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"r", "riv", "river ni"})
+    public String query;
+
+    private FilteredList<Song> filtered;
+    private SearchIndex index;
+
+    @Setup
+    public void setUp() {
+        ObservableList<Song> songs = FXCollections.observableArrayList(BenchmarkData.songs(size));
+        filtered = new FilteredList<>(songs, s -> true);
+        index = new SearchIndex(songs);
+    }
+
+    @Benchmark
+    public int lowerCasePredicate() {
+        String lowerCaseFilter = query.toLowerCase();
+        filtered.setPredicate(song -> song.getTitle().toLowerCase().contains(lowerCaseFilter)
+                || song.getArtist().toLowerCase().contains(lowerCaseFilter));
+        return filtered.size();
+    }
+
+    @Benchmark
+    public int searchIndex() {
+        // Alternate with the empty query so every invocation starts from a cold (non-refinement) search
+        index.search("");
+        filtered.setPredicate(index.search(query));
+        return filtered.size();
+    }
+}
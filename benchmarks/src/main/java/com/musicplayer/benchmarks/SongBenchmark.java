@@ -0,0 +1,46 @@
+package com.musicplayer.benchmarks;
+
+import com.musicplayer.model.Song;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SongBenchmark {
+
+    private List<File> files;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        files = BenchmarkData.files(new File("/music"), 4096);
+    }
+
+    @Benchmark
+    public Song construct() {
+        next = (next + 1) & 4095;
+        return new Song(files.get(next));
+    }
+
+    @Benchmark
+    public Song hydrate() {
+        next = (next + 1) & 4095;
+        return new Song(files.get(next), "Title", "Artist", "Album", 215_000L);
+    }
+}
@@ -0,0 +1,260 @@
+package com.musicplayer.controller;
+
+import com.musicplayer.model.LyricTimeline;
+import javafx.animation.Interpolator;
+import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.animation.Timeline;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.layout.Region;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Virtualized lyrics list. Line heights are measured off-screen into a prefix-sum array whenever the
+ * lyrics, width or font change; only the lines inside the viewport are backed by (recycled) labels,
+ * so a transcript with thousands of lines costs no more scene graph than a short song.
+ *
+ * <p>Lines are styled through the usual {@code lyric-line} CSS class; a hidden probe label carrying it
+ * tells the measuring code which font the theme uses. The active line is scrolled to, not restyled.
+ */
+public class LyricsView extends Region {
+
+    private static final double SPACING = 8;
+    private static final double PADDING = 12;
+    private static final Duration SCROLL_DURATION = Duration.millis(400);
+
+    private LyricTimeline timeline = LyricTimeline.EMPTY;
+    private int activeIndex = -1;
+
+    // lineTops[i] is the y of line i in content coordinates; lineTops[size] is the content height
+    private double[] lineTops = {0};
+    private double measuredWidth = -1;
+    private boolean measureDirty = true;
+
+    private final DoubleProperty scrollY = new SimpleDoubleProperty(this, "scrollY");
+    private Timeline scrollAnimation;
+
+    private final List<Label> pool = new ArrayList<>();
+    private final List<Label> visibleLabels = new ArrayList<>();
+
+    private final Label fontProbe = createProbe("lyric-line");
+    private final Text measureText = new Text();
+    private final Label placeholder = new Label();
+    private final ScrollBar scrollBar = new ScrollBar();
+
+    public LyricsView() {
+        getStyleClass().add("lyrics-view");
+        Rectangle clip = new Rectangle();
+        clip.widthProperty().bind(widthProperty());
+        clip.heightProperty().bind(heightProperty());
+        setClip(clip);
+
+        placeholder.getStyleClass().add("instruction");
+        placeholder.setWrapText(true);
+        placeholder.setAlignment(Pos.CENTER);
+        placeholder.setTextAlignment(TextAlignment.CENTER);
+
+        scrollBar.setOrientation(Orientation.VERTICAL);
+        scrollBar.setMin(0);
+        scrollBar.valueProperty().bindBidirectional(scrollY);
+
+        getChildren().addAll(fontProbe, placeholder, scrollBar);
+        fontProbe.fontProperty().addListener((obs, oldFont, newFont) -> invalidateMeasurements());
+        scrollY.addListener((obs, oldValue, newValue) -> requestLayout());
+
+        setOnScroll(event -> {
+            stopScrollAnimation();
+            setScrollY(scrollY.get() - event.getDeltaY());
+            event.consume();
+        });
+    }
+
+    private static Label createProbe(String... styleClasses) {
+        Label probe = new Label("X");
+        probe.getStyleClass().addAll(styleClasses);
+        probe.setManaged(false);
+        probe.setVisible(false);
+        return probe;
+    }
+
+    public void setLyrics(LyricTimeline lyrics) {
+        stopScrollAnimation();
+        timeline = lyrics == null ? LyricTimeline.EMPTY : lyrics;
+        activeIndex = -1;
+        placeholder.setVisible(false);
+        scrollY.set(0);
+        invalidateMeasurements();
+    }
+
+    public void showPlaceholder(String text) {
+        setLyrics(LyricTimeline.EMPTY);
+        placeholder.setText(text);
+        placeholder.setVisible(true);
+    }
+
+    /** Smoothly scrolls the given line (-1 for none) to the middle of the view. */
+    public void setActiveIndex(int index) {
+        if (index == activeIndex) {
+            return;
+        }
+        activeIndex = index;
+        if (index >= 0) {
+            ensureMeasured();
+            scrollToCenter(index);
+        }
+    }
+
+    private void scrollToCenter(int index) {
+        double lineCenter = (lineTops[index] + lineTops[index + 1] - SPACING) / 2;
+        double target = clampScroll(lineCenter - getHeight() / 2);
+
+        stopScrollAnimation();
+        // Only scroll if the target is significantly different to avoid jitter
+        if (Math.abs(scrollY.get() - target) > 0.5) {
+            scrollAnimation = new Timeline(new KeyFrame(SCROLL_DURATION,
+                    new KeyValue(scrollY, target, Interpolator.EASE_OUT)));
+            scrollAnimation.play();
+        }
+    }
+
+    private void stopScrollAnimation() {
+        if (scrollAnimation != null) {
+            scrollAnimation.stop();
+            scrollAnimation = null;
+        }
+    }
+
+    private void setScrollY(double value) {
+        scrollY.set(clampScroll(value));
+    }
+
+    private double clampScroll(double value) {
+        double max = Math.max(0, lineTops[lineTops.length - 1] + 2 * PADDING - getHeight());
+        return Math.max(0, Math.min(max, value));
+    }
+
+    private void invalidateMeasurements() {
+        measureDirty = true;
+        requestLayout();
+    }
+
+    private double textWidth() {
+        return Math.max(1, getWidth() - 2 * PADDING - scrollBarWidth());
+    }
+
+    private double scrollBarWidth() {
+        return scrollBar.isVisible() ? scrollBar.prefWidth(-1) : 0;
+    }
+
+    private void ensureMeasured() {
+        double width = textWidth();
+        if (!measureDirty && width == measuredWidth) {
+            return;
+        }
+        measureDirty = false;
+        measuredWidth = width;
+
+        measureText.setFont(fontProbe.getFont());
+        measureText.setWrappingWidth(width);
+        int size = timeline.size();
+        if (lineTops.length != size + 1) {
+            lineTops = new double[size + 1];
+        }
+        for (int i = 0; i < size; i++) {
+            measureText.setText(timeline.lineAt(i).isEmpty() ? " " : timeline.lineAt(i));
+            lineTops[i + 1] = lineTops[i] + Math.ceil(measureText.getLayoutBounds().getHeight()) + SPACING;
+        }
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        double height = getHeight();
+
+        placeholder.resizeRelocate(PADDING, PADDING, Math.max(0, width - 2 * PADDING), Math.max(0, height - 2 * PADDING));
+
+        ensureMeasured();
+        double contentHeight = lineTops[lineTops.length - 1] + 2 * PADDING;
+        boolean overflow = contentHeight > height && !timeline.isEmpty();
+        if (overflow != scrollBar.isVisible()) {
+            scrollBar.setVisible(overflow);
+            ensureMeasured(); // the text width just changed
+            contentHeight = lineTops[lineTops.length - 1] + 2 * PADDING;
+        }
+        if (overflow) {
+            double barWidth = scrollBar.prefWidth(-1);
+            scrollBar.resizeRelocate(width - barWidth, 0, barWidth, height);
+            scrollBar.setMax(contentHeight - height);
+            scrollBar.setVisibleAmount(height);
+        }
+        double scroll = clampScroll(scrollY.get());
+        if (scroll != scrollY.get() && scrollAnimation == null) {
+            scrollY.set(scroll);
+        }
+
+        layoutVisibleLines(scroll, height);
+    }
+
+    private void layoutVisibleLines(double scroll, double height) {
+        int size = timeline.size();
+        int first = size == 0 ? 0 : Math.max(0, lineAtY(scroll - PADDING));
+        int last = first;
+        while (last < size && lineTops[last] + PADDING < scroll + height) {
+            last++;
+        }
+
+        // Recycle labels that scrolled out of view, then bind the rest to the visible lines
+        int count = last - first;
+        while (visibleLabels.size() > count) {
+            Label label = visibleLabels.remove(visibleLabels.size() - 1);
+            label.setVisible(false);
+            pool.add(label);
+        }
+        while (visibleLabels.size() < count) {
+            visibleLabels.add(obtainLabel());
+        }
+
+        double x = PADDING;
+        double width = measuredWidth;
+        for (int i = 0; i < count; i++) {
+            int index = first + i;
+            Label label = visibleLabels.get(i);
+            label.setText(timeline.lineAt(index));
+            double top = lineTops[index] + PADDING - scroll;
+            label.resizeRelocate(x, top, width, lineTops[index + 1] - lineTops[index] - SPACING);
+            label.setVisible(true);
+        }
+    }
+
+    // Last line whose top is at or above y
+    private int lineAtY(double y) {
+        int found = Arrays.binarySearch(lineTops, 0, timeline.size(), y);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private Label obtainLabel() {
+        if (!pool.isEmpty()) {
+            return pool.remove(pool.size() - 1);
+        }
+        Label label = new Label();
+        label.getStyleClass().add("lyric-line");
+        label.setWrapText(true);
+        label.setAlignment(Pos.CENTER);
+        label.setTextAlignment(TextAlignment.CENTER);
+        label.setManaged(false);
+        getChildren().add(label);
+        return label;
+    }
+}
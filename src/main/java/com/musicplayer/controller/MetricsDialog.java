@@ -0,0 +1,75 @@
+package com.musicplayer.controller;
+
+import com.musicplayer.services.Metrics;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.event.ActionEvent;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Modality;
+import javafx.stage.Window;
+import javafx.util.Duration;
+
+import java.io.IOException;
+
+/** Live view of {@link Metrics}, refreshed every second while open. */
+class MetricsDialog extends Dialog<Void> {
+
+    private static final ButtonType RESET = new ButtonType("Reset", ButtonBar.ButtonData.LEFT);
+    private static final ButtonType SAVE = new ButtonType("Save to File", ButtonBar.ButtonData.LEFT);
+
+    private final TextArea report = new TextArea();
+    private final Label status = new Label();
+    private final Timeline refresher = new Timeline(new KeyFrame(Duration.seconds(1), event -> refresh()));
+
+    MetricsDialog(Window owner) {
+        initOwner(owner);
+        initModality(Modality.NONE);
+        setTitle("Performance Metrics");
+        setResizable(true);
+
+        report.setEditable(false);
+        report.setStyle("-fx-font-family: monospace;");
+        report.setPrefColumnCount(90);
+        report.setPrefRowCount(24);
+        VBox.setVgrow(report, Priority.ALWAYS);
+        getDialogPane().setContent(new VBox(8, report, status));
+        getDialogPane().getButtonTypes().addAll(RESET, SAVE, ButtonType.CLOSE);
+
+        // Reset and Save act in place instead of closing the dialog
+        ((Button) getDialogPane().lookupButton(RESET)).addEventFilter(ActionEvent.ACTION, event -> {
+            event.consume();
+            Metrics.reset();
+            refresh();
+        });
+        ((Button) getDialogPane().lookupButton(SAVE)).addEventFilter(ActionEvent.ACTION, event -> {
+            event.consume();
+            try {
+                status.setText("Saved to " + Metrics.dump());
+            } catch (IOException e) {
+                status.setText("Could not save metrics: " + e.getMessage());
+            }
+        });
+
+        refresher.setCycleCount(Animation.INDEFINITE);
+        setOnShown(event -> refresher.play());
+        setOnHidden(event -> refresher.stop());
+        refresh();
+    }
+
+    private void refresh() {
+        report.setText(Metrics.report());
+        if (!Metrics.isActive()) {
+            status.setText("Recording is off: turn on Diagnostics > Record Metrics.");
+        } else if (status.getText().startsWith("Recording is off")) {
+            status.setText("");
+        }
+    }
+}
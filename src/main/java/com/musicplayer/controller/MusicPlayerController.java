@@ -2,37 +2,63 @@ package com.musicplayer.controller;
 
 import com.musicplayer.model.Playlist;
 import com.musicplayer.model.Song;
+import com.musicplayer.services.AlbumArtService;
+import com.musicplayer.services.AppPaths;
 import com.musicplayer.services.AudioService;
+import com.musicplayer.services.DuplicateDetector;
+import com.musicplayer.services.LibraryCatalog;
+import com.musicplayer.services.LibraryImporter;
+import com.musicplayer.services.LibraryWatcher;
 import com.musicplayer.services.LyricsService;
+import com.musicplayer.services.Metrics;
+import com.musicplayer.services.MetadataService;
+import com.musicplayer.services.LibraryIndex;
+import com.musicplayer.services.PlayHistory;
+import com.musicplayer.services.PlaybackEngine;
+import com.musicplayer.services.PlaylistFiles;
+import com.musicplayer.services.SearchIndex;
+import com.musicplayer.services.SmartPlaylist;
+import com.musicplayer.services.SmartQuery;
+import com.musicplayer.services.WaveformService;
+import javafx.animation.PauseTransition;
+import javafx.collections.ListChangeListener;
 import javafx.collections.transformation.FilteredList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
+import javafx.geometry.Pos;
 import javafx.scene.control.*;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.DragEvent;
 import javafx.scene.input.Dragboard;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
-import javafx.scene.input.MouseEvent;
 import javafx.scene.input.TransferMode;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.util.Duration;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.URL;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 import javafx.scene.Parent;
 import javafx.application.Platform;
 
@@ -49,7 +75,7 @@ public class MusicPlayerController implements Initializable {
     @FXML
     private Label totalTimeLabel;
     @FXML
-    private Slider progressSlider;
+    private WaveformSeekBar seekBar;
     @FXML
     private Slider volumeSlider;
     @FXML
@@ -73,26 +99,51 @@ public class MusicPlayerController implements Initializable {
     @FXML
     private ToggleButton showFavoritesButton;
     @FXML
+    private ComboBox<SmartPlaylist> smartPlaylistBox;
+    @FXML
     private ToggleButton shuffleButton;
     @FXML
     private Button repeatButton;
     @FXML
     private CheckMenuItem themeMenuItem;
+    @FXML
+    private CheckMenuItem metricsMenuItem;
 
     private Playlist playlist;
     private FilteredList<Song> filteredPlaylist;
     private AudioService audioService;
+    private PlaybackEngine playbackEngine;
     private LyricsService lyricsService;
     private LyricsController lyricsController;
+    private LibraryCatalog libraryCatalog;
+    // Catalog writes run here, one at a time, so track changes never wait on the disk
+    private final ExecutorService catalogWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private LibraryImporter libraryImporter;
+    private MetadataService metadataService;
+    private SearchIndex searchIndex;
+    private PlayHistory playHistory;
+    private LibraryIndex libraryIndex;
+    // Favorites toggle and smart playlist as one bitset query, and the ids it currently lets through
+    private SmartQuery activeFilter;
+    private BitSet visibleIds;
+    private Predicate<Song> matchesSearch = song -> true;
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(150));
+    private AlbumArtService albumArtService;
+    private WaveformService waveformService;
+    private DuplicateDetector duplicateDetector;
+    private LibraryWatcher libraryWatcher;
+
+    private static final int LYRICS_PREFETCH_COUNT = 3;
+    private static final int MAX_LISTED_DUPLICATES = 500;
+    private static final long FX_STALL_THRESHOLD_MILLIS = 50;
+    private static final Metrics.Histogram SEARCH_FILTER = Metrics.timer("search.filter");
+    private MetricsDialog metricsDialog;
 
-    private int currentSongIndex = -1;
     private boolean isMuted = false;
-    private boolean isShuffle = false;
-    
-    private enum RepeatMode {
-        NONE, ALL, ONE
-    }
-    private RepeatMode repeatMode = RepeatMode.ALL;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -108,47 +159,71 @@ public class MusicPlayerController implements Initializable {
         updateButtonStates(false);
         repeatButton.setTooltip(new Tooltip());
         updateRepeatButtonState();
+        metricsMenuItem.setSelected(Metrics.isEnabled());
     }
 
     private void initializeServices() {
+        Metrics.registerMBean();
+        Metrics.watchFxThread(FX_STALL_THRESHOLD_MILLIS);
         playlist = new Playlist("My Playlist");
         audioService = new AudioService();
         lyricsService = new LyricsService();
+        libraryCatalog = new LibraryCatalog(AppPaths.resolve("library.cat"));
+        libraryCatalog.load();
+        playHistory = new PlayHistory(AppPaths.resolve("play-history.bin"));
+        playHistory.load();
+        metadataService = new MetadataService(libraryCatalog);
+        metadataService.setOnUpdated(songs -> {
+            // Refilter at most once, whether songs moved in or out of the search or the smart playlist
+            boolean searchMoved = searchIndex.update(songs);
+            if (!songsChanged(songs) && searchMoved) {
+                applyPlaylistFilter();
+            }
+            playlistView.refresh();
+        });
+        libraryImporter = new LibraryImporter(libraryCatalog, metadataService);
+        albumArtService = new AlbumArtService(AppPaths.resolve("thumbnails/"));
+        waveformService = new WaveformService(AppPaths.resolve("waveforms/"));
+        duplicateDetector = new DuplicateDetector(AppPaths.resolve("content-hashes.bin"));
+        libraryWatcher = new LibraryWatcher(this::applyLibraryChanges);
+        if (Files.isDirectory(lyricsService.getLocalLyricsDirectory())) {
+            libraryWatcher.watchLyrics(lyricsService.getLocalLyricsDirectory());
+        }
 
-        audioService.setPlaybackListener(new AudioService.PlaybackListener() {
+        // The engine owns the queue and playback state; the UI only reacts to what it reports
+        playbackEngine = new PlaybackEngine(playlist.getSongs(), audioService);
+        playbackEngine.addListener(new PlaybackEngine.Listener() {
             @Override
-            public void onReady(Song song, Duration totalDuration) {
-                updateSongInfo(song, totalDuration);
-
-                if (lyricsController != null && lyricsService != null) {
-                    lyricsService.loadLyrics(song, () -> {
-                        if (lyricsController != null) {
-                            lyricsController.displayLyrics(lyricsService.getTimedLyrics());
-                        }
-                    });
-
-                    Platform.runLater(() -> {
-                        lyricsController.displayLyrics(lyricsService.getTimedLyrics());
-                        lyricsController.highlightCurrentLyric(0); 
-                    });
+            public void onSongChanged(Song song) {
+                if (song != null) {
+                    libraryIndex.recordPlay(song, System.currentTimeMillis());
+                    songsChanged(List.of(song));
+                    showSong(song);
+                } else {
+                    playlistView.refresh();
                 }
             }
 
             @Override
-            public void onTimeUpdate(Duration currentTime) {
-                updateProgress(currentTime);
-                if (lyricsController != null && lyricsService != null) {
-                    lyricsController.highlightCurrentLyric(currentTime.toSeconds());
-                }
+            public void onStateChanged(PlaybackEngine.State state) {
+                updateButtonStates(playbackEngine.isActive());
             }
 
             @Override
-            public void onPlaybackEnd() {
-                if (repeatMode == RepeatMode.ONE) {
-                    audioService.seek(Duration.ZERO);
-                    audioService.play();
-                } else {
-                    playNextSong();
+            public void onReady(Song song, Duration totalDuration) {
+                updateSongInfo(song, totalDuration);
+                songsChanged(List.of(song));
+                libraryCatalog.update(song);
+                catalogWriter.execute(libraryCatalog::flush);
+                // Warm up the neighbours only once the current track is open, so they don't compete with it
+                preloadNeighbours();
+
+                // showSong already started the lyrics load; show them now if it has finished
+                if (lyricsController != null && lyricsService != null) {
+                    Platform.runLater(() -> {
+                        lyricsController.displayLyrics(lyricsService.getTimeline(song));
+                        lyricsController.highlightCurrentLyric(0); 
+                    });
                 }
             }
 
@@ -157,34 +232,85 @@ public class MusicPlayerController implements Initializable {
                 showError("Playback Error", message);
             }
         });
+
+        // Each consumer of the playback position declares the rate it actually needs
+        audioService.getTicks().subscribe(0, this::updateSeekBar);
+        audioService.getTicks().subscribe(1, seconds -> currentTimeLabel.setText(formatTime(Duration.seconds(seconds))));
+        audioService.getTicks().subscribe(10, seconds -> {
+            if (lyricsController != null) {
+                lyricsController.highlightCurrentLyric(seconds);
+            }
+        });
     }
 
     private void setupPlaylist() {
+        searchIndex = new SearchIndex(playlist.getSongs());
+        libraryIndex = new LibraryIndex(playlist.getSongs(), playHistory);
+        // Registered before the FilteredList so new songs are tested against the active filter
+        // before it decides whether to show them
+        playlist.getSongs().addListener((ListChangeListener<Song>) change -> {
+            while (change.next()) {
+                if (activeFilter != null && change.wasAdded()) {
+                    for (Song song : change.getAddedSubList()) {
+                        visibleIds.set(song.getId(), libraryIndex.matches(activeFilter, song));
+                    }
+                }
+            }
+        });
         filteredPlaylist = new FilteredList<>(playlist.getSongs(), p -> true);
         playlistView.setItems(filteredPlaylist);
         playlistView.setCellFactory(lv -> new FavoriteListCell());
+        setupSmartPlaylists();
+    }
+
+    private void setupSmartPlaylists() {
+        smartPlaylistBox.setCellFactory(lv -> new SmartPlaylistCell());
+        smartPlaylistBox.setButtonCell(new SmartPlaylistCell());
+        smartPlaylistBox.getItems().add(null); // "All Songs"
+        smartPlaylistBox.getItems().addAll(SmartPlaylist.load(AppPaths.resolve("smart-playlists.txt")));
+        smartPlaylistBox.getSelectionModel().selectFirst();
+        smartPlaylistBox.valueProperty().addListener((observable, oldValue, newValue) -> updatePlaylistFilter());
+    }
+
+    private static class SmartPlaylistCell extends ListCell<SmartPlaylist> {
+        @Override
+        protected void updateItem(SmartPlaylist playlist, boolean empty) {
+            super.updateItem(playlist, empty);
+            if (empty) {
+                setText(null);
+                setTooltip(null);
+            } else if (playlist == null) {
+                setText("All Songs");
+                setTooltip(null);
+            } else {
+                setText(playlist.getName());
+                setTooltip(new Tooltip(playlist.getQueryText()));
+            }
+        }
     }
 
     private class FavoriteListCell extends ListCell<Song> {
         private HBox hbox = new HBox(10);
         private Label label = new Label();
+        private ImageView thumbnailView = new ImageView();
         private Button favoriteButton = new Button("❤");
         private Region spacer = new Region();
 
         public FavoriteListCell() {
             super();
             HBox.setHgrow(spacer, Priority.ALWAYS);
-            hbox.getChildren().addAll(label, spacer, favoriteButton);
+            thumbnailView.setFitWidth(AlbumArtService.THUMBNAIL_SIZE);
+            thumbnailView.setFitHeight(AlbumArtService.THUMBNAIL_SIZE);
+            thumbnailView.setPreserveRatio(true);
+            hbox.setAlignment(Pos.CENTER_LEFT);
+            hbox.getChildren().addAll(thumbnailView, label, spacer, favoriteButton);
             
             favoriteButton.setOnAction(event -> {
                 Song song = getItem();
                 if (song != null) {
                     song.setFavorite(!song.isFavorite());
                     updateItem(song, false); 
-                    
-                    if (showFavoritesButton.isSelected() && !song.isFavorite()) {
-                        updatePlaylistFilter();
-                    }
+                    songsChanged(List.of(song));
                 }
             });
         }
@@ -198,7 +324,7 @@ public class MusicPlayerController implements Initializable {
                 setStyle("");
             } else {
                 String text = song.getTitle() + " - " + song.getArtist();
-                if (audioService.getCurrentSong() == song) {
+                if (playbackEngine.getCurrentSong() == song) {
                     label.setText("▶ " + text);
                     label.setStyle("-fx-font-weight: bold;");
                 } else {
@@ -206,6 +332,12 @@ public class MusicPlayerController implements Initializable {
                     label.setStyle("");
                 }
                 
+                thumbnailView.setImage(albumArtService.getThumbnail(song, image -> {
+                    if (getItem() == song) {
+                        thumbnailView.setImage(image);
+                    }
+                }));
+
                 if (song.isFavorite()) {
                     favoriteButton.setStyle("-fx-text-fill: red;");
                 } else {
@@ -220,56 +352,134 @@ public class MusicPlayerController implements Initializable {
     private void setupEventHandlers() {
         playlistView.getSelectionModel().selectedItemProperty().addListener(
                 (obs, oldSong, newSong) -> {
-                    if (newSong != null) {
-                        playSelectedSong();
+                    // Selecting the song the engine just switched to must not restart it
+                    if (newSong != null && newSong != playbackEngine.getCurrentSong()) {
+                        playbackEngine.play(newSong);
                     }
                 }
         );
 
-        progressSlider.setOnMouseClicked((MouseEvent event) -> {
-            double value = (event.getX() / progressSlider.getWidth()) * progressSlider.getMax();
-            progressSlider.setValue(value);
-            Duration seekTime = audioService.getTotalDuration().multiply(value / 100.0);
-            audioService.seek(seekTime);
-        });
-
-        progressSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
-            if (progressSlider.isValueChanging()) {
-                Duration seekTime = audioService.getTotalDuration().multiply(newVal.doubleValue() / 100);
-                audioService.seek(seekTime);
-            }
-        });
+        seekBar.setOnSeek(fraction -> audioService.seek(audioService.getTotalDuration().multiply(fraction)));
 
         volumeSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
             audioService.setVolume(newVal.doubleValue() / 100);
             volumeLabel.setText(String.format("%.0f%%", newVal.doubleValue()));
         });
 
+        // Debounce typing so a burst of keystrokes triggers a single re-filter
+        searchDebounce.setOnFinished(event -> updatePlaylistFilter());
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
-            updatePlaylistFilter();
+            searchDebounce.playFromStart();
         });
     }
 
     private void updatePlaylistFilter() {
         String searchText = searchField.getText();
         boolean showFavoritesOnly = showFavoritesButton != null && showFavoritesButton.isSelected();
+        SmartPlaylist smartPlaylist = smartPlaylistBox.getValue();
+        long started = Metrics.start();
+
+        matchesSearch = searchIndex.search(searchText);
+        // Favorites and smart playlists are evaluated as bitsets; each song then costs one bit test
+        SmartQuery filter = smartPlaylist != null ? smartPlaylist.getQuery() : null;
+        if (showFavoritesOnly) {
+            filter = filter != null ? SmartQuery.and(filter, SmartQuery.FAVORITE) : SmartQuery.FAVORITE;
+        }
+        activeFilter = filter;
+        visibleIds = filter != null ? libraryIndex.evaluate(filter) : null;
+        applyPlaylistFilter();
+        SEARCH_FILTER.recordSince(started);
+    }
 
-        filteredPlaylist.setPredicate(song -> {
-            if (showFavoritesOnly && !song.isFavorite()) {
-                return false;
-            }
+    private void applyPlaylistFilter() {
+        BitSet visible = visibleIds;
+        Predicate<Song> search = matchesSearch;
+        filteredPlaylist.setPredicate(visible == null ? search::test : song -> visible.get(song.getId()) && search.test(song));
+    }
 
-            if (searchText == null || searchText.isEmpty()) {
-                return true;
+    // Songs whose attributes changed: re-tests just those, and only refilters (returning true) if one
+    // moved in or out of view
+    private boolean songsChanged(List<Song> songs) {
+        libraryIndex.update(songs);
+        if (activeFilter == null) {
+            return false;
+        }
+        boolean moved = false;
+        for (Song song : songs) {
+            boolean matches = libraryIndex.matches(activeFilter, song);
+            if (matches != visibleIds.get(song.getId())) {
+                visibleIds.set(song.getId(), matches);
+                moved = true;
             }
-            String lowerCaseFilter = searchText.toLowerCase();
-            if (song.getTitle().toLowerCase().contains(lowerCaseFilter)) {
-                return true;
-            } else if (song.getArtist().toLowerCase().contains(lowerCaseFilter)) {
-                return true;
+        }
+        if (moved) {
+            applyPlaylistFilter();
+        }
+        return moved;
+    }
+
+    @FXML
+    private void handleNewSmartPlaylist() {
+        TextField nameField = new TextField();
+        nameField.setPromptText("Name");
+        TextField queryField = new TextField();
+        queryField.setPromptText("favorite AND artist:\"Name\" AND duration<240 AND NOT played-last-7d");
+        queryField.setPrefColumnCount(40);
+        Label problem = new Label();
+        problem.setWrapText(true);
+        GridPane form = new GridPane();
+        form.setHgap(10);
+        form.setVgap(10);
+        form.addRow(0, new Label("Name:"), nameField);
+        form.addRow(1, new Label("Query:"), queryField);
+        form.add(problem, 1, 2);
+
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("New Smart Playlist");
+        dialog.setHeaderText("Songs matching the query are listed, and the list stays up to date as songs change.");
+        dialog.getDialogPane().setContent(form);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        Button ok = (Button) dialog.getDialogPane().lookupButton(ButtonType.OK);
+        Runnable validate = () -> {
+            String message = null;
+            try {
+                SmartQuery.parse(queryField.getText());
+            } catch (IllegalArgumentException e) {
+                message = e.getMessage();
             }
-            return false;
-        });
+            problem.setText(queryField.getText().isBlank() || message == null ? "" : message);
+            ok.setDisable(nameField.getText().isBlank() || message != null);
+        };
+        nameField.textProperty().addListener((observable, oldValue, newValue) -> validate.run());
+        queryField.textProperty().addListener((observable, oldValue, newValue) -> validate.run());
+        validate.run();
+
+        if (dialog.showAndWait().filter(ButtonType.OK::equals).isPresent()) {
+            SmartPlaylist smartPlaylist = new SmartPlaylist(nameField.getText(), queryField.getText());
+            smartPlaylistBox.getItems().add(smartPlaylist);
+            saveSmartPlaylists();
+            smartPlaylistBox.getSelectionModel().select(smartPlaylist);
+        }
+    }
+
+    @FXML
+    private void handleDeleteSmartPlaylist() {
+        SmartPlaylist selected = smartPlaylistBox.getValue();
+        if (selected != null) {
+            smartPlaylistBox.getSelectionModel().selectFirst();
+            smartPlaylistBox.getItems().remove(selected);
+            saveSmartPlaylists();
+        }
+    }
+
+    private void saveSmartPlaylists() {
+        List<SmartPlaylist> saved = new ArrayList<>(smartPlaylistBox.getItems());
+        saved.remove(null);
+        try {
+            SmartPlaylist.save(saved, AppPaths.resolve("smart-playlists.txt"));
+        } catch (IOException e) {
+            showError("Save Error", "Could not save smart playlists: " + e.getMessage());
+        }
     }
 
     private void setupBindings() {
@@ -288,19 +498,9 @@ public class MusicPlayerController implements Initializable {
                 Dragboard db = event.getDragboard();
                 boolean success = false;
                 if (db.hasFiles()) {
-                    List<File> files = db.getFiles();
-                    List<File> audioFiles = files.stream()
-                            .filter(this::isAudioFile)
-                            .collect(Collectors.toList());
-
-                    if (!audioFiles.isEmpty()) {
-                        playlist.addSongs(audioFiles);
-                        if (currentSongIndex == -1) {
-                            currentSongIndex = 0;
-                            playlistView.getSelectionModel().selectFirst();
-                        }
-                        success = true;
-                    }
+                    // Folders are walked recursively in the background
+                    importFiles(db.getFiles());
+                    success = true;
                 }
                 event.setDropCompleted(success);
                 event.consume();
@@ -325,11 +525,6 @@ public class MusicPlayerController implements Initializable {
         }
     }
 
-    private boolean isAudioFile(File file) {
-        String name = file.getName().toLowerCase();
-        return name.endsWith(".mp3") || name.endsWith(".wav") || name.endsWith(".m4a") || name.endsWith(".aac");
-    }
-
     private void loadLyricsDisplay() {
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/LyricsDisplay.fxml"));
@@ -337,6 +532,7 @@ public class MusicPlayerController implements Initializable {
             lyricsController = loader.getController();
             lyricsContainer.getChildren().clear();
             lyricsContainer.getChildren().add(lyricsContent);
+            VBox.setVgrow(lyricsContent, Priority.ALWAYS);
 
         } catch (IOException e) {
             showError("UI Error", "Could not load lyrics display: " + e.getMessage());
@@ -355,39 +551,170 @@ public class MusicPlayerController implements Initializable {
 
         List<File> selectedFiles = fileChooser.showOpenMultipleDialog(null);
         if (selectedFiles != null && !selectedFiles.isEmpty()) {
-            playlist.addSongs(selectedFiles);
-            if (currentSongIndex == -1) {
-                currentSongIndex = 0;
-                playlistView.getSelectionModel().selectFirst();
+            importFiles(selectedFiles);
+        }
+    }
+
+    @FXML
+    private void handleAddFolder() {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Add Folder");
+        File directory = directoryChooser.showDialog(mainContainer.getScene().getWindow());
+        if (directory != null) {
+            importFiles(List.of(directory));
+        }
+    }
+
+    // Songs arrive in chunks, possibly after the import completes; whichever comes last starts the duplicate check
+    private void importFiles(List<File> files) {
+        // Imported folders are kept in sync from now on
+        for (File file : files) {
+            if (file.isDirectory()) {
+                libraryWatcher.watchMusic(file.toPath());
+            }
+        }
+        List<Song> library = new ArrayList<>(playlist.getSongs());
+        List<Song> imported = new ArrayList<>();
+        int[] expected = {-1};
+        libraryImporter.importAsync(files, songs -> {
+            imported.addAll(songs);
+            addImportedSongs(songs);
+            if (imported.size() == expected[0]) {
+                checkForDuplicates(library, imported);
+            }
+        }).thenAccept(count -> Platform.runLater(() -> {
+            expected[0] = count;
+            if (count > 0 && imported.size() == count) {
+                checkForDuplicates(library, imported);
+            }
+        }));
+    }
+
+    // Files changed on disk in a watched folder: only the songs concerned are touched
+    private void applyLibraryChanges(LibraryWatcher.Changes changes) {
+        Set<File> removed = new HashSet<>(changes.getRemoved());
+        Set<File> modified = new HashSet<>(changes.getModified());
+        Set<File> added = new LinkedHashSet<>(changes.getAdded());
+        List<Song> gone = new ArrayList<>();
+        for (Song song : playlist.getSongs()) {
+            File file = song.getFile();
+            if (removed.contains(file)) {
+                gone.add(song);
+            } else if (modified.contains(file)) {
+                metadataService.enqueue(song); // tags may have been edited
+            }
+            added.remove(file); // already imported
+        }
+        if (!gone.isEmpty()) {
+            playlist.removeAll(gone);
+        }
+        if (!added.isEmpty()) {
+            libraryImporter.importAsync(new ArrayList<>(added), this::addImportedSongs);
+        }
+
+        if (!changes.getLyrics().isEmpty()) {
+            List<Song> affected = lyricsService.localLyricsChanged(playlist.getSongs(), changes.getLyrics());
+            Song current = playbackEngine.getCurrentSong();
+            if (current != null && affected.contains(current)) {
+                lyricsService.loadLyrics(current, () -> {
+                    if (lyricsController != null && playbackEngine.getCurrentSong() == current) {
+                        lyricsController.displayLyrics(lyricsService.getTimeline());
+                    }
+                });
+            }
+        }
+    }
+
+    // The same file added twice is merged silently; other copies are only removed if the user agrees
+    private void checkForDuplicates(List<Song> library, List<Song> imported) {
+        duplicateDetector.findAsync(library, imported).thenAccept(groups -> Platform.runLater(() -> {
+            List<DuplicateDetector.Group> flagged = new ArrayList<>();
+            for (DuplicateDetector.Group group : groups) {
+                if (group.getKind() == DuplicateDetector.Kind.SAME_FILE) {
+                    playlist.removeAll(group.getCopies());
+                } else {
+                    flagged.add(group);
+                }
+            }
+            if (!flagged.isEmpty()) {
+                offerToRemoveDuplicates(flagged, "Some of the imported songs look like copies of others.");
+            }
+        }));
+    }
+
+    @FXML
+    private void handleFindDuplicates() {
+        duplicateDetector.scanAsync(playlist.getSongs()).whenComplete((groups, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                showError("Duplicate Scan", "Could not scan for duplicates: " + cause.getMessage());
+            } else if (groups.isEmpty()) {
+                Alert alert = new Alert(Alert.AlertType.INFORMATION, "No duplicates found.");
+                alert.setHeaderText(null);
+                alert.showAndWait();
+            } else {
+                offerToRemoveDuplicates(groups, groups.size() + " sets of duplicates found.");
+            }
+        }));
+    }
+
+    private void offerToRemoveDuplicates(List<DuplicateDetector.Group> groups, String header) {
+        StringBuilder text = new StringBuilder();
+        int shown = Math.min(groups.size(), MAX_LISTED_DUPLICATES);
+        for (DuplicateDetector.Group group : groups.subList(0, shown)) {
+            text.append(describeDuplicateKind(group.getKind())).append(": ").append(group.getOriginal()).append('\n');
+            text.append("    keep   ").append(group.getOriginal().getFile()).append('\n');
+            for (Song copy : group.getCopies()) {
+                text.append("    remove ").append(copy.getFile()).append('\n');
             }
         }
+        if (groups.size() > shown) {
+            text.append("... and ").append(groups.size() - shown).append(" more\n");
+        }
+        TextArea details = new TextArea(text.toString());
+        details.setEditable(false);
+        details.setPrefSize(640, 320);
+
+        ButtonType remove = new ButtonType("Remove Copies", ButtonBar.ButtonData.OK_DONE);
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, null, remove,
+                new ButtonType("Keep All", ButtonBar.ButtonData.CANCEL_CLOSE));
+        alert.setTitle("Duplicates");
+        alert.setHeaderText(header);
+        alert.getDialogPane().setContent(details);
+        alert.setResizable(true);
+        if (alert.showAndWait().filter(remove::equals).isPresent()) {
+            List<Song> copies = new ArrayList<>();
+            for (DuplicateDetector.Group group : groups) {
+                copies.addAll(group.getCopies());
+            }
+            playlist.removeAll(copies);
+        }
+    }
+
+    private static String describeDuplicateKind(DuplicateDetector.Kind kind) {
+        switch (kind) {
+            case SAME_FILE:
+                return "Same file";
+            case IDENTICAL_AUDIO:
+                return "Identical audio";
+            default:
+                return "Same track";
+        }
+    }
+
+    private void addImportedSongs(List<Song> songs) {
+        playlist.addAll(songs);
+        if (playbackEngine.getState() == PlaybackEngine.State.IDLE) {
+            playbackEngine.playAt(0);
+        }
     }
 
     @FXML
     private void handleRemoveSong() {
         Song selected = playlistView.getSelectionModel().getSelectedItem();
         if (selected != null) {
-            if (audioService.getCurrentSong() == selected) {
-                audioService.stop();
-                updateButtonStates(false);
-            }
-            
-            int indexInOriginal = playlist.getSongs().indexOf(selected);
-            
+            // The engine stops playback itself if this was the current song
             playlist.removeSong(selected);
-            
-            if (indexInOriginal != -1) {
-                 if (indexInOriginal < currentSongIndex) {
-                     currentSongIndex--;
-                 } else if (indexInOriginal == currentSongIndex) {
-                     if (currentSongIndex >= playlist.size()) {
-                         currentSongIndex = 0;
-                     }
-                     if (playlist.isEmpty()) {
-                         currentSongIndex = -1;
-                     }
-                 }
-            }
         }
     }
 
@@ -395,17 +722,26 @@ public class MusicPlayerController implements Initializable {
     private void handleSavePlaylist() {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Save Playlist");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Playlist Files", "*.txt"));
+        addPlaylistFilters(fileChooser);
         File file = fileChooser.showSaveDialog(mainContainer.getScene().getWindow());
 
         if (file != null) {
-            try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-                for (Song song : playlist.getSongs()) {
-                    writer.println(song.getFile().getAbsolutePath());
-                }
-            } catch (IOException e) {
-                showError("Save Error", "Could not save playlist: " + e.getMessage());
+            if (!file.getName().contains(".")) {
+                String extension = fileChooser.getSelectedExtensionFilter() != null
+                        ? fileChooser.getSelectedExtensionFilter().getExtensions().get(0).substring(1)
+                        : "." + PlaylistFiles.Format.NATIVE.getExtension();
+                file = new File(file.getParentFile(), file.getName() + extension);
             }
+            // Snapshot on the FX thread, write in the background
+            List<PlaylistFiles.Entry> entries = PlaylistFiles.snapshot(playlist.getSongs());
+            File target = file;
+            CompletableFuture.runAsync(() -> {
+                try {
+                    PlaylistFiles.save(entries, target);
+                } catch (IOException e) {
+                    Platform.runLater(() -> showError("Save Error", "Could not save playlist: " + e.getMessage()));
+                }
+            });
         }
     }
 
@@ -413,31 +749,34 @@ public class MusicPlayerController implements Initializable {
     private void handleLoadPlaylist() {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Load Playlist");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Playlist Files", "*.txt"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("All Playlists",
+                "*.mpl", "*.m3u8", "*.m3u", "*.pls", "*.xspf", "*.txt"));
+        addPlaylistFilters(fileChooser);
         File file = fileChooser.showOpenDialog(mainContainer.getScene().getWindow());
 
         if (file != null) {
-            try {
-                List<String> lines = Files.readAllLines(file.toPath());
-                List<File> files = lines.stream()
-                        .map(File::new)
-                        .filter(f -> f.exists() && isAudioFile(f))
-                        .collect(Collectors.toList());
-
-                if (!files.isEmpty()) {
-                    playlist.clear();
-                    playlist.addSongs(files);
-                    if (currentSongIndex == -1 && !playlist.isEmpty()) {
-                        currentSongIndex = 0;
-                        playlistView.getSelectionModel().selectFirst();
-                    }
-                }
-            } catch (IOException e) {
-                showError("Load Error", "Could not load playlist: " + e.getMessage());
-            }
+            playlist.clear();
+            libraryImporter.importPlaylistAsync(file, this::addImportedSongs)
+                    .whenComplete((count, error) -> Platform.runLater(() -> {
+                        if (error != null) {
+                            Throwable cause = error.getCause() != null ? error.getCause() : error;
+                            showError("Load Error", "Could not load playlist: " + cause.getMessage());
+                        } else if (count == 0) {
+                            showError("Load Error", "None of the songs in this playlist could be found.");
+                        }
+                    }));
         }
     }
 
+    private void addPlaylistFilters(FileChooser fileChooser) {
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Music Player Playlist", "*.mpl"),
+                new FileChooser.ExtensionFilter("M3U Playlist", "*.m3u8", "*.m3u"),
+                new FileChooser.ExtensionFilter("PLS Playlist", "*.pls"),
+                new FileChooser.ExtensionFilter("XSPF Playlist", "*.xspf"),
+                new FileChooser.ExtensionFilter("Text Playlist", "*.txt"));
+    }
+
     @FXML
     private void handleExit() {
         Platform.exit();
@@ -450,39 +789,36 @@ public class MusicPlayerController implements Initializable {
 
     @FXML
     private void handleShuffle() {
-        isShuffle = shuffleButton.isSelected();
-        if (isShuffle) {
-            Song currentSong = audioService.getCurrentSong();
-            
-            playlist.shuffle();
-            
-            if (currentSong != null) {
-                currentSongIndex = playlist.getSongs().indexOf(currentSong);
-                playlistView.getSelectionModel().select(currentSong);
-            }
-        }
+        // The list keeps its order; only the engine's play order changes
+        playbackEngine.setShuffle(shuffleButton.isSelected());
+        preloadNeighbours();
+        lyricsService.prefetch(playbackEngine.upcoming(LYRICS_PREFETCH_COUNT));
     }
 
     @FXML
     private void handleRepeat() {
-        if (repeatMode == RepeatMode.ALL) {
-            repeatMode = RepeatMode.ONE;
-        } else if (repeatMode == RepeatMode.ONE) {
-            repeatMode = RepeatMode.NONE;
+        PlaybackEngine.RepeatMode repeatMode = playbackEngine.getRepeatMode();
+        if (repeatMode == PlaybackEngine.RepeatMode.ALL) {
+            playbackEngine.setRepeatMode(PlaybackEngine.RepeatMode.ONE);
+        } else if (repeatMode == PlaybackEngine.RepeatMode.ONE) {
+            playbackEngine.setRepeatMode(PlaybackEngine.RepeatMode.NONE);
         } else { // NONE
-            repeatMode = RepeatMode.ALL;
+            playbackEngine.setRepeatMode(PlaybackEngine.RepeatMode.ALL);
         }
         updateRepeatButtonState();
+        preloadNeighbours();
+        lyricsService.prefetch(playbackEngine.upcoming(LYRICS_PREFETCH_COUNT));
     }
 
     private void updateRepeatButtonState() {
         Tooltip tooltip = repeatButton.getTooltip();
-        if (repeatMode == RepeatMode.ALL) {
+        PlaybackEngine.RepeatMode repeatMode = playbackEngine.getRepeatMode();
+        if (repeatMode == PlaybackEngine.RepeatMode.ALL) {
             repeatButton.setText("🔁");
             repeatButton.getStyleClass().remove("repeat-one");
             repeatButton.getStyleClass().add("repeat-all");
             tooltip.setText("Repeat: All");
-        } else if (repeatMode == RepeatMode.ONE) {
+        } else if (repeatMode == PlaybackEngine.RepeatMode.ONE) {
             repeatButton.setText("🔂");
             repeatButton.getStyleClass().remove("repeat-all");
             repeatButton.getStyleClass().add("repeat-one");
@@ -505,6 +841,20 @@ public class MusicPlayerController implements Initializable {
         }
     }
 
+    @FXML
+    private void handleMetricsToggle() {
+        Metrics.setEnabled(metricsMenuItem.isSelected());
+    }
+
+    @FXML
+    private void handleShowMetrics() {
+        if (metricsDialog == null) {
+            metricsDialog = new MetricsDialog(mainContainer.getScene().getWindow());
+        }
+        metricsDialog.show();
+        metricsDialog.getDialogPane().getScene().getWindow().requestFocus();
+    }
+
     @FXML
     private void handlePlayPause() {
         if (playlist.isEmpty()) {
@@ -513,35 +863,28 @@ public class MusicPlayerController implements Initializable {
         }
 
         if (playPauseButton.isSelected()) {
-            if (currentSongIndex == -1) {
-                currentSongIndex = 0;
-                playSelectedSong();
-            } else {
-                audioService.play();
-            }
-            updateButtonStates(true);
+            playbackEngine.resume();
         } else {
-            audioService.pause();
-            updateButtonStates(false);
+            playbackEngine.pause();
         }
+        updateButtonStates(playbackEngine.isActive());
     }
 
     @FXML
     private void handleStop() {
-        audioService.stop();
-        updateButtonStates(false);
-        progressSlider.setValue(0);
+        playbackEngine.stop();
+        seekBar.setProgress(0);
         currentTimeLabel.setText("00:00");
     }
 
     @FXML
     private void handleNext() {
-        playNextSong();
+        playbackEngine.next();
     }
 
     @FXML
     private void handlePrevious() {
-        playPreviousSong();
+        playbackEngine.previous();
     }
 
     @FXML
@@ -551,77 +894,58 @@ public class MusicPlayerController implements Initializable {
         muteButton.setText(isMuted ? "🔇" : "🔊");
     }
 
-    private void playSelectedSong() {
-        Song selected = playlistView.getSelectionModel().getSelectedItem();
-        if (selected == null) return;
-
-        currentSongIndex = playlist.getSongs().indexOf(selected);
-
-        audioService.stop();
-        audioService.loadSong(selected);
-        audioService.setMute(isMuted); // Apply mute state to new song
-        audioService.play();
-
-        updateSongInfo(selected, Duration.ZERO);
+    // A new song was started (by the user or by the engine moving through the queue)
+    private void showSong(Song song) {
+        playlistView.getSelectionModel().select(song);
+        updateSongInfo(song, Duration.ZERO);
+        seekBar.setProgress(0);
+        seekBar.setWaveform(waveformService.getWaveform(song, waveform -> {
+            if (playbackEngine.getCurrentSong() == song) {
+                seekBar.setWaveform(waveform);
+            }
+        }));
 
         if (lyricsController != null) {
             lyricsController.clearLyrics();
         }
 
-        lyricsService.loadLyrics(selected, () -> {
+        lyricsService.loadLyrics(song, () -> {
             if (lyricsController != null) {
-                lyricsController.displayLyrics(lyricsService.getTimedLyrics());
+                lyricsController.displayLyrics(lyricsService.getTimeline());
             }
         });
+        lyricsService.prefetch(playbackEngine.upcoming(LYRICS_PREFETCH_COUNT));
     }
-    private void playNextSong() {
-        if (playlist.isEmpty()) {
-            return;
-        }
 
-        int nextIndex = currentSongIndex + 1;
-
-        if (nextIndex >= playlist.size()) {
-            if (repeatMode == RepeatMode.ALL) {
-                nextIndex = 0; // Loop back to the start
-            } else { // RepeatMode.NONE
-                audioService.stop();
-                updateButtonStates(false);
-                return; // Stop playback
-            }
-        }
-        
-        currentSongIndex = nextIndex;
-        playlistView.getSelectionModel().select(currentSongIndex);
-    }
-
-    private void playPreviousSong() {
-        if (playlist.isEmpty()) {
-            return;
-        }
-
-        currentSongIndex = (currentSongIndex - 1 + playlist.size()) % playlist.size();
-        playlistView.getSelectionModel().select(currentSongIndex);
+    private void preloadNeighbours() {
+        List<Song> neighbours = playbackEngine.neighbours();
+        audioService.preload(neighbours);
+        waveformService.precompute(neighbours);
     }
 
     private void updateSongInfo(Song song, Duration totalDuration) {
         songTitleLabel.setText(song.getTitle() + " - " + song.getArtist());
-        totalTimeLabel.setText(formatTime(totalDuration));
-        song.setDuration(formatTime(totalDuration));
+        if (totalDuration.toMillis() > 0) {
+            song.setDurationMillis((long) totalDuration.toMillis());
+        }
+        totalTimeLabel.setText(song.getDuration());
         
         if (albumArtImageView != null) {
-            albumArtImageView.setImage(song.getAlbumArt());
+            albumArtImageView.setImage(albumArtService.getFullArt(song, image -> {
+                if (playbackEngine.getCurrentSong() == song) {
+                    albumArtImageView.setImage(image);
+                }
+            }));
         }
         
         playlistView.refresh();
     }
 
-    private void updateProgress(Duration currentTime) {
-        if (!progressSlider.isValueChanging() && audioService.getTotalDuration().toSeconds() > 0) {
-            double progress = (currentTime.toSeconds() / audioService.getTotalDuration().toSeconds()) * 100;
-            progressSlider.setValue(progress);
+    private void updateSeekBar(double currentSeconds) {
+        double totalSeconds = audioService.getTotalDuration().toSeconds();
+        if (totalSeconds > 0) {
+            seekBar.setProgress(currentSeconds / totalSeconds);
         }
-        currentTimeLabel.setText(formatTime(currentTime));
     }
 
     private String formatTime(Duration duration) {
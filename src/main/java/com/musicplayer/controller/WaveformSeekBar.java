@@ -0,0 +1,171 @@
+package com.musicplayer.controller;
+
+import com.musicplayer.model.Waveform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Seek bar that draws the track's waveform, or a plain bar until one is available. The waveform is
+ * painted twice, once in the track colour and once in the accent colour clipped to the played part,
+ * so playback only moves a clip; the canvases are repainted only when the size, zoom or waveform
+ * changes. Scrolling zooms around the pointer; a zoomed view pages along with the playhead.
+ */
+public class WaveformSeekBar extends Region {
+
+    private static final Color TRACK_COLOR = Color.gray(0.6, 0.6);
+    private static final Color PLAYED_COLOR = Color.web("#9C27B0");
+    private static final double FLAT_BAR_HEIGHT = 4;
+    private static final double MAX_ZOOM = 64;
+
+    private final Canvas track = new Canvas();
+    private final Canvas played = new Canvas();
+    private final Rectangle playedClip = new Rectangle();
+
+    private Waveform waveform;
+    private double progress;
+    // Visible part of the track, as fractions of its length
+    private double viewStart;
+    private double zoom = 1;
+    private boolean seeking;
+    private DoubleConsumer onSeek;
+
+    public WaveformSeekBar() {
+        getStyleClass().add("waveform-seek-bar");
+        played.setClip(playedClip);
+        getChildren().addAll(track, played);
+        setMinHeight(24);
+        setPrefHeight(48);
+
+        setOnMousePressed(this::seekTo);
+        setOnMouseDragged(this::seekTo);
+        setOnMouseReleased(event -> seeking = false);
+        setOnScroll(event -> {
+            double anchor = fractionAt(event.getX());
+            double newZoom = Math.max(1, Math.min(MAX_ZOOM, zoom * (event.getDeltaY() > 0 ? 1.25 : 0.8)));
+            if (newZoom != zoom) {
+                // Keep the point under the pointer where it is
+                viewStart = clampView(anchor - (event.getX() / Math.max(1, getWidth())) / newZoom, newZoom);
+                zoom = newZoom;
+                repaint();
+            }
+            event.consume();
+        });
+    }
+
+    public void setWaveform(Waveform waveform) {
+        this.waveform = waveform;
+        zoom = 1;
+        viewStart = 0;
+        repaint();
+    }
+
+    /** Moves the playhead; ignored while the user is dragging it. */
+    public void setProgress(double fraction) {
+        if (seeking) {
+            return;
+        }
+        showProgress(fraction);
+    }
+
+    public boolean isSeeking() {
+        return seeking;
+    }
+
+    /** Called with the fraction of the track the user clicked or dragged to. */
+    public void setOnSeek(DoubleConsumer onSeek) {
+        this.onSeek = onSeek;
+    }
+
+    private void seekTo(MouseEvent event) {
+        seeking = true;
+        double fraction = Math.max(0, Math.min(1, fractionAt(event.getX())));
+        showProgress(fraction);
+        if (onSeek != null) {
+            onSeek.accept(fraction);
+        }
+    }
+
+    private void showProgress(double fraction) {
+        progress = Math.max(0, Math.min(1, fraction));
+        double viewLength = 1 / zoom;
+        if (zoom > 1 && !seeking && (progress < viewStart || progress > viewStart + viewLength)) {
+            viewStart = clampView(progress, zoom); // page along with the playhead
+            repaint();
+        }
+        updateClip();
+    }
+
+    private double fractionAt(double x) {
+        return viewStart + x / Math.max(1, getWidth()) / zoom;
+    }
+
+    private static double clampView(double start, double zoom) {
+        return Math.max(0, Math.min(1 - 1 / zoom, start));
+    }
+
+    private void updateClip() {
+        double x = (progress - viewStart) * zoom * getWidth();
+        playedClip.setWidth(Math.max(0, Math.min(getWidth(), x)));
+        playedClip.setHeight(getHeight());
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = snapSizeX(getWidth());
+        double height = snapSizeY(getHeight());
+        if (track.getWidth() != width || track.getHeight() != height) {
+            track.setWidth(width);
+            track.setHeight(height);
+            played.setWidth(width);
+            played.setHeight(height);
+            repaint();
+        }
+        updateClip();
+    }
+
+    private void repaint() {
+        paint(track.getGraphicsContext2D(), TRACK_COLOR);
+        paint(played.getGraphicsContext2D(), PLAYED_COLOR);
+    }
+
+    private void paint(GraphicsContext g, Color color) {
+        double width = track.getWidth();
+        double height = track.getHeight();
+        double middle = height / 2;
+        g.clearRect(0, 0, width, height);
+        g.setFill(color);
+        if (waveform == null || waveform.size() == 0) {
+            g.fillRect(0, middle - FLAT_BAR_HEIGHT / 2, width, FLAT_BAR_HEIGHT);
+            return;
+        }
+
+        // Each pixel column shows the extremes of the peaks it covers, however many that is
+        int pixels = (int) Math.ceil(width);
+        double peaksPerPixel = waveform.size() / zoom / Math.max(1, width);
+        double first = viewStart * waveform.size();
+        double halfHeight = middle - 1;
+        for (int x = 0; x < pixels; x++) {
+            int from = (int) (first + x * peaksPerPixel);
+            int to = Math.max(from + 1, (int) (first + (x + 1) * peaksPerPixel));
+            if (from >= waveform.size()) {
+                break;
+            }
+            to = Math.min(to, waveform.size());
+            float min = 0;
+            float max = 0;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, waveform.minAt(i));
+                max = Math.max(max, waveform.maxAt(i));
+            }
+            double top = middle - max * halfHeight;
+            double bottom = middle - min * halfHeight;
+            g.fillRect(x, top, 1, Math.max(1, bottom - top));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.musicplayer.model;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable lyric lines with their start times as a sorted primitive array, so finding the line
+ * for a playback position is a binary search with no boxing or allocation.
+ *
+ * <p>Lines may carry word-level timings (enhanced LRC): each word is a start time relative to its
+ * line plus the char index in the line text where the word begins.
+ */
+public final class LyricTimeline {
+
+    public static final LyricTimeline EMPTY = new LyricTimeline(new double[0], new String[0], null, null, null, null);
+
+    private final double[] times;
+    private final String[] lines;
+    private final int[] wordFrom;
+    private final int[] wordTo;
+    private final int[] wordOffsetMillis;
+    private final int[] wordChars;
+
+    private LyricTimeline(double[] times, String[] lines, int[] wordFrom, int[] wordTo,
+                          int[] wordOffsetMillis, int[] wordChars) {
+        this.times = times;
+        this.lines = lines;
+        this.wordFrom = wordFrom;
+        this.wordTo = wordTo;
+        this.wordOffsetMillis = wordOffsetMillis;
+        this.wordChars = wordChars;
+    }
+
+    public static LyricTimeline fromMap(Map<Double, String> timedLyrics) {
+        if (timedLyrics == null || timedLyrics.isEmpty()) {
+            return EMPTY;
+        }
+        Builder builder = new Builder();
+        for (Map.Entry<Double, String> entry : timedLyrics.entrySet()) {
+            builder.addLine(Math.round(entry.getKey() * 1000), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public boolean isEmpty() {
+        return times.length == 0;
+    }
+
+    public double timeAt(int index) {
+        return times[index];
+    }
+
+    public String lineAt(int index) {
+        return lines[index];
+    }
+
+    /** Index of the line being sung at {@code seconds} (the last line starting at or before it), or -1. */
+    public int indexAt(double seconds) {
+        int found = Arrays.binarySearch(times, seconds);
+        if (found >= 0) {
+            // Several lines may share a timestamp; the last of them is current
+            while (found + 1 < times.length && times[found + 1] == seconds) {
+                found++;
+            }
+            return found;
+        }
+        return -found - 2;
+    }
+
+    /**
+     * Index of the line starting closest to {@code seconds} (the earlier one on a tie), or -1 if no
+     * line starts less than {@code tolerance} seconds away.
+     */
+    public int closestIndex(double seconds, double tolerance) {
+        int after = indexAt(seconds) + 1;
+        int before = after - 1;
+        // Of several lines sharing a timestamp, the first is the closest
+        while (before > 0 && times[before - 1] == times[before]) {
+            before--;
+        }
+        int closest = -1;
+        double closestDiff = tolerance;
+        if (before >= 0 && seconds - times[before] < closestDiff) {
+            closest = before;
+            closestDiff = seconds - times[before];
+        }
+        if (after < times.length && times[after] - seconds < closestDiff) {
+            closest = after;
+        }
+        return closest;
+    }
+
+    public boolean hasWordTimings() {
+        return wordFrom != null;
+    }
+
+    public int wordCount(int index) {
+        return wordFrom == null ? 0 : wordTo[index] - wordFrom[index];
+    }
+
+    /** Start time in seconds of the given word of a line. */
+    public double wordTimeAt(int index, int word) {
+        return times[index] + wordOffsetMillis[wordFrom[index] + word] / 1000.0;
+    }
+
+    /** Char index in {@link #lineAt} where the given word starts. */
+    public int wordStartAt(int index, int word) {
+        return wordChars[wordFrom[index] + word];
+    }
+
+    /**
+     * Collects lines in file order (times in milliseconds) and sorts them once in {@link #build()}.
+     * A line repeated under several timestamps is added once per timestamp with the same text and
+     * word range, so it is stored only once.
+     */
+    public static final class Builder {
+        // Sort keys pack (millis << INDEX_BITS) | index, which keeps the sort stable and primitive
+        private static final int INDEX_BITS = 21;
+        private static final int MAX_LINES = 1 << INDEX_BITS;
+
+        private long[] millis = new long[64];
+        private String[] lines = new String[64];
+        private int[] wordFrom = new int[64];
+        private int[] wordTo = new int[64];
+        private int size;
+
+        private int[] wordOffsetMillis = new int[0];
+        private int[] wordChars = new int[0];
+        private int wordCount;
+
+        private long offsetMillis;
+
+        /** LRC {@code [offset:]} semantics: a positive offset makes every line appear earlier. */
+        public Builder offset(long offsetMillis) {
+            this.offsetMillis = offsetMillis;
+            return this;
+        }
+
+        /** Number of words added so far; bracket a line's {@link #addWord} calls with this to get its word range. */
+        public int wordCount() {
+            return wordCount;
+        }
+
+        public Builder addWord(int offsetFromLineMillis, int charIndex) {
+            if (wordCount == wordChars.length) {
+                int capacity = Math.max(64, wordCount * 2);
+                wordOffsetMillis = Arrays.copyOf(wordOffsetMillis, capacity);
+                wordChars = Arrays.copyOf(wordChars, capacity);
+            }
+            wordOffsetMillis[wordCount] = offsetFromLineMillis;
+            wordChars[wordCount] = charIndex;
+            wordCount++;
+            return this;
+        }
+
+        public Builder addLine(long startMillis, String text) {
+            return addLine(startMillis, text, wordCount, wordCount);
+        }
+
+        public Builder addLine(long startMillis, String text, int fromWord, int toWord) {
+            if (size == MAX_LINES) {
+                throw new IllegalStateException("Too many lyric lines");
+            }
+            if (size == millis.length) {
+                int capacity = size * 2;
+                millis = Arrays.copyOf(millis, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+                wordFrom = Arrays.copyOf(wordFrom, capacity);
+                wordTo = Arrays.copyOf(wordTo, capacity);
+            }
+            millis[size] = startMillis;
+            lines[size] = text;
+            wordFrom[size] = fromWord;
+            wordTo[size] = toWord;
+            size++;
+            return this;
+        }
+
+        public LyricTimeline build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            long[] keys = new long[size];
+            boolean sorted = true;
+            for (int i = 0; i < size; i++) {
+                long start = Math.max(0, millis[i] - offsetMillis);
+                keys[i] = (start << INDEX_BITS) | i;
+                sorted &= i == 0 || keys[i] > keys[i - 1];
+            }
+            if (!sorted) {
+                Arrays.sort(keys);
+            }
+
+            double[] sortedTimes = new double[size];
+            String[] sortedLines = new String[size];
+            int[] from = wordCount == 0 ? null : new int[size];
+            int[] to = wordCount == 0 ? null : new int[size];
+            for (int i = 0; i < size; i++) {
+                int source = (int) (keys[i] & (MAX_LINES - 1));
+                sortedTimes[i] = (keys[i] >>> INDEX_BITS) / 1000.0;
+                sortedLines[i] = lines[source];
+                if (from != null) {
+                    from[i] = wordFrom[source];
+                    to[i] = wordTo[source];
+                }
+            }
+            return new LyricTimeline(sortedTimes, sortedLines, from, to,
+                    from == null ? null : Arrays.copyOf(wordOffsetMillis, wordCount),
+                    from == null ? null : Arrays.copyOf(wordChars, wordCount));
+        }
+    }
+}
@@ -3,7 +3,9 @@ package com.musicplayer.model;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import java.io.File;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 public class Playlist {
@@ -26,16 +28,21 @@ public class Playlist {
         }
     }
 
+    public void addAll(List<Song> newSongs) {
+        songs.addAll(newSongs);
+    }
+
     public void removeSong(Song song) {
         songs.remove(song);
     }
 
-    public void clear() {
-        songs.clear();
+    public void removeAll(Collection<Song> toRemove) {
+        // One change event, and a set so each song is checked in constant time
+        songs.removeAll(new HashSet<>(toRemove));
     }
 
-    public void shuffle() {
-        FXCollections.shuffle(songs);
+    public void clear() {
+        songs.clear();
     }
 
     public ObservableList<Song> getSongs() {
@@ -1,73 +1,299 @@
 package com.musicplayer.model;
 
 import javafx.beans.property.*;
-import javafx.scene.image.Image;
 
 import java.io.File;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.util.BitSet;
 
+/**
+ * A track in the library. The song itself is only a view: its fields live in a shared column
+ * store ({@link SongStore}), so a song costs a few dozen bytes rather than a set of JavaFX
+ * properties. Properties are created on first use, for code that binds to them, and write
+ * through to the store.
+ */
 public class Song {
 
-    private final StringProperty title = new SimpleStringProperty();
-    private final StringProperty artist = new SimpleStringProperty("Unknown Artist");
-    private final StringProperty duration = new SimpleStringProperty("00:00");
-    private final ObjectProperty<File> file = new SimpleObjectProperty<>();
-    private final StringProperty lyricsPath = new SimpleStringProperty();
-    private final ObjectProperty<Image> albumArt = new SimpleObjectProperty<>();
-    private final BooleanProperty isFavorite = new SimpleBooleanProperty(false);
+    private static final SongStore STORE = new SongStore();
+    // Returns a song's row to the store once the song is unreachable
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    // Stable for the song's lifetime and dense from 0 (ids of collected songs are reused), so it can
+    // index into arrays (see PlaybackEngine)
+    private final int id = STORE.allocate();
+    private Properties properties;
+
+    private static final class Properties {
+        StringProperty title;
+        StringProperty artist;
+        StringProperty album;
+        StringProperty duration;
+        ObjectProperty<File> file;
+        StringProperty lyricsPath;
+    }
+
+    // Captures only the id: holding the song would keep it reachable forever
+    private static final class Release implements Runnable {
+        private final int id;
+
+        Release(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void run() {
+            STORE.release(id);
+        }
+    }
 
     public Song(File file) {
-        this.file.set(file);
+        CLEANER.register(this, new Release(id));
+        STORE.setFile(id, file);
         String name = file.getName();
-        String cleanName = name.substring(0, name.lastIndexOf('.'));
+        int dot = name.lastIndexOf('.');
+        String cleanName = dot > 0 ? name.substring(0, dot) : name;
 
         // Smart split: "Artist - Title.mp3" → artist + title
         if (cleanName.contains(" - ")) {
             String[] parts = cleanName.split(" - ", 2);
-            this.artist.set(parts[0].trim());
-            this.title.set(parts[1].trim());
+            STORE.setArtist(id, parts[0].trim());
+            STORE.setTitle(id, parts[1].trim());
         } else {
-            this.title.set(cleanName);
+            STORE.setArtist(id, "Unknown Artist");
+            STORE.setTitle(id, cleanName);
         }
+    }
 
-        this.lyricsPath.set("src/main/resources/lyrics/" +
-                name.replaceAll("\\.(mp3|wav|m4a|aac)$", ".lrc"));
-
-        // Beautiful placeholder with song title
-        String encodedTitle = URLEncoder.encode(
-                title.get().length() > 20 ? title.get().substring(0, 20) + "..." : title.get(),
-                StandardCharsets.UTF_8
-        );
-        this.albumArt.set(new Image(
-                "https://via.placeholder.com/300x300/2c2c2c/ffffff?text=" + encodedTitle
-        ));
+    // Hydrates a song from already-known metadata (e.g. the library catalog) without re-parsing the file name
+    public Song(File file, String title, String artist, String album, long durationMillis) {
+        CLEANER.register(this, new Release(id));
+        STORE.setFile(id, file);
+        STORE.setTitle(id, title);
+        STORE.setArtist(id, artist);
+        STORE.setAlbum(id, album);
+        STORE.setDurationMillis(id, durationMillis);
     }
 
     // Property getters
-    public StringProperty titleProperty() { return title; }
-    public StringProperty artistProperty() { return artist; }
-    public StringProperty durationProperty() { return duration; }
-    public ObjectProperty<File> fileProperty() { return file; }
-    public StringProperty lyricsPathProperty() { return lyricsPath; }
-    public ObjectProperty<Image> albumArtProperty() { return albumArt; }
-    public BooleanProperty isFavoriteProperty() { return isFavorite; }
+    public StringProperty titleProperty() {
+        Properties p = properties();
+        if (p.title == null) {
+            p.title = new SimpleStringProperty(this, "title", getTitle()) {
+                @Override
+                protected void invalidated() {
+                    write(() -> STORE.setTitle(id, get()));
+                }
+            };
+        }
+        return p.title;
+    }
+
+    public StringProperty artistProperty() {
+        Properties p = properties();
+        if (p.artist == null) {
+            p.artist = new SimpleStringProperty(this, "artist", getArtist()) {
+                @Override
+                protected void invalidated() {
+                    write(() -> STORE.setArtist(id, get()));
+                }
+            };
+        }
+        return p.artist;
+    }
+
+    public StringProperty albumProperty() {
+        Properties p = properties();
+        if (p.album == null) {
+            p.album = new SimpleStringProperty(this, "album", getAlbum()) {
+                @Override
+                protected void invalidated() {
+                    write(() -> STORE.setAlbum(id, get()));
+                }
+            };
+        }
+        return p.album;
+    }
+
+    public StringProperty durationProperty() {
+        Properties p = properties();
+        if (p.duration == null) {
+            p.duration = new SimpleStringProperty(this, "duration", getDuration());
+        }
+        return p.duration;
+    }
+
+    public ObjectProperty<File> fileProperty() {
+        Properties p = properties();
+        if (p.file == null) {
+            p.file = new SimpleObjectProperty<>(this, "file", getFile()) {
+                @Override
+                protected void invalidated() {
+                    write(() -> STORE.setFile(id, get()));
+                }
+            };
+        }
+        return p.file;
+    }
+
+    public StringProperty lyricsPathProperty() {
+        Properties p = properties();
+        if (p.lyricsPath == null) {
+            p.lyricsPath = new SimpleStringProperty(this, "lyricsPath", defaultLyricsPath());
+        }
+        return p.lyricsPath;
+    }
 
     // Regular getters
-    public String getTitle() { return title.get(); }
-    public String getArtist() { return artist.get(); }
-    public String getDuration() { return duration.get(); }
-    public File getFile() { return file.get(); }
-    public String getLyricsPath() { return lyricsPath.get(); }
-    public Image getAlbumArt() { return albumArt.get(); }
-    public boolean isFavorite() { return isFavorite.get(); }
-
-    // Setters
-    public void setDuration(String d) { duration.set(d); }
-    public void setFavorite(boolean favorite) { isFavorite.set(favorite); }
+    public int getId() { return id; }
+
+    public String getTitle() {
+        try {
+            return STORE.title(id);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    public String getArtist() {
+        try {
+            return STORE.artist(id);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    public String getAlbum() {
+        try {
+            return STORE.album(id);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    public String getDuration() {
+        if (properties != null && properties.duration != null) {
+            return properties.duration.get();
+        }
+        return formatDuration(getDurationMillis());
+    }
+
+    public long getDurationMillis() {
+        try {
+            return STORE.durationMillis(id);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    public File getFile() {
+        try {
+            return STORE.file(id);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    public String getLyricsPath() {
+        if (properties != null && properties.lyricsPath != null) {
+            return properties.lyricsPath.get();
+        }
+        return defaultLyricsPath();
+    }
+
+    public boolean isFavorite() {
+        try {
+            return STORE.isFavorite(id);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    // Setters go through the property when one exists, so bound listeners see the change
+    public void setTitle(String t) {
+        if (properties != null && properties.title != null) {
+            properties.title.set(t);
+        } else {
+            write(() -> STORE.setTitle(id, t));
+        }
+    }
+
+    public void setArtist(String a) {
+        if (properties != null && properties.artist != null) {
+            properties.artist.set(a);
+        } else {
+            write(() -> STORE.setArtist(id, a));
+        }
+    }
+
+    public void setAlbum(String a) {
+        if (properties != null && properties.album != null) {
+            properties.album.set(a);
+        } else {
+            write(() -> STORE.setAlbum(id, a));
+        }
+    }
+
+    public void setDuration(String d) { durationProperty().set(d); }
+
+    // Unknown durations (< 0) keep the "00:00" placeholder
+    public void setDurationMillis(long millis) {
+        write(() -> STORE.setDurationMillis(id, millis));
+        if (millis >= 0 && properties != null && properties.duration != null) {
+            properties.duration.set(formatDuration(millis));
+        }
+    }
+
+    // Songs are created (and tagged favorite from playlist files) on importer threads
+    public void setFavorite(boolean favorite) {
+        write(() -> STORE.setFavorite(id, favorite));
+    }
+
+    public static boolean isFavoriteId(int id) {
+        return STORE.isFavorite(id);
+    }
+
+    /** Ids of all favorite songs, as a copy. */
+    public static BitSet favoriteIds() {
+        return STORE.favoriteIds();
+    }
+
+    private Properties properties() {
+        if (properties == null) {
+            properties = new Properties();
+        }
+        return properties;
+    }
+
+    // Keeps this song reachable until the write is done, so its row can't be released mid-way
+    private void write(Runnable update) {
+        try {
+            update.run();
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    private static String formatDuration(long millis) {
+        if (millis < 0) {
+            return "00:00";
+        }
+        long seconds = millis / 1000;
+        return String.format("%02d:%02d", seconds / 60, seconds % 60);
+    }
+
+    private String defaultLyricsPath() {
+        return "src/main/resources/lyrics/" + lyricsFileName(getFile().getName());
+    }
+
+    /** Name of the local {@code .lrc} file for an audio file: its name with the extension, whatever it is, replaced. */
+    public static String lyricsFileName(String audioFileName) {
+        int dot = audioFileName.lastIndexOf('.');
+        return (dot > 0 ? audioFileName.substring(0, dot) : audioFileName) + ".lrc";
+    }
 
     @Override
     public String toString() {
         return getTitle() + " - " + getArtist();
     }
-}
\ No newline at end of file
+}
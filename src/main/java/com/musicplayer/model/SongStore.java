@@ -0,0 +1,268 @@
+package com.musicplayer.model;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column store behind {@link Song}: one row per song id. Artist, album and folder are
+ * dictionary-encoded (each distinct value is held once, as a shared String), durations are a
+ * primitive column, favorites a bitset, and titles and file names are packed into one UTF-8 byte
+ * pool, each as a length-prefixed run. A row costs a few dozen bytes plus its text.
+ *
+ * <p>Rows of songs that are no longer reachable are released and their ids reused. The pool is
+ * append-only; it is compacted once more than half of it belongs to released or overwritten text.
+ * All access is synchronized: songs are created on importer threads and read on the FX thread.
+ */
+final class SongStore {
+
+    private static final int FREE = -1;
+    // Every dictionary interns "" first, so a zeroed column reads as an empty value
+    private static final int EMPTY = 0;
+    private static final int MIN_COMPACT_BYTES = 1 << 20;
+
+    private int[] folder = new int[1024];
+    private int[] name = new int[1024];
+    private int[] title = new int[1024];
+    private int[] artist = new int[1024];
+    private int[] album = new int[1024];
+    private int[] durationMillis = new int[1024];
+    private final BitSet favorites = new BitSet();
+
+    private final Dictionary folders = new Dictionary();
+    private final Dictionary artists = new Dictionary();
+    private final Dictionary albums = new Dictionary();
+
+    private byte[] pool = new byte[16 * 1024];
+    private int poolSize;
+    private int poolGarbage;
+
+    private int rows;
+    private int[] freeIds = new int[64];
+    private int freeCount;
+
+    // Interned values: each distinct string once, addressed by its code
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        Dictionary() {
+            code("");
+        }
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+    }
+
+    synchronized int allocate() {
+        int id = freeCount > 0 ? freeIds[--freeCount] : rows++;
+        if (id >= title.length) {
+            int capacity = title.length * 2;
+            folder = Arrays.copyOf(folder, capacity);
+            name = Arrays.copyOf(name, capacity);
+            title = Arrays.copyOf(title, capacity);
+            artist = Arrays.copyOf(artist, capacity);
+            album = Arrays.copyOf(album, capacity);
+            durationMillis = Arrays.copyOf(durationMillis, capacity);
+        }
+        // A reused id must not show anything of the song that had it before
+        folder[id] = EMPTY;
+        name[id] = FREE;
+        title[id] = FREE;
+        artist[id] = EMPTY;
+        album[id] = EMPTY;
+        durationMillis[id] = -1;
+        favorites.clear(id);
+        return id;
+    }
+
+    synchronized void release(int id) {
+        poolGarbage += runLength(name[id]) + runLength(title[id]);
+        name[id] = FREE;
+        title[id] = FREE;
+        favorites.clear(id);
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    // --- columns ---
+
+    synchronized File file(int id) {
+        String parent = folders.value(folder[id]);
+        String fileName = read(name[id]);
+        return parent.isEmpty() ? new File(fileName) : new File(parent, fileName);
+    }
+
+    synchronized void setFile(int id, File file) {
+        String parent = file.getParent();
+        folder[id] = folders.code(parent == null ? "" : parent);
+        name[id] = replace(name[id], file.getName());
+    }
+
+    synchronized String title(int id) {
+        return read(title[id]);
+    }
+
+    synchronized void setTitle(int id, String value) {
+        title[id] = replace(title[id], value);
+    }
+
+    synchronized String artist(int id) {
+        return artists.value(artist[id]);
+    }
+
+    synchronized void setArtist(int id, String value) {
+        artist[id] = artists.code(value == null ? "" : value);
+    }
+
+    synchronized String album(int id) {
+        return albums.value(album[id]);
+    }
+
+    synchronized void setAlbum(int id, String value) {
+        album[id] = albums.code(value == null ? "" : value);
+    }
+
+    // Stored as int: tracks over 24 days are clamped
+    synchronized long durationMillis(int id) {
+        return durationMillis[id];
+    }
+
+    synchronized void setDurationMillis(int id, long millis) {
+        durationMillis[id] = (int) Math.max(-1, Math.min(Integer.MAX_VALUE, millis));
+    }
+
+    synchronized boolean isFavorite(int id) {
+        return favorites.get(id);
+    }
+
+    synchronized void setFavorite(int id, boolean favorite) {
+        favorites.set(id, favorite);
+    }
+
+    synchronized BitSet favoriteIds() {
+        return (BitSet) favorites.clone();
+    }
+
+    // --- string pool: [varint length][UTF-8 bytes] runs ---
+
+    private String read(int offset) {
+        if (offset == FREE) {
+            return null;
+        }
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = pool[offset++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return new String(pool, offset, length, StandardCharsets.UTF_8);
+    }
+
+    private int runLength(int offset) {
+        if (offset == FREE) {
+            return 0;
+        }
+        int length = 0;
+        int shift = 0;
+        int header = 0;
+        byte b;
+        do {
+            b = pool[offset + header++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return header + length;
+    }
+
+    // Writes value as a new run, leaving the old one (if any) as garbage; unchanged values are kept as-is
+    private int replace(int offset, String value) {
+        if (value == null) {
+            poolGarbage += runLength(offset);
+            return FREE;
+        }
+        if (offset != FREE && value.equals(read(offset))) {
+            return offset;
+        }
+        poolGarbage += runLength(offset);
+        if (poolGarbage > MIN_COMPACT_BYTES && poolGarbage > poolSize / 2) {
+            compact();
+        }
+        return append(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int append(byte[] bytes) {
+        int needed = bytes.length + 5;
+        if (poolSize + needed > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + needed));
+        }
+        int offset = poolSize;
+        int length = bytes.length;
+        while (length >= 0x80) {
+            pool[poolSize++] = (byte) (length | 0x80);
+            length >>>= 7;
+        }
+        pool[poolSize++] = (byte) length;
+        System.arraycopy(bytes, 0, pool, poolSize, bytes.length);
+        poolSize += bytes.length;
+        return offset;
+    }
+
+    // Copies the live runs into a fresh pool
+    private void compact() {
+        byte[] old = pool;
+        int[] oldName = name;
+        int[] oldTitle = title;
+        pool = new byte[Math.max(16 * 1024, (poolSize - poolGarbage) * 2)];
+        poolSize = 0;
+        poolGarbage = 0;
+        for (int id = 0; id < rows; id++) {
+            name[id] = copyRun(old, oldName[id]);
+            title[id] = copyRun(old, oldTitle[id]);
+        }
+    }
+
+    private int copyRun(byte[] from, int offset) {
+        if (offset == FREE) {
+            return FREE;
+        }
+        int start = offset;
+        while (from[offset] < 0) {
+            offset++;
+        }
+        int length = 0;
+        int shift = 0;
+        for (int i = start; i <= offset; i++) {
+            length |= (from[i] & 0x7F) << shift;
+            shift += 7;
+        }
+        int runLength = offset + 1 - start + length;
+        if (poolSize + runLength > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + runLength));
+        }
+        System.arraycopy(from, start, pool, poolSize, runLength);
+        int newOffset = poolSize;
+        poolSize += runLength;
+        return newOffset;
+    }
+}
@@ -0,0 +1,42 @@
+package com.musicplayer.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Min/max peaks of a track, one pair per fixed slice of time, as signed bytes (-127..127 for -1..1).
+ * The buffer is usually a read-only memory-mapped view of the on-disk peak cache, so a waveform
+ * costs no heap however long the track is.
+ */
+public final class Waveform {
+
+    private final ByteBuffer peaks;
+    private final int size;
+    private final double secondsPerPeak;
+
+    /** {@code peaks} holds {@code min, max} byte pairs from position 0. */
+    public Waveform(ByteBuffer peaks, double secondsPerPeak) {
+        this.peaks = peaks;
+        this.size = peaks.limit() / 2;
+        this.secondsPerPeak = secondsPerPeak;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getSecondsPerPeak() {
+        return secondsPerPeak;
+    }
+
+    public double getDurationSeconds() {
+        return size * secondsPerPeak;
+    }
+
+    public float minAt(int index) {
+        return peaks.get(2 * index) / 127f;
+    }
+
+    public float maxAt(int index) {
+        return peaks.get(2 * index + 1) / 127f;
+    }
+}
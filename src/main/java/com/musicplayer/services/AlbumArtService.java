@@ -0,0 +1,223 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Lazy album art: embedded cover art is only read when a cell or the now-playing view asks for it.
+ * Playlist thumbnails are downscaled once and kept in an on-disk cache; decoded images live in a
+ * memory-bounded LRU. Songs without art share a single locally generated placeholder per size.
+ *
+ * <p>All public methods are meant to be called on the FX thread; callbacks are delivered there too.
+ */
+public class AlbumArtService {
+
+    public static final int THUMBNAIL_SIZE = 32;
+    public static final int FULL_SIZE = 300;
+
+    private static final long MEMORY_BUDGET_BYTES = 32L * 1024 * 1024;
+
+    private final Path thumbnailDir;
+    private final Image thumbnailPlaceholder;
+    private final Image fullPlaceholder;
+    private final ImageCache memoryCache = new ImageCache(MEMORY_BUDGET_BYTES);
+    private final Map<String, List<Consumer<Image>>> inFlight = new HashMap<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "album-art-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AlbumArtService(Path thumbnailDir) {
+        this.thumbnailDir = thumbnailDir;
+        this.thumbnailPlaceholder = loadPlaceholder(THUMBNAIL_SIZE);
+        this.fullPlaceholder = loadPlaceholder(FULL_SIZE);
+    }
+
+    private Image loadPlaceholder(int size) {
+        return new Image(getClass().getResourceAsStream("/images/no-cover.png"), size, size, true, true);
+    }
+
+    /**
+     * Returns the cached thumbnail, or the shared placeholder while the real one is loaded in the
+     * background; {@code onLoaded} is then called with the thumbnail if the song has embedded art.
+     */
+    public Image getThumbnail(Song song, Consumer<Image> onLoaded) {
+        return get("t:", song, onLoaded, thumbnailPlaceholder, this::loadThumbnail);
+    }
+
+    /** Same as {@link #getThumbnail} for the large now-playing image. Never written to the disk cache. */
+    public Image getFullArt(Song song, Consumer<Image> onLoaded) {
+        return get("f:", song, onLoaded, fullPlaceholder, this::loadFull);
+    }
+
+    public Image getPlaceholder() {
+        return fullPlaceholder;
+    }
+
+    private interface Loader {
+        Image load(File file) throws IOException;
+    }
+
+    private Image get(String prefix, Song song, Consumer<Image> onLoaded, Image placeholder, Loader loader) {
+        File file = song.getFile();
+        String key = prefix + file.getAbsolutePath();
+        Image cached = memoryCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Consumer<Image>> waiters = inFlight.get(key);
+        if (waiters != null) {
+            waiters.add(onLoaded);
+            return placeholder;
+        }
+        waiters = new ArrayList<>();
+        waiters.add(onLoaded);
+        inFlight.put(key, waiters);
+
+        executor.execute(() -> {
+            Image image;
+            try {
+                image = loader.load(file);
+            } catch (IOException | RuntimeException e) {
+                image = null;
+            }
+            Image result = image != null ? image : placeholder;
+            Platform.runLater(() -> {
+                memoryCache.put(key, result);
+                List<Consumer<Image>> callbacks = inFlight.remove(key);
+                if (result != placeholder && callbacks != null) {
+                    for (Consumer<Image> callback : callbacks) {
+                        callback.accept(result);
+                    }
+                }
+            });
+        });
+        return placeholder;
+    }
+
+    private Image loadThumbnail(File file) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        String cacheKey = diskKey(file, attrs);
+        Path thumbnail = thumbnailDir.resolve(cacheKey + ".png");
+        Path noArtMarker = thumbnailDir.resolve(cacheKey + ".none");
+
+        if (Files.exists(thumbnail)) {
+            try (InputStream in = Files.newInputStream(thumbnail)) {
+                return new Image(in);
+            }
+        }
+        if (Files.exists(noArtMarker)) {
+            return null;
+        }
+
+        byte[] art = EmbeddedArtReader.read(file.toPath());
+        Files.createDirectories(thumbnailDir);
+        BufferedImage decoded = art == null ? null : ImageIO.read(new ByteArrayInputStream(art));
+        if (decoded == null) {
+            Files.write(noArtMarker, new byte[0]);
+            return null;
+        }
+
+        BufferedImage scaled = scale(decoded, THUMBNAIL_SIZE);
+        ImageIO.write(scaled, "png", thumbnail.toFile());
+        try (InputStream in = Files.newInputStream(thumbnail)) {
+            return new Image(in);
+        }
+    }
+
+    private Image loadFull(File file) {
+        byte[] art = EmbeddedArtReader.read(file.toPath());
+        if (art == null) {
+            return null;
+        }
+        // Decode straight to the display size so a 3000px cover doesn't become a 36 MB bitmap
+        Image image = new Image(new ByteArrayInputStream(art), FULL_SIZE, FULL_SIZE, true, true);
+        return image.isError() ? null : image;
+    }
+
+    private static BufferedImage scale(BufferedImage source, int size) {
+        double ratio = Math.min((double) size / source.getWidth(), (double) size / source.getHeight());
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return target;
+    }
+
+    static String diskKey(File file, BasicFileAttributes attrs) {
+        return AppPaths.cacheFileName(file.getAbsolutePath() + '|' + attrs.lastModifiedTime().toMillis() + '|' + attrs.size());
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Access-ordered LRU bounded by the decoded size of its images rather than their count
+    private final class ImageCache {
+        private final LinkedHashMap<String, Image> images = new LinkedHashMap<>(256, 0.75f, true);
+        private final long budgetBytes;
+        private long usedBytes;
+
+        ImageCache(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
+        }
+
+        Image get(String key) {
+            return images.get(key);
+        }
+
+        void put(String key, Image image) {
+            Image previous = images.put(key, image);
+            if (previous != null) {
+                usedBytes -= weight(previous);
+            }
+            usedBytes += weight(image);
+
+            Iterator<Map.Entry<String, Image>> it = images.entrySet().iterator();
+            while (usedBytes > budgetBytes && it.hasNext()) {
+                Map.Entry<String, Image> eldest = it.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                usedBytes -= weight(eldest.getValue());
+                it.remove();
+            }
+        }
+
+        private long weight(Image image) {
+            // Shared placeholders are cached by reference, so they cost only the map entry
+            if (image == thumbnailPlaceholder || image == fullPlaceholder) {
+                return 64L;
+            }
+            return (long) image.getWidth() * (long) image.getHeight() * 4L;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.musicplayer.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Per-user data directory for caches and catalogs that survive restarts
+public final class AppPaths {
+
+    private static final Path DATA_DIR = Paths.get(System.getProperty("user.home"), ".musicplayer");
+
+    private AppPaths() {
+    }
+
+    public static Path dataDir() {
+        return DATA_DIR;
+    }
+
+    public static Path resolve(String name) {
+        Path path = DATA_DIR.resolve(name);
+        try {
+            Files.createDirectories(path.getParent());
+        } catch (IOException ignored) {
+            // Callers treat a missing data directory like an empty cache
+        }
+        return path;
+    }
+
+    /** Stable, filesystem-safe file name for an arbitrary cache key. */
+    public static String cacheFileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.musicplayer.services;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Streaming PCM source for analysing audio outside the media player, e.g. computing waveform peaks.
+ * {@link WavDecoder} handles what {@code javax.sound.sampled} can read; other formats plug in by
+ * registering another decoder with {@link WaveformService#addDecoder}.
+ */
+public interface AudioDecoder {
+
+    boolean canDecode(File file);
+
+    /** Throws {@link UnsupportedFormatException} if the file's content turns out not to be decodable. */
+    Stream open(File file) throws IOException;
+
+    /** The file can't be decoded as it is, as opposed to failing to read it right now. */
+    class UnsupportedFormatException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedFormatException(String message) {
+            super(message);
+        }
+
+        public UnsupportedFormatException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    interface Stream extends Closeable {
+        float getSampleRate();
+
+        int getChannels();
+
+        /** Fills {@code samples} with interleaved samples in [-1, 1]; returns how many, or -1 at the end. */
+        int read(float[] samples) throws IOException;
+    }
+}
@@ -1,115 +1,290 @@
 package com.musicplayer.services;
 
 import com.musicplayer.model.Song;
+import javafx.application.Platform;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
 import javafx.util.Duration;
 
-public class AudioService {
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class AudioService implements PlaybackEngine.Player {
 
     private MediaPlayer mediaPlayer;
     private Song currentSong;
     private boolean isPlaying = false;
+    // Carried over to every newly loaded player
+    private double volume = 1.0;
+    private boolean muted;
+
+    private static final Metrics.Histogram LOAD_TO_READY = Metrics.timer("audio.load.ready");
+    private static final Metrics.Histogram LOAD_TO_PLAYING = Metrics.timer("audio.load.playing");
+
+    private static final int MAX_WARM_PLAYERS = 2;
+    private static final long MAX_WARM_BYTES = 256L * 1024 * 1024;
+    private final Map<Song, MediaPlayer> warmPlayers = new IdentityHashMap<>();
+
+    private long transitionStartNanos;
+    private long lastTransitionNanos;
+    private long totalTransitionNanos;
+    private long transitions;
+    private long warmHits;
+    private long coldStarts;
+    // Metrics.start() of the pending load, cleared once it reports ready
+    private long loadStartNanos;
+    private boolean loadWasWarm;
 
     public interface PlaybackListener {
 
         void onReady(Song song, Duration totalDuration);
 
-        void onTimeUpdate(Duration currentTime);
-
         void onPlaybackEnd();
 
         void onError(String message);
     }
 
     private PlaybackListener listener;
+    private final PlaybackTickScheduler ticks = new PlaybackTickScheduler(this::getCurrentSeconds);
+    private final SeekScheduler seeks = new SeekScheduler(seconds -> {
+        if (mediaPlayer != null) {
+            mediaPlayer.seek(Duration.seconds(seconds));
+            ticks.requestTick();
+        }
+    }, () -> mediaPlayer != null ? mediaPlayer.getCurrentTime().toSeconds() : 0);
+
+    /** Position updates for the UI; subscribe with the rate each consumer actually needs. */
+    public PlaybackTickScheduler getTicks() {
+        return ticks;
+    }
 
+    @Override
     public void setPlaybackListener(PlaybackListener listener) {
         this.listener = listener;
     }
 
+    @Override
     public void loadSong(Song song) {
+        transitionStartNanos = System.nanoTime();
+        loadStartNanos = Metrics.start();
+        seeks.reset();
         if (mediaPlayer != null) {
             mediaPlayer.dispose();
+            mediaPlayer = null;
         }
 
         try {
-            Media media = new Media(song.getFile().toURI().toString());
-            mediaPlayer = new MediaPlayer(media);
+            MediaPlayer warm = warmPlayers.remove(song);
+            if (warm != null && warm.getStatus() != MediaPlayer.Status.HALTED) {
+                warmHits++;
+                loadWasWarm = true;
+                mediaPlayer = warm;
+            } else {
+                if (warm != null) {
+                    warm.dispose();
+                }
+                coldStarts++;
+                loadWasWarm = false;
+                mediaPlayer = new MediaPlayer(new Media(song.getFile().toURI().toString()));
+            }
             currentSong = song;
+            mediaPlayer.setVolume(volume);
+            mediaPlayer.setMute(muted);
+            attach(mediaPlayer, song);
 
-            mediaPlayer.setOnReady(() -> {
-                if (listener != null) {
-                    listener.onReady(song, mediaPlayer.getTotalDuration());
-                }
-            });
+        } catch (Exception e) {
+            if (listener != null) {
+                listener.onError("Error loading song: " + e.getMessage());
+            }
+        }
+    }
 
-            mediaPlayer.currentTimeProperty().addListener((obs, oldTime, newTime) -> {
-                if (listener != null) {
-                    listener.onTimeUpdate(newTime);
+    private void attach(MediaPlayer player, Song song) {
+        player.setOnReady(() -> {
+            recordReady(player);
+            if (listener != null) {
+                listener.onReady(song, player.getTotalDuration());
+            }
+        });
+        if (player.getStatus() == MediaPlayer.Status.READY) {
+            // Pre-warmed player already fired its own onReady; replay it for the listener
+            Platform.runLater(() -> {
+                recordReady(player);
+                if (mediaPlayer == player && listener != null) {
+                    listener.onReady(song, player.getTotalDuration());
                 }
             });
+        }
 
-            mediaPlayer.setOnEndOfMedia(() -> {
-                if (listener != null) {
-                    listener.onPlaybackEnd();
-                }
-            });
+        player.setOnPlaying(() -> {
+            if (transitionStartNanos != 0) {
+                lastTransitionNanos = System.nanoTime() - transitionStartNanos;
+                totalTransitionNanos += lastTransitionNanos;
+                LOAD_TO_PLAYING.record(lastTransitionNanos, loadWasWarm ? "warm" : "cold");
+                transitions++;
+                transitionStartNanos = 0;
+            }
+        });
 
-            mediaPlayer.setOnError(() -> {
-                if (listener != null) {
-                    listener.onError(mediaPlayer.getError().getMessage());
-                }
-            });
+        player.setOnEndOfMedia(() -> {
+            if (listener != null) {
+                listener.onPlaybackEnd();
+            }
+        });
 
-        } catch (Exception e) {
+        player.setOnError(() -> {
             if (listener != null) {
-                listener.onError("Error loading song: " + e.getMessage());
+                listener.onError(player.getError().getMessage());
+            }
+        });
+    }
+
+    private void recordReady(MediaPlayer player) {
+        if (mediaPlayer == player && loadStartNanos != 0) {
+            LOAD_TO_READY.recordSince(loadStartNanos, loadWasWarm ? "warm" : "cold");
+            loadStartNanos = 0;
+        }
+    }
+
+    /**
+     * Opens players for the tracks likely to be played next (in priority order) so switching to one of
+     * them is a handoff instead of a cold open. Keeps at most {@link #MAX_WARM_PLAYERS} players whose
+     * files add up to at most {@link #MAX_WARM_BYTES}; anything no longer wanted is disposed.
+     */
+    public void preload(List<Song> candidates) {
+        Set<Song> wanted = Collections.newSetFromMap(new IdentityHashMap<>());
+        long budget = MAX_WARM_BYTES;
+        for (Song candidate : candidates) {
+            if (wanted.size() == MAX_WARM_PLAYERS) {
+                break;
+            }
+            if (candidate == null || candidate == currentSong || wanted.contains(candidate)) {
+                continue;
+            }
+            long size = candidate.getFile().length();
+            if (size > budget) {
+                continue;
+            }
+            budget -= size;
+            wanted.add(candidate);
+        }
+
+        Iterator<Map.Entry<Song, MediaPlayer>> it = warmPlayers.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Song, MediaPlayer> entry = it.next();
+            if (!wanted.contains(entry.getKey())) {
+                entry.getValue().dispose();
+                it.remove();
+            }
+        }
+
+        for (Song song : wanted) {
+            if (!warmPlayers.containsKey(song)) {
+                try {
+                    MediaPlayer player = new MediaPlayer(new Media(song.getFile().toURI().toString()));
+                    // Errors surface again (and are reported) if the song is actually played
+                    player.setOnError(() -> { });
+                    warmPlayers.put(song, player);
+                } catch (Exception ignored) {
+                    // Unplayable file: it will take the cold path and report its error then
+                }
             }
         }
     }
 
+    /** Time from {@link #loadSong} to audio actually starting, for the most recent track switch. */
+    public double getLastTransitionMillis() {
+        return lastTransitionNanos / 1_000_000.0;
+    }
+
+    public double getAverageTransitionMillis() {
+        return transitions == 0 ? 0 : totalTransitionNanos / 1_000_000.0 / transitions;
+    }
+
+    public long getWarmHits() {
+        return warmHits;
+    }
+
+    public long getColdStarts() {
+        return coldStarts;
+    }
+
+    /** Time from issuing the most recent seek to the player reaching its target. */
+    public double getLastSeekLatencyMillis() {
+        return seeks.getLastLatencyMillis();
+    }
+
+    @Override
     public void play() {
         if (mediaPlayer != null) {
             mediaPlayer.play();
             isPlaying = true;
+            ticks.start();
         }
     }
 
+    @Override
     public void pause() {
         if (mediaPlayer != null) {
             mediaPlayer.pause();
             isPlaying = false;
+            ticks.stop();
         }
     }
 
+    @Override
     public void stop() {
         if (mediaPlayer != null) {
+            seeks.reset();
             mediaPlayer.stop();
             isPlaying = false;
+            ticks.stop();
+            ticks.requestTick();
         }
     }
 
+    @Override
+    public void restart() {
+        seek(Duration.ZERO);
+        play();
+    }
+
+    /**
+     * Seeks to the position, coalesced with other seeks (see {@link SeekScheduler}): safe to call for
+     * every drag event. The reported position moves to the target right away.
+     */
     public void seek(Duration duration) {
         if (mediaPlayer != null) {
-            mediaPlayer.seek(duration);
+            seeks.seek(duration.toSeconds());
+            ticks.requestTick();
         }
     }
 
     public void setVolume(double volume) {
+        this.volume = volume;
         if (mediaPlayer != null) {
             mediaPlayer.setVolume(volume);
         }
     }
 
     public void setMute(boolean mute) {
+        this.muted = mute;
         if (mediaPlayer != null) {
             mediaPlayer.setMute(mute);
         }
     }
 
     public Duration getCurrentTime() {
-        return mediaPlayer != null ? mediaPlayer.getCurrentTime() : Duration.ZERO;
+        return Duration.seconds(getCurrentSeconds());
+    }
+
+    // The target of a seek still in progress counts as the position, so the UI doesn't jump back
+    public double getCurrentSeconds() {
+        return mediaPlayer != null ? seeks.positionSeconds() : 0;
     }
 
     public Duration getTotalDuration() {
@@ -125,9 +300,15 @@ public class AudioService {
     }
 
     public void dispose() {
+        ticks.stop();
+        seeks.reset();
         if (mediaPlayer != null) {
             mediaPlayer.dispose();
             mediaPlayer = null;
         }
+        for (MediaPlayer warm : warmPlayers.values()) {
+            warm.dispose();
+        }
+        warmPlayers.clear();
     }
 }
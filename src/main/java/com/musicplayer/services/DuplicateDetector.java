@@ -0,0 +1,548 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds duplicate tracks in three passes, each over the songs not already grouped by an earlier one:
+ * <ol>
+ * <li>the same file under different paths (same file key / inode), found from a stat alone;</li>
+ * <li>identical audio: songs with the same audio payload length (the file minus ID3v2 and ID3v1
+ * tags) are compared by a hash of up to three sampled windows of the payload, so retagged copies
+ * still match;</li>
+ * <li>the same recording in another file (e.g. a re-encode): same normalized artist and title with
+ * durations within {@link #SAME_TRACK_TOLERANCE_MILLIS}.</li>
+ * </ol>
+ * Only files that share a payload length are hashed, and reads go through a small pool and a byte-rate
+ * cap so a library-wide scan doesn't starve playback. Payload bounds and hashes are cached on disk by
+ * path, size and modification time, so a rescan only stats unchanged files.
+ */
+public class DuplicateDetector {
+
+    public enum Kind {
+        SAME_FILE, IDENTICAL_AUDIO, SAME_TRACK
+    }
+
+    /** Songs that are copies of each other; the first is the one to keep (the earliest in the input). */
+    public static final class Group {
+        private final Kind kind;
+        private final List<Song> songs;
+        private final int order;
+
+        Group(Kind kind, List<Song> songs, int order) {
+            this.kind = kind;
+            this.order = order;
+            this.songs = Collections.unmodifiableList(songs);
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public List<Song> getSongs() {
+            return songs;
+        }
+
+        public Song getOriginal() {
+            return songs.get(0);
+        }
+
+        public List<Song> getCopies() {
+            return songs.subList(1, songs.size());
+        }
+    }
+
+    static final long SAME_TRACK_TOLERANCE_MILLIS = 2000;
+
+    private static final int MAGIC = 0x4D504348; // "MPCH"
+    private static final int VERSION = 1;
+    private static final int IO_THREADS = 4;
+    private static final int STAT_THRESHOLD = 64;
+    private static final int WINDOW_BYTES = 64 * 1024;
+    private static final long MAX_BYTES_PER_SECOND = 96L * 1024 * 1024;
+
+    private static final Metrics.Histogram SCAN_TIME = Metrics.timer("duplicates.scan");
+    private static final Metrics.Counter HASHED = Metrics.counter("duplicates.hashed");
+    private static final Metrics.Counter HASH_CACHE_HITS = Metrics.counter("duplicates.hash.cached");
+
+    private final Path cacheFile;
+    private final Map<String, CachedHash> hashes = new ConcurrentHashMap<>();
+    private boolean cacheLoaded;
+    private volatile boolean cacheDirty;
+    private final ForkJoinPool pool = new ForkJoinPool(IO_THREADS);
+    private final Object throttleLock = new Object();
+    private long throttleNextNanos;
+
+    // What a scan learned about one file; hashed is false when only the payload was located
+    private static final class CachedHash {
+        final long lastModified;
+        final long size;
+        final long payloadStart;
+        final long payloadLength;
+        final boolean hashed;
+        final long hash;
+
+        CachedHash(long lastModified, long size, long payloadStart, long payloadLength, boolean hashed, long hash) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.payloadStart = payloadStart;
+            this.payloadLength = payloadLength;
+            this.hashed = hashed;
+            this.hash = hash;
+        }
+    }
+
+    // Song fields snapshotted on the calling thread, plus what the scan learns about the file
+    private static final class Candidate {
+        final int order;
+        final Song song;
+        final File file;
+        final String trackKey;
+        final long durationMillis;
+        Object fileKey;
+        long size = -1;
+        long lastModified;
+        long payloadStart;
+        long payloadLength = -1;
+        long hash;
+        boolean grouped;
+
+        Candidate(int order, Song song) {
+            this.order = order;
+            this.song = song;
+            this.file = song.getFile();
+            this.trackKey = trackKey(song.getArtist(), song.getTitle());
+            this.durationMillis = song.getDurationMillis();
+        }
+    }
+
+    public DuplicateDetector(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /** Library-wide scan. Call on the FX thread; the songs are snapshotted before returning. */
+    public CompletableFuture<List<Group>> scanAsync(List<Song> songs) {
+        List<Candidate> candidates = snapshot(songs);
+        return CompletableFuture.supplyAsync(() -> find(candidates, 0), pool);
+    }
+
+    /**
+     * Duplicates involving at least one of {@code added} (e.g. a fresh import), which are compared
+     * against each other and against {@code library}. Every library song is still stat'ed. A library
+     * song big enough to hold an added song's audio payload has its payload located (two small reads,
+     * skipped when cached), and is hashed only if its payload length equals an added song's.
+     */
+    public CompletableFuture<List<Group>> findAsync(List<Song> library, List<Song> added) {
+        List<Song> all = new ArrayList<>(library.size() + added.size());
+        all.addAll(library);
+        all.addAll(added);
+        List<Candidate> candidates = snapshot(all);
+        int firstAdded = library.size();
+        return CompletableFuture.supplyAsync(() -> find(candidates, firstAdded), pool);
+    }
+
+    private static List<Candidate> snapshot(List<Song> songs) {
+        List<Candidate> candidates = new ArrayList<>(songs.size());
+        for (int i = 0; i < songs.size(); i++) {
+            candidates.add(new Candidate(i, songs.get(i)));
+        }
+        return candidates;
+    }
+
+    // Groups must contain a candidate at or after firstNew (0 for a full scan)
+    private List<Group> find(List<Candidate> all, int firstNew) {
+        long started = Metrics.start();
+        loadCache();
+        List<Group> groups = new ArrayList<>();
+
+        // Pass 1: same file, from a stat of every song
+        new StatTask(all, 0, all.size()).invoke();
+        Map<Object, List<Candidate>> byFile = new LinkedHashMap<>();
+        for (Candidate candidate : all) {
+            if (candidate.size >= 0) {
+                byFile.computeIfAbsent(candidate.fileKey, key -> new ArrayList<>()).add(candidate);
+            }
+        }
+        collect(byFile.values(), Kind.SAME_FILE, firstNew, groups);
+
+        // Pass 2: identical audio. Freshly imported songs have no duration until their tags are probed,
+        // so the first bucket is the payload length: two small reads per file, and cached after that
+        List<Candidate> needPayload = new ArrayList<>();
+        for (int i = firstNew; i < all.size(); i++) {
+            Candidate candidate = all.get(i);
+            if (!candidate.grouped && candidate.size >= 0) {
+                needPayload.add(candidate);
+            }
+        }
+        new ReadTask(needPayload, 0, needPayload.size(), false).invoke();
+        // A payload is never longer than its file, so a library song smaller than every new song's
+        // payload can't share one
+        long smallestNewPayload = Long.MAX_VALUE;
+        for (Candidate candidate : needPayload) {
+            if (candidate.payloadLength >= 0) {
+                smallestNewPayload = Math.min(smallestNewPayload, candidate.payloadLength);
+            }
+        }
+        int newCount = needPayload.size();
+        for (int i = 0; i < firstNew; i++) {
+            Candidate candidate = all.get(i);
+            if (!candidate.grouped && candidate.size >= smallestNewPayload) {
+                needPayload.add(candidate);
+            }
+        }
+        new ReadTask(needPayload, newCount, needPayload.size(), false).invoke();
+        Map<Long, List<Candidate>> byPayload = new LinkedHashMap<>();
+        for (Candidate candidate : needPayload) {
+            if (candidate.payloadLength >= 0) {
+                byPayload.computeIfAbsent(candidate.payloadLength, k -> new ArrayList<>()).add(candidate);
+            }
+        }
+        List<Candidate> needHash = new ArrayList<>();
+        for (List<Candidate> bucket : byPayload.values()) {
+            if (bucket.size() > 1 && touchesNew(bucket, firstNew)) {
+                needHash.addAll(bucket);
+            }
+        }
+        new ReadTask(needHash, 0, needHash.size(), true).invoke();
+        Map<String, List<Candidate>> byHash = new LinkedHashMap<>();
+        for (Candidate candidate : needHash) {
+            if (candidate.payloadLength >= 0) {
+                String key = candidate.payloadLength + ":" + Long.toHexString(candidate.hash);
+                byHash.computeIfAbsent(key, k -> new ArrayList<>()).add(candidate);
+            }
+        }
+        collect(byHash.values(), Kind.IDENTICAL_AUDIO, firstNew, groups);
+
+        // Pass 3: same recording in a different file, from tags and durations alone
+        Map<String, List<Candidate>> byTrack = new HashMap<>();
+        for (Candidate candidate : all) {
+            if (!candidate.grouped && candidate.trackKey != null && candidate.durationMillis > 0) {
+                byTrack.computeIfAbsent(candidate.trackKey, k -> new ArrayList<>()).add(candidate);
+            }
+        }
+        List<List<Candidate>> sameTrack = new ArrayList<>();
+        for (List<Candidate> bucket : byTrack.values()) {
+            if (bucket.size() < 2) {
+                continue;
+            }
+            bucket.sort(Comparator.comparingLong(c -> c.durationMillis));
+            List<Candidate> run = new ArrayList<>();
+            for (Candidate candidate : bucket) {
+                if (!run.isEmpty() && candidate.durationMillis - run.get(0).durationMillis > SAME_TRACK_TOLERANCE_MILLIS) {
+                    sameTrack.add(run);
+                    run = new ArrayList<>();
+                }
+                run.add(candidate);
+            }
+            sameTrack.add(run);
+        }
+        collect(sameTrack, Kind.SAME_TRACK, firstNew, groups);
+
+        groups.sort(Comparator.comparingInt(group -> group.order));
+        saveCache();
+        SCAN_TIME.recordSince(started, firstNew == 0 ? "library" : "import");
+        return groups;
+    }
+
+    private static boolean touchesNew(List<Candidate> bucket, int firstNew) {
+        for (Candidate candidate : bucket) {
+            if (candidate.order >= firstNew) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void collect(Iterable<List<Candidate>> buckets, Kind kind, int firstNew, List<Group> groups) {
+        for (List<Candidate> bucket : buckets) {
+            if (bucket.size() < 2 || !touchesNew(bucket, firstNew)) {
+                continue;
+            }
+            bucket.sort(Comparator.comparingInt(c -> c.order));
+            List<Song> songs = new ArrayList<>(bucket.size());
+            for (Candidate candidate : bucket) {
+                songs.add(candidate.song);
+                // The original stays available to later passes, so a re-encode of it is still found
+                candidate.grouped = candidate != bucket.get(0);
+            }
+            groups.add(new Group(kind, songs, bucket.get(0).order));
+        }
+    }
+
+    static String trackKey(String artist, String title) {
+        if (artist == null || title == null || artist.equals("Unknown Artist")) {
+            return null;
+        }
+        String key = normalize(artist) + '\0' + normalize(title);
+        return key.length() > 1 ? key : null;
+    }
+
+    // Case, punctuation and spacing differences don't make a different track
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    // --- file access ---
+
+    private static void stat(Candidate candidate) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(candidate.file.toPath(), BasicFileAttributes.class);
+            candidate.size = attrs.size();
+            candidate.lastModified = attrs.lastModifiedTime().toMillis();
+            // No file key (e.g. Windows): the canonical path is the next best identity
+            candidate.fileKey = attrs.fileKey() != null ? attrs.fileKey() : candidate.file.getCanonicalPath();
+        } catch (IOException e) {
+            candidate.size = -1;
+        }
+    }
+
+    // Audio payload: the file minus a leading ID3v2 tag (and its footer) and a trailing ID3v1 tag
+    private static void locatePayload(Candidate candidate, FileChannel channel) throws IOException {
+        long start = 0;
+        ByteBuffer header = EmbeddedArtReader.readFully(channel, 0, 10);
+        if (header.remaining() == 10 && header.get(0) == 'I' && header.get(1) == 'D' && header.get(2) == '3') {
+            start = 10 + EmbeddedArtReader.syncsafe(header, 6) + ((header.get(5) & 0x10) != 0 ? 10 : 0);
+        }
+        long end = channel.size();
+        if (end - start >= 128) {
+            ByteBuffer tail = EmbeddedArtReader.readFully(channel, end - 128, 3);
+            if (tail.remaining() == 3 && tail.get(0) == 'T' && tail.get(1) == 'A' && tail.get(2) == 'G') {
+                end -= 128;
+            }
+        }
+        candidate.payloadStart = Math.min(start, end);
+        candidate.payloadLength = end - candidate.payloadStart;
+    }
+
+    // Hash of the payload length and up to three windows (start, middle, end) of the payload
+    private long hashPayload(Candidate candidate, FileChannel channel) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long length = candidate.payloadLength;
+        digest.update(ByteBuffer.allocate(8).putLong(0, length));
+        long[] offsets = length <= 3L * WINDOW_BYTES
+                ? new long[] {0}
+                : new long[] {0, length / 2 - WINDOW_BYTES / 2, length - WINDOW_BYTES};
+        int window = (int) Math.min(length <= 3L * WINDOW_BYTES ? length : WINDOW_BYTES, Integer.MAX_VALUE);
+        for (long offset : offsets) {
+            throttle(window);
+            ByteBuffer data = EmbeddedArtReader.readFully(channel, candidate.payloadStart + offset, window);
+            digest.update(data);
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    private void read(Candidate candidate, boolean hash) {
+        if (candidate.size < 0) {
+            return;
+        }
+        String path = candidate.file.getAbsolutePath();
+        CachedHash cached = hashes.get(path);
+        if (cached != null && cached.lastModified == candidate.lastModified && cached.size == candidate.size) {
+            candidate.payloadStart = cached.payloadStart;
+            candidate.payloadLength = cached.payloadLength;
+            if (!hash) {
+                return;
+            }
+            if (cached.hashed) {
+                candidate.hash = cached.hash;
+                HASH_CACHE_HITS.increment();
+                return;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(candidate.file.toPath(), StandardOpenOption.READ)) {
+            if (candidate.payloadLength < 0) {
+                throttle(138);
+                locatePayload(candidate, channel);
+            }
+            if (hash) {
+                candidate.hash = hashPayload(candidate, channel);
+                HASHED.increment();
+            }
+            hashes.put(path, new CachedHash(candidate.lastModified, candidate.size,
+                    candidate.payloadStart, candidate.payloadLength, hash, candidate.hash));
+            cacheDirty = true;
+        } catch (IOException e) {
+            candidate.payloadLength = -1; // unreadable: can't be shown to be a copy
+        }
+    }
+
+    // Spaces reads out to at most MAX_BYTES_PER_SECOND across all reader threads
+    private void throttle(long bytes) {
+        long waitNanos;
+        synchronized (throttleLock) {
+            long now = System.nanoTime();
+            throttleNextNanos = Math.max(throttleNextNanos, now) + bytes * 1_000_000_000L / MAX_BYTES_PER_SECOND;
+            waitNanos = throttleNextNanos - now;
+        }
+        if (waitNanos > 1_000_000) {
+            try {
+                Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final class StatTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Candidate> candidates;
+        private final int from;
+        private final int to;
+
+        StatTask(List<Candidate> candidates, int from, int to) {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= STAT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    stat(candidates.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new StatTask(candidates, from, middle), new StatTask(candidates, middle, to));
+        }
+    }
+
+    // Locates payloads, or hashes them; one file per leaf so slow files don't hold up a whole slice
+    private final class ReadTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Candidate> candidates;
+        private final int from;
+        private final int to;
+        private final boolean hash;
+
+        ReadTask(List<Candidate> candidates, int from, int to, boolean hash) {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.hash = hash;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                read(candidates.get(from), hash);
+                return;
+            }
+            if (to <= from) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ReadTask(candidates, from, middle, hash), new ReadTask(candidates, middle, to, hash));
+        }
+    }
+
+    // --- hash cache ---
+
+    private synchronized void loadCache() {
+        if (cacheLoaded) {
+            return;
+        }
+        cacheLoaded = true;
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(cacheFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                hashes.put(path, new CachedHash(in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                        in.readBoolean(), in.readLong()));
+            }
+        } catch (EOFException e) {
+            cacheDirty = true; // truncated: keep what was read and write a clean copy next time
+        } catch (IOException e) {
+            // Only a cache: files are hashed again as needed
+        }
+    }
+
+    private synchronized void saveCache() {
+        if (!cacheDirty) {
+            return;
+        }
+        cacheDirty = false;
+        Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try {
+            Map<String, CachedHash> snapshot = new HashMap<>(hashes);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, CachedHash> entry : snapshot.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    CachedHash cached = entry.getValue();
+                    out.writeLong(cached.lastModified);
+                    out.writeLong(cached.size);
+                    out.writeLong(cached.payloadStart);
+                    out.writeLong(cached.payloadLength);
+                    out.writeBoolean(cached.hashed);
+                    out.writeLong(cached.hash);
+                }
+            }
+            try {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // Only a cache: the hashes are recomputed next time
+            cacheDirty = true;
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
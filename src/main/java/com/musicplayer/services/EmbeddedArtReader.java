@@ -0,0 +1,213 @@
+package com.musicplayer.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Pulls the embedded cover picture out of a file's tags without decoding any audio:
+ * ID3v2 APIC/PIC frames (MP3, AAC and WAV "id3 " chunks) and the MP4 moov/udta/meta/ilst/covr atom.
+ */
+final class EmbeddedArtReader {
+
+    // Tags bigger than this are almost certainly corrupt; don't try to buffer them
+    private static final int MAX_TAG_BYTES = 16 * 1024 * 1024;
+
+    private EmbeddedArtReader() {
+    }
+
+    static byte[] read(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (name.endsWith(".m4a")) {
+                return readMp4Cover(channel);
+            } else if (name.endsWith(".wav")) {
+                return readRiffId3(channel);
+            } else {
+                return readId3v2Picture(channel, 0);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Malformed tags are treated the same as missing art
+            return null;
+        }
+    }
+
+    static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // --- ID3v2 ---
+
+    static byte[] readId3v2Picture(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = readFully(channel, offset, 10);
+        if (header.remaining() < 10 || header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') {
+            return null;
+        }
+        int major = header.get(3);
+        int flags = header.get(5);
+        int tagSize = syncsafe(header, 6);
+        if (tagSize <= 0 || tagSize > MAX_TAG_BYTES) {
+            return null;
+        }
+
+        ByteBuffer tag = readFully(channel, offset + 10, tagSize);
+        if ((flags & 0x40) != 0 && major >= 3) {
+            // Skip the extended header
+            int extSize = major == 4 ? syncsafe(tag, 0) : tag.getInt(0) + 4;
+            tag.position(Math.min(tag.limit(), extSize));
+        }
+
+        int idLength = major == 2 ? 3 : 4;
+        int headerLength = major == 2 ? 6 : 10;
+        while (tag.remaining() >= headerLength) {
+            int start = tag.position();
+            if (tag.get(start) == 0) {
+                break; // padding
+            }
+            String id = new String(tag.array(), start, idLength, StandardCharsets.ISO_8859_1);
+            int size;
+            if (major == 2) {
+                size = ((tag.get(start + 3) & 0xFF) << 16) | ((tag.get(start + 4) & 0xFF) << 8) | (tag.get(start + 5) & 0xFF);
+            } else if (major == 4) {
+                size = syncsafe(tag, start + 4);
+            } else {
+                size = tag.getInt(start + 4);
+            }
+            int body = start + headerLength;
+            if (size <= 0 || body + size > tag.limit()) {
+                break;
+            }
+            if (id.equals("APIC") || id.equals("PIC")) {
+                return extractPicture(tag.array(), body, size, major == 2);
+            }
+            tag.position(body + size);
+        }
+        return null;
+    }
+
+    private static byte[] extractPicture(byte[] data, int offset, int length, boolean v22) {
+        int end = offset + length;
+        int encoding = data[offset];
+        int pos = offset + 1;
+        if (v22) {
+            pos += 3; // image format, e.g. "JPG"
+        } else {
+            while (pos < end && data[pos] != 0) {
+                pos++; // MIME type
+            }
+            pos++;
+        }
+        pos++; // picture type
+        // Description, terminated by one or two zero bytes depending on the text encoding
+        if (encoding == 1 || encoding == 2) {
+            while (pos + 1 < end && !(data[pos] == 0 && data[pos + 1] == 0)) {
+                pos += 2;
+            }
+            pos += 2;
+        } else {
+            while (pos < end && data[pos] != 0) {
+                pos++;
+            }
+            pos++;
+        }
+        if (pos >= end) {
+            return null;
+        }
+        byte[] picture = new byte[end - pos];
+        System.arraycopy(data, pos, picture, 0, picture.length);
+        return picture;
+    }
+
+    static int syncsafe(ByteBuffer buffer, int index) {
+        return ((buffer.get(index) & 0x7F) << 21) | ((buffer.get(index + 1) & 0x7F) << 14)
+                | ((buffer.get(index + 2) & 0x7F) << 7) | (buffer.get(index + 3) & 0x7F);
+    }
+
+    // --- RIFF/WAV ---
+
+    private static byte[] readRiffId3(FileChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, 0, 12);
+        if (header.remaining() < 12 || !fourCc(header, 0).equals("RIFF") || !fourCc(header, 8).equals("WAVE")) {
+            return null;
+        }
+        long pos = 12;
+        long size = channel.size();
+        while (pos + 8 <= size) {
+            ByteBuffer chunk = readFully(channel, pos, 8);
+            String id = fourCc(chunk, 0);
+            long chunkSize = Integer.toUnsignedLong(Integer.reverseBytes(chunk.getInt(4)));
+            if (id.equalsIgnoreCase("id3 ")) {
+                return readId3v2Picture(channel, pos + 8);
+            }
+            pos += 8 + chunkSize + (chunkSize & 1);
+        }
+        return null;
+    }
+
+    // --- MP4 ---
+
+    private static byte[] readMp4Cover(FileChannel channel) throws IOException {
+        long[] moov = findAtom(channel, 0, channel.size(), "moov");
+        long[] udta = moov == null ? null : findAtom(channel, moov[0], moov[1], "udta");
+        long[] meta = udta == null ? null : findAtom(channel, udta[0], udta[1], "meta");
+        // "meta" is a full atom: 4 bytes of version/flags precede its children
+        long[] ilst = meta == null ? null : findAtom(channel, meta[0] + 4, meta[1], "ilst");
+        long[] covr = ilst == null ? null : findAtom(channel, ilst[0], ilst[1], "covr");
+        long[] data = covr == null ? null : findAtom(channel, covr[0], covr[1], "data");
+        if (data == null) {
+            return null;
+        }
+        // data atom payload: 4 bytes type + 4 bytes locale, then the image
+        long length = data[1] - data[0] - 8;
+        if (length <= 0 || length > MAX_TAG_BYTES) {
+            return null;
+        }
+        ByteBuffer image = readFully(channel, data[0] + 8, (int) length);
+        byte[] bytes = new byte[image.remaining()];
+        image.get(bytes);
+        return bytes;
+    }
+
+    /** Returns {payloadStart, payloadEnd} of the first child atom with the given type, or null. */
+    static long[] findAtom(FileChannel channel, long start, long end, String type) throws IOException {
+        long pos = start;
+        while (pos + 8 <= end) {
+            ByteBuffer header = readFully(channel, pos, 16);
+            if (header.remaining() < 8) {
+                return null;
+            }
+            long size = Integer.toUnsignedLong(header.getInt(0));
+            int headerLength = 8;
+            if (size == 1 && header.remaining() >= 16) {
+                size = header.getLong(8);
+                headerLength = 16;
+            } else if (size == 0) {
+                size = end - pos;
+            }
+            if (size < headerLength) {
+                return null;
+            }
+            if (fourCc(header, 4).equals(type)) {
+                return new long[]{pos + headerLength, Math.min(end, pos + size)};
+            }
+            pos += size;
+        }
+        return null;
+    }
+
+    static String fourCc(ByteBuffer buffer, int index) {
+        return new String(new byte[]{buffer.get(index), buffer.get(index + 1), buffer.get(index + 2), buffer.get(index + 3)},
+                StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,47 @@
+package com.musicplayer.services;
+
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Collects items from any number of worker threads and drains them on the FX thread in batches,
+// keeping at most one pending Platform.runLater at a time.
+final class FxBatchPublisher<T> {
+
+    private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final int maxBatch;
+    private final Consumer<List<T>> onBatch;
+
+    FxBatchPublisher(int maxBatch, Consumer<List<T>> onBatch) {
+        this.maxBatch = maxBatch;
+        this.onBatch = onBatch;
+    }
+
+    void add(T item) {
+        queue.add(item);
+        if (drainScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::drain);
+        }
+    }
+
+    private void drain() {
+        List<T> batch = new ArrayList<>();
+        T item;
+        while (batch.size() < maxBatch && (item = queue.poll()) != null) {
+            batch.add(item);
+        }
+        drainScheduled.set(false);
+        if (!queue.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::drain);
+        }
+        if (!batch.isEmpty()) {
+            onBatch.accept(batch);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.musicplayer.services;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Detects FX application thread stalls: a probe is posted with Platform.runLater every PROBE_MILLIS
+// and the delay until it runs is how long the thread was busy. One probe is in flight at a time,
+// and none while metrics aren't being recorded.
+final class FxStallMonitor {
+
+    private static final long PROBE_MILLIS = 100;
+    private static final Metrics.Histogram STALLS = Metrics.timer("fx.stall");
+
+    private static final AtomicBoolean started = new AtomicBoolean();
+    private static final AtomicBoolean probePending = new AtomicBoolean();
+
+    private FxStallMonitor() {
+    }
+
+    static void start(long thresholdMillis) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fx-stall-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            if (!Metrics.isActive() || !probePending.compareAndSet(false, true)) {
+                return;
+            }
+            long posted = System.nanoTime();
+            Platform.runLater(() -> {
+                long lag = System.nanoTime() - posted;
+                probePending.set(false);
+                if (lag >= thresholdNanos) {
+                    STALLS.record(lag);
+                }
+            });
+        }, PROBE_MILLIS, PROBE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
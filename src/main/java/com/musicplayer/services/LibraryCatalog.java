@@ -0,0 +1,215 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Persistent binary catalog of known tracks, keyed by path and validated by mtime + size.
+ * The file is an append-only log of records; the last record for a path wins. New or changed
+ * files are appended on {@link #flush()}, and the log is only rewritten once stale records
+ * outnumber live ones.
+ */
+public class LibraryCatalog {
+
+    private static final int MAGIC = 0x4D50434C; // "MPCL"
+    private static final int VERSION = 2;
+
+    private final Path catalogFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private int storedRecords;
+    private boolean needsRewrite;
+
+    private static final class Entry {
+        final String path;
+        final long lastModified;
+        final long size;
+        final String title;
+        final String artist;
+        final String album;
+        final long durationMillis;
+
+        Entry(String path, long lastModified, long size, String title, String artist, String album, long durationMillis) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.title = title;
+            this.artist = artist;
+            this.album = album;
+            this.durationMillis = durationMillis;
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return attrs.lastModifiedTime().toMillis() == lastModified && attrs.size() == size;
+        }
+    }
+
+    public LibraryCatalog(Path catalogFile) {
+        this.catalogFile = catalogFile;
+    }
+
+    public synchronized void load() {
+        entries.clear();
+        storedRecords = 0;
+        needsRewrite = false;
+        if (!Files.exists(catalogFile)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(catalogFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                // Unknown or older layout: start over and rewrite on the next flush
+                needsRewrite = true;
+                return;
+            }
+            while (in.available() > 0) {
+                Entry entry = readEntry(in);
+                entries.put(entry.path, entry);
+                storedRecords++;
+            }
+        } catch (EOFException e) {
+            // Torn trailing record from an interrupted append: drop it and rewrite a clean log
+            needsRewrite = true;
+        } catch (IOException e) {
+            needsRewrite = true;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns a song hydrated from the catalog when the file is unchanged since it was recorded,
+     * or null when the file is new or changed and needs probing.
+     */
+    public Song lookup(File file) {
+        try {
+            return lookup(file, Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Same as {@link #lookup(File)} for callers that already hold the file's attributes (e.g. a directory walk). */
+    public Song lookup(File file, BasicFileAttributes attrs) {
+        Entry entry = entries.get(file.getAbsolutePath());
+        if (entry != null && entry.matches(attrs)) {
+            return new Song(file, entry.title, entry.artist, entry.album, entry.durationMillis);
+        }
+        return null;
+    }
+
+    /** Records freshly probed metadata for a file. */
+    public void put(File file, BasicFileAttributes attrs, String title, String artist, String album, long durationMillis) {
+        String key = file.getAbsolutePath();
+        Entry entry = new Entry(key, attrs.lastModifiedTime().toMillis(), attrs.size(), title, artist, album, durationMillis);
+        entries.put(key, entry);
+        pending.add(entry);
+    }
+
+    /** Re-records a song whose metadata changed (e.g. its duration became known). */
+    public void update(Song song) {
+        File file = song.getFile();
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            put(file, attrs, song.getTitle(), song.getArtist(), song.getAlbum(), song.getDurationMillis());
+        } catch (IOException ignored) {
+            // File vanished; nothing to record
+        }
+    }
+
+    /** Appends pending records, or compacts the log when it has accumulated too many stale records. */
+    public synchronized void flush() {
+        if (pending.isEmpty() && !needsRewrite) {
+            return;
+        }
+
+        try {
+            if (needsRewrite || storedRecords + pending.size() > 2 * entries.size() + 64) {
+                rewrite();
+            } else {
+                append();
+            }
+        } catch (IOException e) {
+            // The catalog is only a cache; pending records stay queued for the next flush
+        }
+    }
+
+    private void append() throws IOException {
+        boolean fresh = !Files.exists(catalogFile) || Files.size(catalogFile) == 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(catalogFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 1 << 16))) {
+            if (fresh) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            Entry entry;
+            while ((entry = pending.poll()) != null) {
+                writeEntry(out, entry);
+                storedRecords++;
+            }
+        }
+    }
+
+    private void rewrite() throws IOException {
+        Path temp = catalogFile.resolveSibling(catalogFile.getFileName() + ".tmp");
+        pending.clear();
+        int written = 0;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Entry entry : entries.values()) {
+                writeEntry(out, entry);
+                written++;
+            }
+        }
+        try {
+            Files.move(temp, catalogFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, catalogFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        storedRecords = written;
+        needsRewrite = false;
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        String path = in.readUTF();
+        long lastModified = in.readLong();
+        long size = in.readLong();
+        String title = in.readUTF();
+        String artist = in.readUTF();
+        String album = in.readUTF();
+        long durationMillis = in.readLong();
+        return new Entry(path, lastModified, size, title, artist, album, durationMillis);
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeUTF(entry.path);
+        out.writeLong(entry.lastModified);
+        out.writeLong(entry.size);
+        out.writeUTF(entry.title);
+        out.writeUTF(entry.artist);
+        out.writeUTF(entry.album);
+        out.writeLong(entry.durationMillis);
+    }
+}
@@ -0,0 +1,270 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Imports files and whole directory trees off the FX thread. Each directory is listed by its own
+ * fork-join task, so discovery, filtering and {@link Song} construction scale with cores (and hide
+ * network-share latency). Discovered songs are handed to the UI in coalesced chunks.
+ */
+public class LibraryImporter {
+
+    private static final int MAX_CHUNK = 2000;
+    private static final int PLAYLIST_BLOCK = 512;
+    private static final int RESOLVE_THRESHOLD = 16;
+    private static final Metrics.Histogram IMPORT_TIME = Metrics.timer("import.duration");
+    private static final Metrics.Histogram IMPORT_RATE = Metrics.histogram("import.rate", " songs/s");
+    private static final Metrics.Counter IMPORTED_SONGS = Metrics.counter("import.songs");
+
+    private final LibraryCatalog catalog;
+    private final MetadataService metadataService;
+    private final ForkJoinPool pool;
+
+    public LibraryImporter(LibraryCatalog catalog, MetadataService metadataService) {
+        this.catalog = catalog;
+        this.metadataService = metadataService;
+        this.pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    public static boolean isAudioFile(File file) {
+        return isAudioFileName(file.getName());
+    }
+
+    public static boolean isAudioFileName(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        return name.endsWith(".mp3") || name.endsWith(".wav") || name.endsWith(".m4a") || name.endsWith(".aac");
+    }
+
+    /**
+     * Imports the given files and directories recursively. {@code onChunk} is called on the FX thread with
+     * batches of songs as they are found; the returned future completes with the total number of songs imported.
+     */
+    public CompletableFuture<Integer> importAsync(List<File> roots, Consumer<List<Song>> onChunk) {
+        FxBatchPublisher<Song> publisher = new FxBatchPublisher<>(MAX_CHUNK, onChunk);
+        AtomicInteger total = new AtomicInteger();
+        long started = Metrics.start();
+        return CompletableFuture.supplyAsync(() -> {
+            List<File> looseFiles = new ArrayList<>();
+            List<ScanTask> tasks = new ArrayList<>();
+            for (File root : roots) {
+                if (root.isDirectory()) {
+                    tasks.add(new ScanTask(root.toPath(), publisher, total));
+                } else if (isAudioFile(root)) {
+                    looseFiles.add(root);
+                }
+            }
+            // Loose files keep the order the user picked them in
+            for (File file : looseFiles) {
+                try {
+                    publisher.add(resolve(file, Files.readAttributes(file.toPath(), BasicFileAttributes.class)));
+                    total.incrementAndGet();
+                } catch (IOException ignored) {
+                    // Vanished between selection and import
+                }
+            }
+            ScanTask.invokeAll(tasks);
+            recordImport(started, total.get(), "folder");
+            return total.get();
+        }, pool);
+    }
+
+    /**
+     * Loads a saved playlist in any {@link PlaylistFiles} format. Entries are parsed as a stream and
+     * checked against the file system in parallel, a block at a time, so songs reach {@code onChunk}
+     * in playlist order while the rest of the file is still being read. Entries whose file is gone are
+     * dropped; the future completes with the number of songs loaded, or exceptionally if the playlist
+     * file itself can't be read.
+     */
+    public CompletableFuture<Integer> importPlaylistAsync(File playlistFile, Consumer<List<Song>> onChunk) {
+        FxBatchPublisher<Song> publisher = new FxBatchPublisher<>(MAX_CHUNK, onChunk);
+        long started = Metrics.start();
+        return CompletableFuture.supplyAsync(() -> {
+            List<PlaylistFiles.Entry> block = new ArrayList<>(PLAYLIST_BLOCK);
+            int[] total = new int[1];
+            Consumer<List<PlaylistFiles.Entry>> flush = entries -> {
+                Song[] resolved = new Song[entries.size()];
+                new ResolveTask(entries, resolved, 0, entries.size()).invoke();
+                for (Song song : resolved) {
+                    if (song != null) {
+                        publisher.add(song);
+                        total[0]++;
+                    }
+                }
+                entries.clear();
+            };
+            try {
+                PlaylistFiles.read(playlistFile, entry -> {
+                    block.add(entry);
+                    if (block.size() == PLAYLIST_BLOCK) {
+                        flush.accept(block);
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            flush.accept(block);
+            recordImport(started, total[0], "playlist");
+            return total[0];
+        }, pool);
+    }
+
+    private static void recordImport(long startNanos, int songs, String kind) {
+        if (startNanos == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        IMPORT_TIME.record(elapsed, kind);
+        IMPORTED_SONGS.add(songs);
+        if (elapsed > 0) {
+            IMPORT_RATE.record(songs * 1_000_000_000L / elapsed, kind);
+        }
+    }
+
+    // Entry still matches the file it was saved from: trust its tags. Otherwise resolve like a scanned file,
+    // starting from the playlist's own title/artist hints until the tags are probed.
+    private Song resolve(PlaylistFiles.Entry entry) {
+        File file = entry.file;
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        if (!attrs.isRegularFile() || !isAudioFile(file)) {
+            return null;
+        }
+        Song song;
+        if (entry.size == attrs.size() && entry.lastModified == attrs.lastModifiedTime().toMillis()) {
+            song = new Song(file, entry.title, entry.artist, entry.album, entry.durationMillis);
+        } else {
+            song = catalog.lookup(file, attrs);
+            if (song == null) {
+                song = new Song(file);
+                if (entry.title != null && !entry.title.isEmpty()) {
+                    song.setTitle(entry.title);
+                }
+                if (entry.artist != null && !entry.artist.isEmpty()) {
+                    song.setArtist(entry.artist);
+                }
+                if (entry.durationMillis > 0) {
+                    song.setDurationMillis(entry.durationMillis);
+                }
+                metadataService.enqueue(song);
+            }
+        }
+        song.setFavorite(entry.favorite);
+        return song;
+    }
+
+    // Catalog hit: hydrate as-is. New or changed file: start from the file name and probe its tags in the background.
+    private Song resolve(File file, BasicFileAttributes attrs) {
+        Song song = catalog.lookup(file, attrs);
+        if (song == null) {
+            song = new Song(file);
+            metadataService.enqueue(song);
+        }
+        return song;
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // Resolves a slice of a playlist block in place, splitting until slices are small
+    private final class ResolveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<PlaylistFiles.Entry> entries;
+        private final Song[] resolved;
+        private final int from;
+        private final int to;
+
+        ResolveTask(List<PlaylistFiles.Entry> entries, Song[] resolved, int from, int to) {
+            this.entries = entries;
+            this.resolved = resolved;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= RESOLVE_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    resolved[i] = resolve(entries.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ResolveTask(entries, resolved, from, middle), new ResolveTask(entries, resolved, middle, to));
+        }
+    }
+
+    private final class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final FxBatchPublisher<Song> publisher;
+        private final AtomicInteger total;
+
+        ScanTask(Path directory, FxBatchPublisher<Song> publisher, AtomicInteger total) {
+            this.directory = directory;
+            this.publisher = publisher;
+            this.total = total;
+        }
+
+        @Override
+        protected void compute() {
+            List<ScanTask> subTasks = new ArrayList<>();
+            List<Path> audioFiles = new ArrayList<>();
+            List<BasicFileAttributes> audioAttrs = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        subTasks.add(new ScanTask(entry, publisher, total));
+                    } else if (attrs.isRegularFile() && isAudioFileName(entry.getFileName().toString())) {
+                        audioFiles.add(entry);
+                        audioAttrs.add(attrs);
+                    }
+                }
+            } catch (IOException e) {
+                // Unreadable directory: skip it and keep importing the rest of the tree
+                return;
+            }
+
+            for (ScanTask task : subTasks) {
+                task.fork();
+            }
+            for (int i = 0; i < audioFiles.size(); i++) {
+                publisher.add(resolve(audioFiles.get(i).toFile(), audioAttrs.get(i)));
+                total.incrementAndGet();
+            }
+            for (ScanTask task : subTasks) {
+                task.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column store of the attributes {@link SmartQuery} filters on, indexed by song id and kept in sync
+ * with a song list. Artist, album and title are dictionary-encoded (folded text to an int code), so a
+ * term compares ints in one pass over a primitive column and yields a {@link BitSet}; a query is then
+ * a handful of bitset operations, with favorites taken straight from {@link Song#favoriteIds()}.
+ *
+ * <p>Used on the FX thread only.
+ */
+public class LibraryIndex {
+
+    static final int ARTIST = 0;
+    static final int ALBUM = 1;
+    static final int TITLE = 2;
+
+    private final PlayHistory history;
+    private final BitSet present = new BitSet();
+    private final List<Map<String, Integer>> codes = new ArrayList<>();
+    private final List<List<String>> dictionaries = new ArrayList<>();
+    private int[][] columns = new int[3][1024];
+    private int[] durationSeconds = new int[1024];
+    private long[] lastPlayed = new long[1024];
+    private int maxId = -1;
+
+    public LibraryIndex(ObservableList<Song> source, PlayHistory history) {
+        this.history = history;
+        for (int field = 0; field < 3; field++) {
+            codes.add(new HashMap<>());
+            dictionaries.add(new ArrayList<>());
+        }
+        for (Song song : source) {
+            add(song);
+        }
+        source.addListener((ListChangeListener<Song>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated()) {
+                    continue;
+                }
+                for (Song removed : change.getRemoved()) {
+                    present.clear(removed.getId());
+                }
+                for (Song added : change.getAddedSubList()) {
+                    add(added);
+                }
+            }
+        });
+    }
+
+    private void add(Song song) {
+        int id = song.getId();
+        ensureCapacity(id);
+        present.set(id);
+        maxId = Math.max(maxId, id);
+        store(song);
+        lastPlayed[id] = history.lastPlayed(song.getFile());
+    }
+
+    private void store(Song song) {
+        int id = song.getId();
+        columns[ARTIST][id] = code(ARTIST, song.getArtist());
+        columns[ALBUM][id] = code(ALBUM, song.getAlbum());
+        columns[TITLE][id] = code(TITLE, song.getTitle());
+        long millis = song.getDurationMillis();
+        durationSeconds[id] = millis < 0 ? -1 : (int) (millis / 1000);
+    }
+
+    /** Re-reads the attributes of songs that changed (tags probed, duration learned). */
+    public void update(List<Song> changed) {
+        for (Song song : changed) {
+            if (present.get(song.getId())) {
+                store(song);
+            }
+        }
+    }
+
+    public void recordPlay(Song song, long millis) {
+        history.recordPlay(song.getFile(), millis);
+        if (present.get(song.getId())) {
+            lastPlayed[song.getId()] = millis;
+        }
+    }
+
+    /** Ids of the songs in the list that match. */
+    public BitSet evaluate(SmartQuery query) {
+        BitSet result = query.evaluate(this);
+        result.and(present);
+        return result;
+    }
+
+    public boolean matches(SmartQuery query, Song song) {
+        return present.get(song.getId()) && query.matches(this, song.getId());
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < durationSeconds.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, durationSeconds.length * 2);
+        for (int field = 0; field < 3; field++) {
+            columns[field] = Arrays.copyOf(columns[field], capacity);
+        }
+        durationSeconds = Arrays.copyOf(durationSeconds, capacity);
+        lastPlayed = Arrays.copyOf(lastPlayed, capacity);
+    }
+
+    // Codes are never reused, so a renamed artist just leaves an unused dictionary entry behind
+    private int code(int field, String text) {
+        String key = SearchIndex.fold(text == null ? "" : text.trim());
+        Integer code = codes.get(field).get(key);
+        if (code == null) {
+            code = dictionaries.get(field).size();
+            dictionaries.get(field).add(key);
+            codes.get(field).put(key, code);
+        }
+        return code;
+    }
+
+    // --- column scans for SmartQuery ---
+
+    BitSet present() {
+        return (BitSet) present.clone();
+    }
+
+    // Adds to matching the codes from fromCode on whose value equals (or contains) the folded text;
+    // returns the dictionary size, i.e. where to continue next time
+    int matchCodes(int field, String folded, boolean contains, BitSet matching, int fromCode) {
+        List<String> dictionary = dictionaries.get(field);
+        if (!contains) {
+            Integer code = codes.get(field).get(folded);
+            if (code != null && code >= fromCode) {
+                matching.set(code);
+            }
+            return dictionary.size();
+        }
+        for (int code = fromCode; code < dictionary.size(); code++) {
+            if (dictionary.get(code).contains(folded)) {
+                matching.set(code);
+            }
+        }
+        return dictionary.size();
+    }
+
+    // Scans build the bitset's words directly, and without branches: column values are in no
+    // particular order, so a branch per id would be mispredicted about as often as not
+
+    BitSet idsWithCode(int field, BitSet matchingCodes) {
+        if (matchingCodes.isEmpty()) {
+            return new BitSet();
+        }
+        int[] column = columns[field];
+        long[] words = new long[(maxId + 64) >> 6];
+        if (matchingCodes.cardinality() == 1) {
+            int code = matchingCodes.nextSetBit(0);
+            for (int id = 0; id <= maxId; id++) {
+                int difference = column[id] ^ code;
+                long hit = 1 - ((difference | -difference) >>> 31);
+                words[id >> 6] |= hit << id;
+            }
+        } else {
+            for (int id = 0; id <= maxId; id++) {
+                if (matchingCodes.get(column[id])) {
+                    words[id >> 6] |= 1L << id;
+                }
+            }
+        }
+        return BitSet.valueOf(words);
+    }
+
+    int codeAt(int field, int id) {
+        return columns[field][id];
+    }
+
+    // Unknown durations never match a comparison
+    BitSet idsWithDuration(int minSeconds, int maxSeconds) {
+        long[] words = new long[(maxId + 64) >> 6];
+        for (int id = 0; id <= maxId; id++) {
+            int seconds = durationSeconds[id];
+            // Sign bit set when below the minimum or above the maximum
+            long hit = 1 - (((seconds - minSeconds) | (maxSeconds - seconds)) >>> 31);
+            words[id >> 6] |= hit << id;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    int durationAt(int id) {
+        return durationSeconds[id];
+    }
+
+    // sinceMillis > 0, so songs never played (0) don't match
+    BitSet idsPlayedSince(long sinceMillis) {
+        long[] words = new long[(maxId + 64) >> 6];
+        for (int id = 0; id <= maxId; id++) {
+            long hit = 1 - ((lastPlayed[id] - sinceMillis) >>> 63);
+            words[id >> 6] |= hit << id;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    long lastPlayedAt(int id) {
+        return lastPlayed[id];
+    }
+}
@@ -0,0 +1,339 @@
+package com.musicplayer.services;
+
+import javafx.application.Platform;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the library in step with the file system. Music roots are watched recursively and the
+ * lyrics directory flat, through one {@link WatchService}; events are coalesced per path until the
+ * folders have been quiet for {@link #QUIET_MILLIS} (or {@link #MAX_DELAY_MILLIS} has passed), then
+ * each path is checked once against the size and modification time last seen for it, so a file
+ * written in many steps is reported once. When the OS drops events (overflow) the affected root is
+ * re-walked and compared by modification time instead: a stat per file, no tags read.
+ *
+ * <p>All state is confined to the watcher thread; changes are delivered on the FX thread.
+ */
+public class LibraryWatcher {
+
+    static final long QUIET_MILLIS = 500;
+    static final long MAX_DELAY_MILLIS = 3000;
+    private static final long IDLE_POLL_MILLIS = 1000;
+
+    private static final Metrics.Counter EVENTS = Metrics.counter("library.sync.events");
+    private static final Metrics.Counter OVERFLOWS = Metrics.counter("library.sync.overflows");
+    private static final Metrics.Histogram RESCAN_TIME = Metrics.timer("library.sync.rescan");
+
+    /** One batch of changes; each file appears in at most one list. */
+    public static final class Changes {
+        private final List<File> added = new ArrayList<>();
+        private final List<File> modified = new ArrayList<>();
+        private final List<File> removed = new ArrayList<>();
+        private final List<File> lyrics = new ArrayList<>();
+
+        public List<File> getAdded() {
+            return added;
+        }
+
+        public List<File> getModified() {
+            return modified;
+        }
+
+        public List<File> getRemoved() {
+            return removed;
+        }
+
+        /** Lyrics files that appeared, changed or vanished. */
+        public List<File> getLyrics() {
+            return lyrics;
+        }
+
+        boolean isEmpty() {
+            return added.isEmpty() && modified.isEmpty() && removed.isEmpty() && lyrics.isEmpty();
+        }
+    }
+
+    private static final class Root {
+        final Path path;
+        final boolean lyrics;
+
+        Root(Path path, boolean lyrics) {
+            this.path = path;
+            this.lyrics = lyrics;
+        }
+
+        boolean accepts(Path file) {
+            String name = file.getFileName().toString();
+            return lyrics ? name.toLowerCase(Locale.ROOT).endsWith(".lrc") : LibraryImporter.isAudioFileName(name);
+        }
+    }
+
+    private final Consumer<Changes> onChanges;
+    private final ConcurrentLinkedQueue<Root> newRoots = new ConcurrentLinkedQueue<>();
+    private final List<Root> roots = new ArrayList<>();
+    private final Map<WatchKey, Root> keys = new HashMap<>();
+    // Size and modification time of every accepted file under a root
+    private final Map<Path, long[]> known = new HashMap<>();
+    private final Set<Path> directories = new HashSet<>();
+    private final Map<Path, Root> pending = new LinkedHashMap<>();
+    private final Set<Root> pendingRescans = new LinkedHashSet<>();
+    private long firstPendingAt;
+    private long lastEventAt;
+    private WatchService watchService;
+    private Thread thread;
+
+    /** {@code onChanges} is called on the FX thread. */
+    public LibraryWatcher(Consumer<Changes> onChanges) {
+        this.onChanges = onChanges;
+    }
+
+    /** Watches a music folder and everything below it; files already there count as known. */
+    public void watchMusic(Path directory) {
+        watch(new Root(directory.toAbsolutePath().normalize(), false));
+    }
+
+    /** Watches the folder local {@code .lrc} files are looked up in. */
+    public void watchLyrics(Path directory) {
+        watch(new Root(directory.toAbsolutePath().normalize(), true));
+    }
+
+    private synchronized void watch(Root root) {
+        if (watchService == null) {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+            } catch (IOException e) {
+                return; // No watching on this file system: the library only changes through imports
+            }
+            thread = new Thread(this::run, "library-watcher");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+        newRoots.add(root);
+    }
+
+    public synchronized void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // Closing only wakes the watcher thread so it can exit
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                addNewRoots();
+                long now = System.currentTimeMillis();
+                long wait = IDLE_POLL_MILLIS;
+                if (!pending.isEmpty() || !pendingRescans.isEmpty()) {
+                    wait = Math.min(lastEventAt + QUIET_MILLIS, firstPendingAt + MAX_DELAY_MILLIS) - now;
+                }
+                WatchKey key = wait > 0 ? watchService.poll(wait, TimeUnit.MILLISECONDS) : watchService.poll();
+                while (key != null) {
+                    collect(key);
+                    key = watchService.poll();
+                }
+                now = System.currentTimeMillis();
+                if ((!pending.isEmpty() || !pendingRescans.isEmpty())
+                        && (now - lastEventAt >= QUIET_MILLIS || now - firstPendingAt >= MAX_DELAY_MILLIS)) {
+                    flush();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shut down
+        }
+    }
+
+    private void addNewRoots() {
+        Root root;
+        while ((root = newRoots.poll()) != null) {
+            if (isCovered(root.path, root.lyrics)) {
+                continue;
+            }
+            roots.add(root);
+            walk(root, root.path, null);
+        }
+    }
+
+    private boolean isCovered(Path path, boolean lyrics) {
+        for (Root root : roots) {
+            if (root.lyrics == lyrics && (lyrics ? root.path.equals(path) : path.startsWith(root.path))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Registers a directory (recursively for music) and compares the files in it with what was seen
+    // before; with no Changes to report to, they are just recorded. Returns the accepted files found.
+    private Set<Path> walk(Root root, Path directory, Changes changes) {
+        Set<Path> seen = new HashSet<>();
+        try {
+            Files.walkFileTree(directory, Collections.emptySet(), root.lyrics ? 1 : Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                            // Registering an already watched directory just returns its key
+                            keys.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), root);
+                            directories.add(dir);
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            if (attrs.isRegularFile() && root.accepts(file)) {
+                                seen.add(file);
+                                compare(root, file, attrs, changes);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException e) {
+                            return FileVisitResult.CONTINUE; // unreadable entries are skipped, not fatal
+                        }
+                    });
+        } catch (IOException e) {
+            // Directory vanished or can't be read: nothing to watch there
+        }
+        return seen;
+    }
+
+    private void compare(Root root, Path file, BasicFileAttributes attrs, Changes changes) {
+        long[] state = {attrs.size(), attrs.lastModifiedTime().toMillis()};
+        long[] previous = known.put(file, state);
+        if (changes == null) {
+            return;
+        }
+        if (previous == null) {
+            (root.lyrics ? changes.lyrics : changes.added).add(file.toFile());
+        } else if (previous[0] != state[0] || previous[1] != state[1]) {
+            (root.lyrics ? changes.lyrics : changes.modified).add(file.toFile());
+        }
+    }
+
+    private void collect(WatchKey key) {
+        Root root = keys.get(key);
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            EVENTS.increment();
+            if (root == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                OVERFLOWS.increment();
+                pendingRescans.add(root);
+            } else {
+                pending.put(directory.resolve((Path) event.context()), root);
+            }
+            long now = System.currentTimeMillis();
+            if (firstPendingAt == 0) {
+                firstPendingAt = now;
+            }
+            lastEventAt = now;
+        }
+        if (!key.reset()) {
+            keys.remove(key); // directory is gone; its files are dropped when its delete event is handled
+        }
+    }
+
+    private void flush() {
+        Changes changes = new Changes();
+        for (Root root : pendingRescans) {
+            rescan(root, changes);
+        }
+        for (Map.Entry<Path, Root> entry : pending.entrySet()) {
+            if (!pendingRescans.contains(entry.getValue())) {
+                check(entry.getValue(), entry.getKey(), changes);
+            }
+        }
+        pending.clear();
+        pendingRescans.clear();
+        firstPendingAt = 0;
+        if (!changes.isEmpty()) {
+            Platform.runLater(() -> onChanges.accept(changes));
+        }
+    }
+
+    // The state of one path now, compared with what was last seen there
+    private void check(Root root, Path path, Changes changes) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            attrs = null;
+        }
+        if (attrs == null) {
+            if (known.remove(path) != null) {
+                (root.lyrics ? changes.lyrics : changes.removed).add(path.toFile());
+            } else if (directories.remove(path)) {
+                forgetBelow(root, path, changes); // a directory was deleted or moved away
+            }
+        } else if (attrs.isDirectory()) {
+            // A new (or moved-in) folder; events for folders already watched carry nothing new
+            if (!root.lyrics && !directories.contains(path)) {
+                walk(root, path, changes);
+            }
+        } else if (attrs.isRegularFile() && root.accepts(path)) {
+            compare(root, path, attrs, changes);
+        }
+    }
+
+    private void forgetBelow(Root root, Path directory, Changes changes) {
+        directories.removeIf(dir -> dir.startsWith(directory));
+        Iterator<Path> files = known.keySet().iterator();
+        while (files.hasNext()) {
+            Path file = files.next();
+            if (file.startsWith(directory)) {
+                files.remove();
+                changes.removed.add(file.toFile());
+            }
+        }
+    }
+
+    // Events were lost: walk the root again and compare every file's size and modification time
+    private void rescan(Root root, Changes changes) {
+        long started = Metrics.start();
+        Set<Path> seen = walk(root, root.path, changes);
+        Iterator<Path> files = known.keySet().iterator();
+        while (files.hasNext()) {
+            Path file = files.next();
+            boolean under = root.lyrics ? root.path.equals(file.getParent()) : file.startsWith(root.path);
+            if (under && !seen.contains(file)) {
+                files.remove();
+                (root.lyrics ? changes.lyrics : changes.removed).add(file.toFile());
+            }
+        }
+        RESCAN_TIME.recordSince(started, root.lyrics ? "lyrics" : "music");
+    }
+}
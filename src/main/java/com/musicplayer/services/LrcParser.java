@@ -0,0 +1,298 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.LyricTimeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Hand-written LRC parser. Understands {@code [mm:ss]}, {@code [mm:ss.x]} to {@code [mm:ss.xxx]} and
+ * {@code [mm:ss:xx]} stamps, several stamps in front of one line, the {@code [offset:]} tag and
+ * enhanced-LRC {@code <mm:ss.xx>} word timings; other ID tags ({@code [ar:]}, {@code [ti:]}, ...) are skipped.
+ *
+ * <p>Files are read through a {@link FileChannel} into per-thread buffers that are reused across
+ * calls, and decoded as UTF-8/UTF-16 when they carry a BOM, as strict UTF-8 otherwise, falling back
+ * to Windows-1252 for legacy files. The only per-file allocations are the line strings and the
+ * resulting timeline.
+ */
+public final class LrcParser {
+
+    private static final int MAX_FILE_BYTES = 8 * 1024 * 1024;
+    private static final Charset LEGACY_CHARSET = Charset.forName("windows-1252");
+    private static final ThreadLocal<LrcParser> LOCAL = ThreadLocal.withInitial(LrcParser::new);
+
+    private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private ByteBuffer bytes = ByteBuffer.allocate(16 * 1024);
+    private CharBuffer chars = CharBuffer.allocate(16 * 1024);
+    private char[] text = new char[256];
+    private long[] stamps = new long[8];
+    private long[] wordStamps = new long[16];
+    private int[] wordStarts = new int[16];
+
+    private LrcParser() {
+    }
+
+    public static LyricTimeline parse(Path file) throws IOException {
+        return LOCAL.get().parseFile(file);
+    }
+
+    public static LyricTimeline parse(CharSequence lrc) {
+        LrcParser parser = LOCAL.get();
+        String text = lrc.toString();
+        char[] buffer = parser.charBuffer(text.length()).array();
+        text.getChars(0, text.length(), buffer, 0);
+        return parser.parseChars(buffer, 0, text.length());
+    }
+
+    private LyricTimeline parseFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_FILE_BYTES) {
+                throw new IOException("Not a lyrics file: " + size + " bytes");
+            }
+            if (bytes.capacity() < size) {
+                bytes = ByteBuffer.allocate((int) size);
+            }
+            bytes.clear();
+            while (bytes.position() < size && channel.read(bytes) > 0) {
+                // keep reading until the whole file is buffered
+            }
+            bytes.flip();
+        }
+        CharBuffer decoded = decode(bytes);
+        return parseChars(decoded.array(), 0, decoded.limit());
+    }
+
+    private CharBuffer decode(ByteBuffer in) throws CharacterCodingException {
+        Charset charset = null;
+        if (startsWith(in, 0xEF, 0xBB, 0xBF)) {
+            in.position(3);
+            charset = StandardCharsets.UTF_8;
+        } else if (startsWith(in, 0xFF, 0xFE)) {
+            in.position(2);
+            charset = StandardCharsets.UTF_16LE;
+        } else if (startsWith(in, 0xFE, 0xFF)) {
+            in.position(2);
+            charset = StandardCharsets.UTF_16BE;
+        }
+
+        CharBuffer out = charBuffer(in.remaining());
+        if (charset == null || charset == StandardCharsets.UTF_8) {
+            int start = in.position();
+            utf8.reset();
+            if (!utf8.decode(in, out, true).isError() && !utf8.flush(out).isError()) {
+                return out.flip();
+            }
+            if (charset != null) {
+                throw new CharacterCodingException();
+            }
+            // No BOM and not valid UTF-8: most likely an old single-byte file
+            in.position(start);
+            out.clear();
+            charset = LEGACY_CHARSET;
+        }
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        decoder.decode(in, out, true);
+        decoder.flush(out);
+        return out.flip();
+    }
+
+    private static boolean startsWith(ByteBuffer in, int... prefix) {
+        if (in.remaining() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((in.get(in.position() + i) & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Decoding never produces more chars than there are bytes, so this is always large enough
+    private CharBuffer charBuffer(int capacity) {
+        if (chars.capacity() < capacity) {
+            chars = CharBuffer.allocate(capacity);
+        }
+        chars.clear();
+        return chars;
+    }
+
+    private LyricTimeline parseChars(char[] c, int from, int to) {
+        LyricTimeline.Builder builder = new LyricTimeline.Builder();
+        int lineStart = from;
+        while (lineStart < to) {
+            int lineEnd = lineStart;
+            while (lineEnd < to && c[lineEnd] != '\n' && c[lineEnd] != '\r') {
+                lineEnd++;
+            }
+            parseLine(c, lineStart, lineEnd, builder);
+            lineStart = lineEnd + 1;
+        }
+        return builder.build();
+    }
+
+    private void parseLine(char[] c, int start, int end, LyricTimeline.Builder builder) {
+        int p = skipWhitespace(c, start, end);
+        int stampCount = 0;
+        while (p < end && c[p] == '[') {
+            int close = indexOf(c, ']', p + 1, end);
+            if (close < 0) {
+                break;
+            }
+            long stamp = parseTimestamp(c, p + 1, close);
+            if (stamp >= 0) {
+                if (stampCount == stamps.length) {
+                    stamps = Arrays.copyOf(stamps, stampCount * 2);
+                }
+                stamps[stampCount++] = stamp;
+            } else if (stampCount > 0) {
+                break; // e.g. "[00:12.00][Chorus] ...": the bracket belongs to the text
+            } else {
+                if (hasTagName(c, p + 1, close, "offset")) {
+                    builder.offset(parseOffset(c, p + 8, close));
+                }
+                return; // ID tag line
+            }
+            p = close + 1;
+        }
+        if (stampCount == 0) {
+            return;
+        }
+
+        // Copy the text without its word stamps, remembering where each timed word starts
+        int words = 0;
+        int length = 0;
+        if (text.length < end - p) {
+            text = new char[Math.max(end - p, text.length * 2)];
+        }
+        while (p < end) {
+            if (c[p] == '<') {
+                int close = indexOf(c, '>', p + 1, end);
+                long stamp = close < 0 ? -1 : parseTimestamp(c, p + 1, close);
+                if (stamp >= 0) {
+                    if (words == wordStamps.length) {
+                        wordStamps = Arrays.copyOf(wordStamps, words * 2);
+                        wordStarts = Arrays.copyOf(wordStarts, words * 2);
+                    }
+                    wordStamps[words] = stamp;
+                    wordStarts[words++] = length;
+                    p = close + 1;
+                    continue;
+                }
+            }
+            text[length++] = c[p++];
+        }
+
+        int lead = skipWhitespace(text, 0, length);
+        int trail = length;
+        while (trail > lead && Character.isWhitespace(text[trail - 1])) {
+            trail--;
+        }
+        int fromWord = builder.wordCount();
+        for (int i = 0; i < words; i++) {
+            int wordStart = Math.max(0, Math.min(wordStarts[i], trail) - lead);
+            builder.addWord((int) (wordStamps[i] - stamps[0]), wordStart);
+        }
+        int toWord = builder.wordCount();
+        String line = new String(text, lead, trail - lead);
+        for (int i = 0; i < stampCount; i++) {
+            builder.addLine(stamps[i], line, fromWord, toWord);
+        }
+    }
+
+    /** Parses "m+:ss", optionally followed by '.' or ':' and a fraction; returns millis, or -1 if it isn't a stamp. */
+    static long parseTimestamp(char[] c, int from, int to) {
+        int p = from;
+        long minutes = 0;
+        while (p < to && isDigit(c[p])) {
+            minutes = minutes * 10 + (c[p++] - '0');
+        }
+        if (p == from || p >= to || c[p] != ':' || p - from > 6) {
+            return -1;
+        }
+        int secondsStart = ++p;
+        int seconds = 0;
+        while (p < to && isDigit(c[p]) && p - secondsStart < 2) {
+            seconds = seconds * 10 + (c[p++] - '0');
+        }
+        if (p == secondsStart) {
+            return -1;
+        }
+        int fraction = 0;
+        if (p < to && (c[p] == '.' || c[p] == ':')) {
+            int fractionStart = ++p;
+            int scale = 100;
+            while (p < to && isDigit(c[p])) {
+                if (p - fractionStart < 3) {
+                    fraction += (c[p] - '0') * scale;
+                    scale /= 10;
+                }
+                p++;
+            }
+            if (p == fractionStart) {
+                return -1;
+            }
+        }
+        return p == to ? (minutes * 60 + seconds) * 1000 + fraction : -1;
+    }
+
+    private static long parseOffset(char[] c, int from, int to) {
+        int p = skipWhitespace(c, from, to);
+        boolean negative = false;
+        if (p < to && (c[p] == '+' || c[p] == '-')) {
+            negative = c[p++] == '-';
+        }
+        long value = 0;
+        while (p < to && isDigit(c[p])) {
+            value = value * 10 + (c[p++] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean hasTagName(char[] c, int from, int to, String name) {
+        if (to - from <= name.length() || c[from + name.length()] != ':') {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toLowerCase(c[from + i]) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(char[] c, char target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (c[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(char[] c, int from, int to) {
+        while (from < to && Character.isWhitespace(c[from])) {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+}
@@ -0,0 +1,216 @@
+package com.musicplayer.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Two-tier cache for downloaded lyrics: an in-memory LRU in front of a directory of small deflated
+ * records, both keyed by the folded "artist / title". "No lyrics found" answers are cached too (with a
+ * shorter TTL) so misses are not re-requested on every play.
+ */
+public class LyricsCache {
+
+    private static final int MAGIC = 0x4D504C59; // "MPLY"
+    private static final int MEMORY_ENTRIES = 256;
+
+    private final Path directory;
+    private final long foundTtlMillis;
+    private final long missingTtlMillis;
+    private final Map<String, CachedLyrics> memory = new LinkedHashMap<String, CachedLyrics>(MEMORY_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedLyrics> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static final class CachedLyrics {
+        private final String lyrics;
+        private final long storedAt;
+
+        CachedLyrics(String lyrics, long storedAt) {
+            this.lyrics = lyrics;
+            this.storedAt = storedAt;
+        }
+
+        /** False for a cached "upstream has no lyrics for this song" answer. */
+        public boolean isFound() {
+            return lyrics != null;
+        }
+
+        public String getLyrics() {
+            return lyrics;
+        }
+    }
+
+    public LyricsCache(Path directory) {
+        this(directory, TimeUnit.DAYS.toMillis(30), TimeUnit.DAYS.toMillis(1));
+    }
+
+    public LyricsCache(Path directory, long foundTtlMillis, long missingTtlMillis) {
+        this.directory = directory;
+        this.foundTtlMillis = foundTtlMillis;
+        this.missingTtlMillis = missingTtlMillis;
+    }
+
+    /** Returns the cached answer, or null when nothing fresh is cached and upstream must be asked. */
+    public CachedLyrics get(String artist, String title) {
+        CachedLyrics entry = lookup(key(artist, title), true);
+        if (entry == null) {
+            misses.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /** Whether a fresh answer is cached, without touching the hit/miss counters (used by prefetching). */
+    public boolean contains(String artist, String title) {
+        return lookup(key(artist, title), false) != null;
+    }
+
+    private CachedLyrics lookup(String key, boolean count) {
+        long now = System.currentTimeMillis();
+
+        CachedLyrics entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+        }
+        if (entry != null && isFresh(entry, now)) {
+            if (count) {
+                memoryHits.incrementAndGet();
+                if (!entry.isFound()) {
+                    negativeHits.incrementAndGet();
+                }
+            }
+            return entry;
+        }
+
+        entry = readDisk(key);
+        if (entry != null && isFresh(entry, now)) {
+            if (count) {
+                diskHits.incrementAndGet();
+                if (!entry.isFound()) {
+                    negativeHits.incrementAndGet();
+                }
+            }
+            synchronized (memory) {
+                memory.put(key, entry);
+            }
+            return entry;
+        }
+        return null;
+    }
+
+    public void putFound(String artist, String title, String lyrics) {
+        put(key(artist, title), new CachedLyrics(lyrics, System.currentTimeMillis()));
+    }
+
+    public void putMissing(String artist, String title) {
+        put(key(artist, title), new CachedLyrics(null, System.currentTimeMillis()));
+    }
+
+    /** Drops a cached answer, e.g. because a local .lrc for the song appeared. */
+    public void invalidate(String artist, String title) {
+        String key = key(artist, title);
+        synchronized (memory) {
+            memory.remove(key);
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(AppPaths.cacheFileName(key)));
+        } catch (IOException ignored) {
+            // Stale record expires through its TTL anyway
+        }
+    }
+
+    private void put(String key, CachedLyrics entry) {
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        writeDisk(key, entry);
+    }
+
+    private boolean isFresh(CachedLyrics entry, long now) {
+        long ttl = entry.isFound() ? foundTtlMillis : missingTtlMillis;
+        return now - entry.storedAt < ttl;
+    }
+
+    static String key(String artist, String title) {
+        return normalize(artist) + " / " + normalize(title);
+    }
+
+    private static String normalize(String text) {
+        return SearchIndex.fold(text).trim().replaceAll("\\s+", " ");
+    }
+
+    private CachedLyrics readDisk(String key) {
+        Path file = directory.resolve(AppPaths.cacheFileName(key));
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new BufferedInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(key)) {
+                return null;
+            }
+            long storedAt = in.readLong();
+            boolean found = in.readBoolean();
+            if (!found) {
+                return new CachedLyrics(null, storedAt);
+            }
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            return new CachedLyrics(new String(text, StandardCharsets.UTF_8), storedAt);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, CachedLyrics entry) {
+        try {
+            Files.createDirectories(directory);
+            Path file = directory.resolve(AppPaths.cacheFileName(key));
+            Path temp = Files.createTempFile(directory, "lyrics", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(key);
+                out.writeLong(entry.storedAt);
+                out.writeBoolean(entry.isFound());
+                if (entry.isFound()) {
+                    byte[] text = entry.lyrics.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(text.length);
+                    out.write(text);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ignored) {
+            // The in-memory tier still serves this session
+        }
+    }
+
+    public long getMemoryHits() { return memoryHits.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getNegativeHits() { return negativeHits.get(); }
+    public long getMisses() { return misses.get(); }
+}
@@ -0,0 +1,308 @@
+package com.musicplayer.services;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * HTTP access to a lyrics.ovh-style provider ({@code <base>/<artist>/<title>} answering
+ * {@code {"lyrics": "..."}}). Concurrent requests for the same song share one call, every call is
+ * bounded by timeouts, and a circuit breaker stops calling a provider that keeps failing: after
+ * {@link #FAILURE_THRESHOLD} failures in a row requests fail immediately for a backoff period,
+ * then a single trial request decides whether to close the breaker or back off for twice as long.
+ */
+final class LyricsClient {
+
+    static final int FAILURE_THRESHOLD = 3;
+    static final long INITIAL_BACKOFF_MILLIS = 5_000;
+    private static final long MAX_BACKOFF_MILLIS = 5 * 60_000;
+
+    private static final Metrics.Counter JOINED = Metrics.counter("lyrics.network.joined");
+    private static final Metrics.Counter SHORT_CIRCUITED = Metrics.counter("lyrics.network.short-circuited");
+    private static final Metrics.Counter BREAKER_OPENED = Metrics.counter("lyrics.breaker.opened");
+
+    /** Thrown without a network call while the breaker is open. */
+    static final class UnavailableException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        UnavailableException(long retryInMillis) {
+            super("Lyrics provider unavailable, retrying in " + retryInMillis + " ms");
+        }
+    }
+
+    private final String baseUrl;
+    private final LongSupplier clock;
+    private final OkHttpClient client;
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    // Breaker state, guarded by this
+    private int consecutiveFailures;
+    private long backoffMillis = INITIAL_BACKOFF_MILLIS;
+    private long openUntil;
+    private boolean trialRunning;
+
+    // baseUrl must end with '/', e.g. a local stub server's "http://127.0.0.1:8080/v1/"
+    LyricsClient(String baseUrl) {
+        this(baseUrl, System::currentTimeMillis);
+    }
+
+    // The clock (epoch millis) times the breaker's backoff; tests pass their own
+    LyricsClient(String baseUrl, LongSupplier clock) {
+        this.baseUrl = baseUrl;
+        this.clock = clock;
+        // Lyrics are small and only ever fetched for a few songs at a time: fail fast, and keep a
+        // couple of connections warm for the next track
+        this.client = new OkHttpClient.Builder()
+                .connectTimeout(3, TimeUnit.SECONDS)
+                .readTimeout(5, TimeUnit.SECONDS)
+                .callTimeout(8, TimeUnit.SECONDS)
+                .connectionPool(new ConnectionPool(4, 2, TimeUnit.MINUTES))
+                .build();
+    }
+
+    /**
+     * A caller's claim on a fetch, so the caller can give up on it (see {@link #cancel()}). Each
+     * ticket is good for one fetch.
+     */
+    static final class Ticket {
+        private boolean cancelled;
+        private Flight flight;
+        private CompletableFuture<String> waiting;
+
+        /**
+         * Stops waiting for the fetch; the HTTP call itself is cancelled once no other caller (a
+         * prefetch, say) is waiting for the same song.
+         */
+        void cancel() {
+            Flight left;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                left = flight;
+                if (waiting != null) {
+                    waiting.cancel(false);
+                }
+            }
+            if (left != null) {
+                left.leave();
+            }
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        private synchronized boolean attach(Flight flight, CompletableFuture<String> waiting) {
+            if (cancelled) {
+                return false;
+            }
+            this.flight = flight;
+            this.waiting = waiting;
+            return true;
+        }
+    }
+
+    // One HTTP call and everyone waiting for its answer
+    private static final class Flight {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        private Call call;
+        private int waiters = 1;
+        private boolean abandoned;
+
+        // Fails once every waiter has left: the call is being cancelled, so its answer is no use
+        synchronized boolean join() {
+            if (abandoned) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        synchronized void leave() {
+            if (--waiters == 0) {
+                abandoned = true;
+                if (call != null) {
+                    call.cancel();
+                }
+            }
+        }
+
+        synchronized void start(Call call) {
+            this.call = call;
+            if (abandoned) {
+                call.cancel();
+            }
+        }
+
+        synchronized boolean isAbandoned() {
+            return abandoned;
+        }
+    }
+
+    String fetch(String artist, String title) throws IOException {
+        return fetch(artist, title, null);
+    }
+
+    /**
+     * Lyrics text, or null when the provider has none. Throws for transient trouble (network, server
+     * errors, open breaker, a cancelled ticket), which shouldn't be cached. Blocks, so call it off
+     * the FX thread.
+     */
+    String fetch(String artist, String title, Ticket ticket) throws IOException {
+        String key = artist + '\n' + title;
+        Flight flight = new Flight();
+        Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null && existing.join()) {
+            JOINED.increment();
+            CompletableFuture<String> waiting = existing.result.thenApply(lyrics -> lyrics);
+            if (ticket != null && !ticket.attach(existing, waiting)) {
+                existing.leave();
+                throw cancelled();
+            }
+            return await(waiting);
+        }
+        // A flight that was abandoned stays registered until its call unwinds: go around it
+        boolean shared = existing == null;
+        try {
+            if (ticket != null && !ticket.attach(flight, null)) {
+                throw cancelled();
+            }
+            String lyrics = call(artist, title, flight);
+            flight.result.complete(lyrics);
+            return lyrics;
+        } catch (IOException | RuntimeException e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            if (shared) {
+                inFlight.remove(key, flight);
+            }
+        }
+    }
+
+    /** False while the breaker is open, i.e. a request now would fail without being sent. */
+    synchronized boolean isAvailable() {
+        return clock.getAsLong() >= openUntil;
+    }
+
+    private static InterruptedIOException cancelled() {
+        return new InterruptedIOException("Lyrics request cancelled");
+    }
+
+    private static String await(CompletableFuture<String> waiting) throws IOException {
+        try {
+            return waiting.get();
+        } catch (CancellationException e) {
+            throw cancelled();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for lyrics");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private String call(String artist, String title, Flight flight) throws IOException {
+        boolean trial = acquire();
+        boolean healthy = false;
+        try {
+            String lyrics = request(artist, title, flight);
+            healthy = true;
+            return lyrics;
+        } finally {
+            // A call we cancelled says nothing about the provider's health
+            record(healthy, !healthy && flight.isAbandoned(), trial);
+        }
+    }
+
+    // Returns null when upstream definitively has no lyrics; throws for transient failures
+    private String request(String artist, String title, Flight flight) throws IOException {
+        String url = baseUrl + URLEncoder.encode(artist, StandardCharsets.UTF_8)
+                + "/" + URLEncoder.encode(title, StandardCharsets.UTF_8);
+
+        Request request = new Request.Builder()
+                .url(url)
+                .build();
+
+        Call call = client.newCall(request);
+        flight.start(call);
+        try (Response response = call.execute()) {
+            if (response.code() == 404) return null;
+            if (!response.isSuccessful()) throw new IOException("HTTP " + response.code());
+
+            ResponseBody body = response.body();
+            if (body == null) return null;
+
+            JSONObject json = new JSONObject(body.string());
+            return json.has("lyrics") ? json.getString("lyrics") : null;
+        } catch (JSONException e) {
+            // A proxy's error page or a half-broken upstream: not an answer
+            throw new IOException("Malformed lyrics response", e);
+        }
+    }
+
+    // --- circuit breaker ---
+
+    // While open, fails without calling; once the backoff is over, lets exactly one trial through
+    // (returning true for it)
+    private synchronized boolean acquire() throws UnavailableException {
+        if (consecutiveFailures < FAILURE_THRESHOLD) {
+            return false;
+        }
+        long now = clock.getAsLong();
+        if (now < openUntil || trialRunning) {
+            SHORT_CIRCUITED.increment();
+            throw new UnavailableException(Math.max(0, openUntil - now));
+        }
+        trialRunning = true;
+        return true;
+    }
+
+    private synchronized void record(boolean healthy, boolean cancelled, boolean trial) {
+        if (trial) {
+            trialRunning = false;
+        }
+        if (cancelled) {
+            return;
+        }
+        if (healthy) {
+            consecutiveFailures = 0;
+            backoffMillis = INITIAL_BACKOFF_MILLIS;
+            openUntil = 0;
+            return;
+        }
+        consecutiveFailures++;
+        if (trial) {
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+        if (consecutiveFailures >= FAILURE_THRESHOLD) {
+            if (!trial && consecutiveFailures == FAILURE_THRESHOLD) {
+                BREAKER_OPENED.increment();
+            }
+            openUntil = clock.getAsLong() + backoffMillis;
+        }
+    }
+}
@@ -1,152 +1,342 @@
 package com.musicplayer.services;
 
+import com.musicplayer.model.LyricTimeline;
 import com.musicplayer.model.Song;
 import javafx.application.Platform;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
-import okhttp3.ResponseBody;
-import org.json.JSONObject;
 
 import java.io.*;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.concurrent.CompletableFuture;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class LyricsService {
 
-    private final Map<Double, String> timedLyrics = new TreeMap<>();
+    private static final Metrics.Histogram LOCAL_LOOKUP = Metrics.timer("lyrics.local");
+    private static final Metrics.Histogram CACHE_LOOKUP = Metrics.timer("lyrics.cache");
+    private static final Metrics.Histogram NETWORK_FETCH = Metrics.timer("lyrics.network");
+    private static final Metrics.Counter FROM_LOCAL = Metrics.counter("lyrics.source.local");
+    private static final Metrics.Counter FROM_CACHE = Metrics.counter("lyrics.source.cache");
+    private static final Metrics.Counter FROM_NETWORK = Metrics.counter("lyrics.source.network");
+    private static final Metrics.Counter NOT_FOUND = Metrics.counter("lyrics.source.none");
+    private static final Metrics.Counter NETWORK_ERRORS = Metrics.counter("lyrics.network.errors");
+    private static final Metrics.Counter SUPERSEDED = Metrics.counter("lyrics.load.superseded");
+
+    /** The lyrics of one song, as published by a completed load. Immutable. */
+    public static final class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(null, -1, 0, LyricTimeline.EMPTY, false);
+
+        // Song ids are reused once a song is collected, so matching goes by instance; weak, so a
+        // snapshot doesn't keep a removed song (and its id) alive
+        private final WeakReference<Song> song;
+        private final int songId;
+        private final long generation;
+        private final LyricTimeline timeline;
+        private final boolean synced;
+
+        Snapshot(WeakReference<Song> song, int songId, long generation, LyricTimeline timeline, boolean synced) {
+            this.song = song;
+            this.songId = songId;
+            this.generation = generation;
+            this.timeline = timeline;
+            this.synced = synced;
+        }
+
+        /** Id the song had when its lyrics loaded; another song may have it by now. */
+        public int getSongId() {
+            return songId;
+        }
+
+        /** Whether these are the lyrics of exactly this song instance. */
+        public boolean isFor(Song song) {
+            return song != null && this.song != null && this.song.get() == song;
+        }
+
+        public LyricTimeline getTimeline() {
+            return timeline;
+        }
+
+        /** False for plain-text lyrics, whose lines are spread out at an estimated pace. */
+        public boolean isSynced() {
+            return synced;
+        }
+    }
+
     private static final String LYRICS_DIR = "src/main/resources/lyrics/";
-    private final OkHttpClient client = new OkHttpClient();
-    private boolean isSynced = false;
+    // Overridable with -Dmusicplayer.lyrics.url=..., e.g. to point the app at a local stub server
+    private static final String DEFAULT_API_URL =
+            System.getProperty("musicplayer.lyrics.url", "https://api.lyrics.ovh/v1/");
+    private static final int PREFETCH_THREADS = 2;
+    private final LyricsClient client;
+    private final LyricsCache cache;
+    // Where load callbacks run: the FX thread, or the caller's choice in tests
+    private final Executor callbackExecutor;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(Snapshot.EMPTY);
+
+    // Each load gets the next generation; a newer load supersedes (and cancels) all older ones
+    private final AtomicLong loadGeneration = new AtomicLong();
+    private final AtomicReference<LyricsClient.Ticket> loadTicket = new AtomicReference<>();
+    private final ExecutorService loadExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "lyrics-load");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Prefetching runs on its own small pool so it can never delay the song that is playing now
+    private final ExecutorService prefetchExecutor = Executors.newFixedThreadPool(PREFETCH_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "lyrics-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong prefetchGeneration = new AtomicLong();
+
+    public LyricsService() {
+        this(DEFAULT_API_URL, new LyricsCache(AppPaths.resolve("lyrics-cache/")));
+    }
+
+    // apiBaseUrl must end with '/', e.g. a local stub server's "http://127.0.0.1:8080/v1/"
+    public LyricsService(String apiBaseUrl, LyricsCache cache) {
+        this(apiBaseUrl, cache, Platform::runLater);
+    }
+
+    LyricsService(String apiBaseUrl, LyricsCache cache, Executor callbackExecutor) {
+        this.client = new LyricsClient(apiBaseUrl);
+        this.cache = cache;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public LyricsCache getCache() {
+        return cache;
+    }
 
     public boolean isSynced() {
-        return isSynced;
+        return current.get().isSynced();
     }
 
-    // This method now takes a callback so it's non-blocking
+    /**
+     * Loads the song's lyrics in the background and publishes them as the current {@link Snapshot},
+     * then runs onComplete on the FX thread. Starting another load supersedes this one: its request
+     * is cancelled, and neither its lyrics nor its callback are published.
+     */
     public void loadLyrics(Song song, Runnable onComplete) {
-        CompletableFuture.runAsync(() -> {
-            isSynced = false;
-            Map<Double, String> lyrics = tryLocalLrc(song);
+        long generation = loadGeneration.incrementAndGet();
+        LyricsClient.Ticket ticket = new LyricsClient.Ticket();
+        LyricsClient.Ticket previous = loadTicket.getAndSet(ticket);
+        if (previous != null) {
+            previous.cancel();
+        }
+        WeakReference<Song> songRef = new WeakReference<>(song);
+        int songId = song.getId();
+        String artist = song.getArtist();
+        String title = song.getTitle();
+        File lrc = localLrcFile(song);
+        loadExecutor.execute(() -> {
+            if (loadGeneration.get() != generation) {
+                SUPERSEDED.increment();
+                return;
+            }
+            boolean synced;
+            long started = Metrics.start();
+            LyricTimeline lyrics = lrc.exists() ? loadFromLrcFile(lrc) : null;
+            LOCAL_LOOKUP.recordSince(started, lyrics != null ? "hit" : "miss");
             if (lyrics != null) {
-                isSynced = true;
+                FROM_LOCAL.increment();
+                synced = true;
             } else {
-                lyrics = fetchFromInternet(song);
+                lyrics = fetchFromInternet(artist, title, ticket);
                 if (lyrics != null) {
-                    isSynced = false;
+                    synced = false;
+                } else if (ticket.isCancelled()) {
+                    SUPERSEDED.increment();
+                    return;
                 } else {
-                    lyrics = createSampleLyricsMap();
-                    isSynced = true;
+                    NOT_FOUND.increment();
+                    lyrics = createSampleLyrics();
+                    synced = true;
                 }
             }
 
-            Map<Double, String> finalLyrics = lyrics;
-            Platform.runLater(() -> {
-                applyLyrics(finalLyrics);
-                if (onComplete != null) {
+            Snapshot snapshot = new Snapshot(songRef, songId, generation, lyrics, synced);
+            if (!publish(snapshot)) {
+                SUPERSEDED.increment();
+                return;
+            }
+            callbackExecutor.execute(() -> {
+                // Checked again here: a newer load may have started while this one was being delivered
+                if (current.get() == snapshot && loadGeneration.get() == generation && onComplete != null) {
                     onComplete.run();
                 }
             });
         });
     }
 
-    private Map<Double, String> tryLocalLrc(Song song) {
-        String lrcPath = LYRICS_DIR + song.getFile().getName()
-                .replaceAll("\\.(mp3|wav|m4a|aac)$", ".lrc");
-        File file = new File(lrcPath);
-        return file.exists() ? loadFromLrcFile(file) : null;
+    // Swaps in the snapshot unless a newer load has started or already published
+    private boolean publish(Snapshot snapshot) {
+        while (true) {
+            Snapshot published = current.get();
+            if (loadGeneration.get() != snapshot.generation || published.generation > snapshot.generation) {
+                return false;
+            }
+            if (current.compareAndSet(published, snapshot)) {
+                return true;
+            }
+        }
     }
 
-    private Map<Double, String> loadFromLrcFile(File file) {
-        Map<Double, String> map = new TreeMap<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                parseLrcLine(line, map);
+    /**
+     * Warms the lyrics cache for the songs expected to play next, in priority order. Each call
+     * supersedes the previous one: queued work from an older call is skipped, so jumping elsewhere
+     * in the playlist reprioritizes instead of piling up requests.
+     */
+    public void prefetch(List<Song> upcoming) {
+        long generation = prefetchGeneration.incrementAndGet();
+        for (Song song : upcoming) {
+            String artist = song.getArtist();
+            String title = song.getTitle();
+            File lrc = localLrcFile(song);
+            prefetchExecutor.execute(() -> {
+                // While the provider is down, prefetching would only queue up doomed requests
+                if (prefetchGeneration.get() != generation || !client.isAvailable()
+                        || lrc.exists() || cache.contains(artist, title)) {
+                    return;
+                }
+                try {
+                    String lyrics = client.fetch(artist, title);
+                    if (lyrics != null) {
+                        cache.putFound(artist, title, lyrics);
+                    } else {
+                        cache.putMissing(artist, title);
+                    }
+                } catch (Exception ignored) {
+                    // Will be fetched normally when the song plays
+                }
+            });
+        }
+    }
+
+    private File localLrcFile(Song song) {
+        return new File(LYRICS_DIR + localLrcName(song));
+    }
+
+    private static String localLrcName(Song song) {
+        return Song.lyricsFileName(song.getFile().getName());
+    }
+
+    /** Directory local {@code .lrc} files are looked up in, named after the song's audio file. */
+    public Path getLocalLyricsDirectory() {
+        return Paths.get(LYRICS_DIR);
+    }
+
+    /**
+     * Songs whose local {@code .lrc} file appeared, changed or vanished. Downloaded answers for them are
+     * dropped (a local file takes precedence anyway, and one that vanishes should be replaced by a fresh
+     * lookup); returns those that are affected, so the caller can reload the lyrics on display.
+     */
+    public List<Song> localLyricsChanged(List<Song> songs, List<File> lrcFiles) {
+        Set<String> names = new HashSet<>();
+        for (File lrc : lrcFiles) {
+            names.add(lrc.getName());
+        }
+        List<Song> affected = new ArrayList<>();
+        for (Song song : songs) {
+            if (names.contains(localLrcName(song))) {
+                affected.add(song);
+                String artist = song.getArtist();
+                String title = song.getTitle();
+                prefetchExecutor.execute(() -> cache.invalidate(artist, title));
             }
-        } catch (Exception e) {
-            return null;
         }
-        return map.isEmpty() ? null : map;
-    }
-
-    private void parseLrcLine(String line, Map<Double, String> map) {
-        if (line.matches("\\[\\d{2}:\\d{2}\\.\\d{2,3}].+")) {
-            String time = line.substring(1, 10);
-            String lyric = line.substring(10).trim();
-            try {
-                String[] p = time.split(":");
-                double total = Double.parseDouble(p[0]) * 60 + Double.parseDouble(p[1]);
-                map.put(total, lyric);
-            } catch (Exception ignored) {}
+        return affected;
+    }
+
+    private LyricTimeline loadFromLrcFile(File file) {
+        try {
+            LyricTimeline lyrics = LrcParser.parse(file.toPath());
+            return lyrics.isEmpty() ? null : lyrics;
+        } catch (IOException e) {
+            return null;
         }
     }
 
-    private Map<Double, String> fetchFromInternet(Song song) {
+    private LyricTimeline fetchFromInternet(String artist, String title, LyricsClient.Ticket ticket) {
+        long started = Metrics.start();
+        LyricsCache.CachedLyrics cached = cache.get(artist, title);
+        if (cached != null) {
+            CACHE_LOOKUP.recordSince(started, cached.isFound() ? "found" : "missing");
+            if (cached.isFound()) {
+                FROM_CACHE.increment();
+            }
+            return cached.isFound() ? unsyncedTimeline(cached.getLyrics()) : null;
+        }
+        CACHE_LOOKUP.recordSince(started, "miss");
+
+        started = Metrics.start();
         try {
-            String artist = URLEncoder.encode(song.getArtist(), StandardCharsets.UTF_8);
-            String title = URLEncoder.encode(song.getTitle(), StandardCharsets.UTF_8);
-            String url = "https://api.lyrics.ovh/v1/" + artist + "/" + title;
-
-            Request request = new Request.Builder()
-                    .url(url)
-                    .build();
-
-            try (Response response = client.newCall(request).execute()) {
-                if (!response.isSuccessful()) return null;
-                
-                ResponseBody body = response.body();
-                if (body == null) return null;
-                
-                String responseBody = body.string();
-                JSONObject json = new JSONObject(responseBody);
-                
-                if (json.has("lyrics")) {
-                    String lyrics = json.getString("lyrics");
-                    return convertToTimedMap(lyrics);
-                }
+            String lyrics = client.fetch(artist, title, ticket);
+            NETWORK_FETCH.recordSince(started, lyrics != null ? "found" : "missing");
+            if (lyrics != null) {
+                FROM_NETWORK.increment();
+                cache.putFound(artist, title, lyrics);
+                return unsyncedTimeline(lyrics);
             }
+            cache.putMissing(artist, title);
+        } catch (LyricsClient.UnavailableException e) {
+            // Provider is known to be down: fall back straight away instead of waiting out a timeout
+            NETWORK_FETCH.recordSince(started, "unavailable");
         } catch (Exception e) {
-            // e.printStackTrace(); // Optional: log error
-            return null;
+            if (ticket.isCancelled()) {
+                NETWORK_FETCH.recordSince(started, "cancelled");
+                return null;
+            }
+            // Network or server trouble is transient: don't cache it, try again next time
+            NETWORK_FETCH.recordSince(started, "error");
+            NETWORK_ERRORS.increment();
         }
         return null;
     }
 
-    private Map<Double, String> convertToTimedMap(String text) {
-        Map<Double, String> map = new TreeMap<>();
-        String[] lines = text.split("\n");
-        double time = 0.0;
-        for (String l : lines) {
+    private LyricTimeline unsyncedTimeline(String text) {
+        LyricTimeline.Builder builder = new LyricTimeline.Builder();
+        long millis = 0;
+        for (String l : text.split("\n")) {
             if (!l.trim().isEmpty()) {
-                map.put(time, l.trim());
-                time += 4.2; // Approximate timing for non-synced lyrics
+                builder.addLine(millis, l.trim());
+                millis += 4200; // Approximate timing for non-synced lyrics
             }
         }
-        return map;
+        return builder.build();
     }
 
-    private Map<Double, String> createSampleLyricsMap() {
-        Map<Double, String> map = new TreeMap<>();
-        map.put(2.25, "Feel your eyes, they all over me");
-        map.put(4.69, "Don't be shy, take control of me");
-        map.put(6.97, "Get the vibe, it's gonna be lit tonight");
-        map.put(10.75, "Baby girl, yuh ah carry ten ton a phatness gimme some a dat");
-        map.put(215.05, "It's gonna be lit tonight, no lie");
-        return map;
+    private LyricTimeline createSampleLyrics() {
+        return new LyricTimeline.Builder()
+                .addLine(2250, "Feel your eyes, they all over me")
+                .addLine(4690, "Don't be shy, take control of me")
+                .addLine(6970, "Get the vibe, it's gonna be lit tonight")
+                .addLine(10750, "Baby girl, yuh ah carry ten ton a phatness gimme some a dat")
+                .addLine(215050, "It's gonna be lit tonight, no lie")
+                .build();
     }
 
-    private void applyLyrics(Map<Double, String> map) {
-        timedLyrics.clear();
-        if (map != null) {
-            timedLyrics.putAll(map);
-        }
+    /** The most recently published lyrics. */
+    public Snapshot getSnapshot() {
+        return current.get();
+    }
+
+    public LyricTimeline getTimeline() {
+        return current.get().getTimeline();
     }
 
-    public Map<Double, String> getTimedLyrics() {
-        return new TreeMap<>(timedLyrics);
+    /** The published lyrics if they belong to the song, otherwise none (its load is still running). */
+    public LyricTimeline getTimeline(Song song) {
+        Snapshot snapshot = current.get();
+        return snapshot.isFor(song) ? snapshot.getTimeline() : LyricTimeline.EMPTY;
     }
-}
\ No newline at end of file
+}
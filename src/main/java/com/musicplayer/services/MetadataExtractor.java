@@ -0,0 +1,395 @@
+package com.musicplayer.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Reads title/artist/album/duration from container headers through a {@link FileChannel}, without
+ * decoding audio or creating a MediaPlayer. Covers ID3v2/ID3v1 + MPEG frame headers (MP3), ADTS (AAC),
+ * RIFF fmt/data/LIST-INFO chunks (WAV) and mvhd + ilst atoms (M4A).
+ */
+public final class MetadataExtractor {
+
+    private static final int SCAN_BYTES = 64 * 1024;
+    private static final int MAX_TEXT_FRAME = 64 * 1024;
+
+    private static final int[][] MPEG_BITRATES = {
+            // MPEG-1 layer I, II, III
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            // MPEG-2/2.5 layer I, II & III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+    };
+    private static final int[][] MPEG_SAMPLE_RATES = {
+            {11025, 12000, 8000},   // MPEG-2.5
+            {0, 0, 0},              // reserved
+            {22050, 24000, 16000},  // MPEG-2
+            {44100, 48000, 32000}   // MPEG-1
+    };
+    private static final int[] ADTS_SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350
+    };
+
+    public static final class Metadata {
+        String title;
+        String artist;
+        String album;
+        long durationMillis = -1;
+
+        public String getTitle() { return title; }
+        public String getArtist() { return artist; }
+        public String getAlbum() { return album; }
+        public long getDurationMillis() { return durationMillis; }
+    }
+
+    private MetadataExtractor() {
+    }
+
+    public static Metadata extract(Path path) {
+        Metadata metadata = new Metadata();
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (name.endsWith(".m4a")) {
+                readMp4(channel, metadata);
+            } else if (name.endsWith(".wav")) {
+                readWav(channel, metadata);
+            } else {
+                long audioStart = readId3v2(channel, 0, metadata);
+                if (name.endsWith(".aac")) {
+                    readAdtsDuration(channel, audioStart, metadata);
+                } else {
+                    readId3v1(channel, metadata);
+                    readMpegDuration(channel, audioStart, metadata);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Unreadable or malformed headers: keep whatever was found so far
+        }
+        return metadata;
+    }
+
+    // --- ID3 ---
+
+    /** Fills text frames from an ID3v2 tag at {@code offset} and returns the offset just past the tag. */
+    private static long readId3v2(FileChannel channel, long offset, Metadata metadata) throws IOException {
+        ByteBuffer header = EmbeddedArtReader.readFully(channel, offset, 10);
+        if (header.remaining() < 10 || header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') {
+            return offset;
+        }
+        int major = header.get(3);
+        int flags = header.get(5);
+        long tagEnd = offset + 10 + EmbeddedArtReader.syncsafe(header, 6) + ((flags & 0x10) != 0 ? 10 : 0);
+
+        long pos = offset + 10;
+        if ((flags & 0x40) != 0 && major >= 3) {
+            ByteBuffer ext = EmbeddedArtReader.readFully(channel, pos, 4);
+            pos += major == 4 ? EmbeddedArtReader.syncsafe(ext, 0) : ext.getInt(0) + 4;
+        }
+
+        int headerLength = major == 2 ? 6 : 10;
+        while (pos + headerLength <= tagEnd) {
+            // Only frame headers are read; large frames such as pictures are skipped over
+            ByteBuffer frame = EmbeddedArtReader.readFully(channel, pos, headerLength);
+            if (frame.remaining() < headerLength || frame.get(0) == 0) {
+                break;
+            }
+            String id;
+            int size;
+            if (major == 2) {
+                id = new String(new byte[]{frame.get(0), frame.get(1), frame.get(2)}, StandardCharsets.ISO_8859_1);
+                size = ((frame.get(3) & 0xFF) << 16) | ((frame.get(4) & 0xFF) << 8) | (frame.get(5) & 0xFF);
+            } else {
+                id = EmbeddedArtReader.fourCc(frame, 0);
+                size = major == 4 ? EmbeddedArtReader.syncsafe(frame, 4) : frame.getInt(4);
+            }
+            if (size <= 0 || pos + headerLength + size > tagEnd) {
+                break;
+            }
+
+            String field = textField(id);
+            if (field != null && size <= MAX_TEXT_FRAME) {
+                ByteBuffer body = EmbeddedArtReader.readFully(channel, pos + headerLength, size);
+                applyField(metadata, field, decodeText(body.array(), 0, body.remaining()));
+            }
+            pos += headerLength + size;
+        }
+        return tagEnd;
+    }
+
+    private static String textField(String frameId) {
+        switch (frameId) {
+            case "TIT2": case "TT2": return "title";
+            case "TPE1": case "TP1": return "artist";
+            case "TALB": case "TAL": return "album";
+            case "TLEN": case "TLE": return "length";
+            default: return null;
+        }
+    }
+
+    private static void applyField(Metadata metadata, String field, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        switch (field) {
+            case "title": metadata.title = value; break;
+            case "artist": metadata.artist = value; break;
+            case "album": metadata.album = value; break;
+            case "length":
+                try {
+                    metadata.durationMillis = Long.parseLong(value.trim());
+                } catch (NumberFormatException ignored) {
+                    // Fall back to the frame-header estimate
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String decodeText(byte[] data, int offset, int length) {
+        if (length < 2) {
+            return null;
+        }
+        Charset charset;
+        switch (data[offset]) {
+            case 0: charset = StandardCharsets.ISO_8859_1; break;
+            case 1: charset = StandardCharsets.UTF_16; break;
+            case 2: charset = StandardCharsets.UTF_16BE; break;
+            default: charset = StandardCharsets.UTF_8; break;
+        }
+        String text = new String(data, offset + 1, length - 1, charset);
+        // Multiple values are NUL-separated; keep the first
+        int nul = text.indexOf('\0');
+        return (nul >= 0 ? text.substring(0, nul) : text).trim();
+    }
+
+    private static void readId3v1(FileChannel channel, Metadata metadata) throws IOException {
+        long size = channel.size();
+        if (size < 128) {
+            return;
+        }
+        ByteBuffer tag = EmbeddedArtReader.readFully(channel, size - 128, 128);
+        if (tag.get(0) != 'T' || tag.get(1) != 'A' || tag.get(2) != 'G') {
+            return;
+        }
+        if (metadata.title == null) metadata.title = latin1Field(tag.array(), 3, 30);
+        if (metadata.artist == null) metadata.artist = latin1Field(tag.array(), 33, 30);
+        if (metadata.album == null) metadata.album = latin1Field(tag.array(), 63, 30);
+    }
+
+    private static String latin1Field(byte[] data, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && data[end] != 0) {
+            end++;
+        }
+        String value = new String(data, offset, end - offset, StandardCharsets.ISO_8859_1).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // --- MPEG audio ---
+
+    private static void readMpegDuration(FileChannel channel, long audioStart, Metadata metadata) throws IOException {
+        if (metadata.durationMillis > 0) {
+            return;
+        }
+        ByteBuffer buffer = EmbeddedArtReader.readFully(channel, audioStart, SCAN_BYTES);
+        for (int i = 0; i + 4 <= buffer.limit(); i++) {
+            int header = buffer.getInt(i);
+            if ((header >>> 21) != 0x7FF) {
+                continue;
+            }
+            int version = (header >>> 19) & 3;
+            int layer = (header >>> 17) & 3;
+            int bitrateIndex = (header >>> 12) & 0xF;
+            int sampleRateIndex = (header >>> 10) & 3;
+            if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+                continue;
+            }
+
+            boolean mpeg1 = version == 3;
+            int sampleRate = MPEG_SAMPLE_RATES[version][sampleRateIndex];
+            int bitrateRow = mpeg1 ? 3 - layer : (layer == 3 ? 3 : 4);
+            int bitrateKbps = MPEG_BITRATES[bitrateRow][bitrateIndex];
+            int samplesPerFrame = layer == 3 ? 384 : (layer == 2 || mpeg1 ? 1152 : 576);
+            boolean mono = ((header >>> 6) & 3) == 3;
+
+            // Xing/Info (VBR) header lives right after the side information
+            int sideInfo = mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+            int xing = i + 4 + sideInfo;
+            if (xing + 12 <= buffer.limit()) {
+                String tag = EmbeddedArtReader.fourCc(buffer, xing);
+                if ((tag.equals("Xing") || tag.equals("Info")) && (buffer.getInt(xing + 4) & 1) != 0) {
+                    long frames = Integer.toUnsignedLong(buffer.getInt(xing + 8));
+                    metadata.durationMillis = frames * samplesPerFrame * 1000L / sampleRate;
+                    return;
+                }
+            }
+            int vbri = i + 4 + 32;
+            if (vbri + 18 <= buffer.limit() && EmbeddedArtReader.fourCc(buffer, vbri).equals("VBRI")) {
+                long frames = Integer.toUnsignedLong(buffer.getInt(vbri + 14));
+                metadata.durationMillis = frames * samplesPerFrame * 1000L / sampleRate;
+                return;
+            }
+
+            // Constant bitrate: audio bytes over byte rate
+            long audioBytes = channel.size() - audioStart - i - (hasId3v1(channel) ? 128 : 0);
+            metadata.durationMillis = audioBytes * 8L / bitrateKbps;
+            return;
+        }
+    }
+
+    private static boolean hasId3v1(FileChannel channel) throws IOException {
+        if (channel.size() < 128) {
+            return false;
+        }
+        ByteBuffer tag = EmbeddedArtReader.readFully(channel, channel.size() - 128, 3);
+        return tag.remaining() == 3 && tag.get(0) == 'T' && tag.get(1) == 'A' && tag.get(2) == 'G';
+    }
+
+    // --- AAC (ADTS) ---
+
+    private static void readAdtsDuration(FileChannel channel, long audioStart, Metadata metadata) throws IOException {
+        if (metadata.durationMillis > 0) {
+            return;
+        }
+        ByteBuffer buffer = EmbeddedArtReader.readFully(channel, audioStart, SCAN_BYTES);
+        int pos = 0;
+        while (pos + 7 <= buffer.limit()
+                && !((buffer.get(pos) & 0xFF) == 0xFF && (buffer.get(pos + 1) & 0xF6) == 0xF0)) {
+            pos++;
+        }
+        int first = pos;
+        int frames = 0;
+        int sampleRate = 0;
+        // Average the frame length over the scanned window and extrapolate
+        while (pos + 7 <= buffer.limit()
+                && (buffer.get(pos) & 0xFF) == 0xFF && (buffer.get(pos + 1) & 0xF6) == 0xF0) {
+            int rateIndex = (buffer.get(pos + 2) >>> 2) & 0xF;
+            if (rateIndex >= ADTS_SAMPLE_RATES.length) {
+                break;
+            }
+            sampleRate = ADTS_SAMPLE_RATES[rateIndex];
+            int frameLength = ((buffer.get(pos + 3) & 0x03) << 11) | ((buffer.get(pos + 4) & 0xFF) << 3)
+                    | ((buffer.get(pos + 5) & 0xE0) >>> 5);
+            if (frameLength < 7) {
+                break;
+            }
+            frames++;
+            pos += frameLength;
+        }
+        if (frames == 0 || sampleRate == 0) {
+            return;
+        }
+        double averageFrame = (double) (pos - first) / frames;
+        double totalFrames = (channel.size() - audioStart - first) / averageFrame;
+        metadata.durationMillis = (long) (totalFrames * 1024 * 1000 / sampleRate);
+    }
+
+    // --- RIFF/WAV ---
+
+    private static void readWav(FileChannel channel, Metadata metadata) throws IOException {
+        ByteBuffer header = EmbeddedArtReader.readFully(channel, 0, 12);
+        if (header.remaining() < 12 || !EmbeddedArtReader.fourCc(header, 0).equals("RIFF")
+                || !EmbeddedArtReader.fourCc(header, 8).equals("WAVE")) {
+            return;
+        }
+        long byteRate = 0;
+        long dataSize = -1;
+        long pos = 12;
+        long size = channel.size();
+        while (pos + 8 <= size) {
+            ByteBuffer chunk = EmbeddedArtReader.readFully(channel, pos, 8);
+            String id = EmbeddedArtReader.fourCc(chunk, 0);
+            long chunkSize = Integer.toUnsignedLong(Integer.reverseBytes(chunk.getInt(4)));
+            long body = pos + 8;
+            if (id.equals("fmt ")) {
+                ByteBuffer fmt = EmbeddedArtReader.readFully(channel, body, 16);
+                byteRate = Integer.toUnsignedLong(Integer.reverseBytes(fmt.getInt(8)));
+            } else if (id.equals("data")) {
+                // Streaming writers may leave 0 or 0xFFFFFFFF here; clamp to what is on disk
+                dataSize = Math.min(chunkSize, size - body);
+            } else if (id.equals("LIST") && chunkSize <= MAX_TEXT_FRAME) {
+                readInfoList(EmbeddedArtReader.readFully(channel, body, (int) chunkSize), metadata);
+            } else if (id.equalsIgnoreCase("id3 ")) {
+                readId3v2(channel, body, metadata);
+            }
+            pos = body + chunkSize + (chunkSize & 1);
+        }
+        if (byteRate > 0 && dataSize > 0) {
+            metadata.durationMillis = dataSize * 1000L / byteRate;
+        }
+    }
+
+    private static void readInfoList(ByteBuffer list, Metadata metadata) {
+        if (list.remaining() < 4 || !EmbeddedArtReader.fourCc(list, 0).equals("INFO")) {
+            return;
+        }
+        int pos = 4;
+        while (pos + 8 <= list.limit()) {
+            String id = EmbeddedArtReader.fourCc(list, pos);
+            int length = Integer.reverseBytes(list.getInt(pos + 4));
+            if (length < 0 || pos + 8 + length > list.limit()) {
+                return;
+            }
+            String value = latin1Field(list.array(), pos + 8, length);
+            if (value != null) {
+                if (id.equals("INAM") && metadata.title == null) metadata.title = value;
+                else if (id.equals("IART") && metadata.artist == null) metadata.artist = value;
+                else if (id.equals("IPRD") && metadata.album == null) metadata.album = value;
+            }
+            pos += 8 + length + (length & 1);
+        }
+    }
+
+    // --- MP4 ---
+
+    private static void readMp4(FileChannel channel, Metadata metadata) throws IOException {
+        long[] moov = EmbeddedArtReader.findAtom(channel, 0, channel.size(), "moov");
+        if (moov == null) {
+            return;
+        }
+        long[] mvhd = EmbeddedArtReader.findAtom(channel, moov[0], moov[1], "mvhd");
+        if (mvhd != null) {
+            ByteBuffer box = EmbeddedArtReader.readFully(channel, mvhd[0], 32);
+            boolean version1 = box.get(0) == 1;
+            long timescale = Integer.toUnsignedLong(box.getInt(version1 ? 20 : 12));
+            long duration = version1 ? box.getLong(24) : Integer.toUnsignedLong(box.getInt(16));
+            if (timescale > 0) {
+                metadata.durationMillis = duration * 1000L / timescale;
+            }
+        }
+
+        long[] udta = EmbeddedArtReader.findAtom(channel, moov[0], moov[1], "udta");
+        long[] meta = udta == null ? null : EmbeddedArtReader.findAtom(channel, udta[0], udta[1], "meta");
+        long[] ilst = meta == null ? null : EmbeddedArtReader.findAtom(channel, meta[0] + 4, meta[1], "ilst");
+        if (ilst == null) {
+            return;
+        }
+        metadata.title = mp4Text(channel, ilst, "©nam");
+        metadata.artist = mp4Text(channel, ilst, "©ART");
+        metadata.album = mp4Text(channel, ilst, "©alb");
+    }
+
+    private static String mp4Text(FileChannel channel, long[] ilst, String type) throws IOException {
+        long[] item = EmbeddedArtReader.findAtom(channel, ilst[0], ilst[1], type);
+        long[] data = item == null ? null : EmbeddedArtReader.findAtom(channel, item[0], item[1], "data");
+        if (data == null) {
+            return null;
+        }
+        long length = data[1] - data[0] - 8;
+        if (length <= 0 || length > MAX_TEXT_FRAME) {
+            return null;
+        }
+        ByteBuffer text = EmbeddedArtReader.readFully(channel, data[0] + 8, (int) length);
+        String value = new String(text.array(), 0, text.remaining(), StandardCharsets.UTF_8).trim();
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,102 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Probes tags and durations for new or changed files on a small fixed pool of background threads,
+ * records the results in the library catalog and applies them to the songs on the FX thread in batches.
+ */
+public class MetadataService {
+
+    private static final int MAX_BATCH = 1000;
+
+    private final LibraryCatalog catalog;
+    private final ExecutorService executor;
+    private final FxBatchPublisher<Probe> publisher;
+    private Consumer<List<Song>> onUpdated;
+
+    private static final class Probe {
+        final Song song;
+        final MetadataExtractor.Metadata metadata;
+
+        Probe(Song song, MetadataExtractor.Metadata metadata) {
+            this.song = song;
+            this.metadata = metadata;
+        }
+    }
+
+    public MetadataService(LibraryCatalog catalog) {
+        this.catalog = catalog;
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "metadata-probe");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+        this.publisher = new FxBatchPublisher<>(MAX_BATCH, this::apply);
+    }
+
+    /** Called on the FX thread with each batch of songs whose metadata was just filled in. */
+    public void setOnUpdated(Consumer<List<Song>> onUpdated) {
+        this.onUpdated = onUpdated;
+    }
+
+    public void enqueue(Song song) {
+        File file = song.getFile();
+        // Snapshot the filename-derived fallbacks now; the song itself is only touched on the FX thread
+        String fallbackTitle = song.getTitle();
+        String fallbackArtist = song.getArtist();
+        executor.execute(() -> {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            } catch (IOException e) {
+                return;
+            }
+            MetadataExtractor.Metadata metadata = MetadataExtractor.extract(file.toPath());
+            if (metadata.title == null) metadata.title = fallbackTitle;
+            if (metadata.artist == null) metadata.artist = fallbackArtist;
+            if (metadata.album == null) metadata.album = "";
+
+            catalog.put(file, attrs, metadata.title, metadata.artist, metadata.album, metadata.durationMillis);
+            publisher.add(new Probe(song, metadata));
+        });
+    }
+
+    private void apply(List<Probe> probes) {
+        List<Song> songs = new ArrayList<>(probes.size());
+        for (Probe probe : probes) {
+            Song song = probe.song;
+            song.setTitle(probe.metadata.title);
+            song.setArtist(probe.metadata.artist);
+            song.setAlbum(probe.metadata.album);
+            if (song.getDurationMillis() < 0) {
+                song.setDurationMillis(probe.metadata.durationMillis);
+            }
+            songs.add(song);
+        }
+        if (onUpdated != null) {
+            onUpdated.accept(songs);
+        }
+        // Batches arrive at most once per pulse, so appending them to the catalog here stays cheap
+        executor.execute(catalog::flush);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,31 @@
+package com.musicplayer.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// One update of a Metrics counter or histogram; timers fill in elapsed, everything else value
+@Name("com.musicplayer.Metric")
+@Label("Music Player Metric")
+@Category("Music Player")
+@Description("A measurement recorded through com.musicplayer.services.Metrics")
+@StackTrace(false)
+final class MetricEvent extends Event {
+
+    @Label("Metric")
+    String metric;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("Value")
+    long value;
+
+    @Label("Detail")
+    String detail;
+}
@@ -0,0 +1,371 @@
+package com.musicplayer.services;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process performance metrics: named counters and histograms that call sites create once (as
+ * static fields) and update on their hot paths. Every update is also emitted as a {@code
+ * com.musicplayer.Metric} JFR event.
+ *
+ * <p>Recording is off by default. It is on while it has been enabled (in the app, over JMX as
+ * {@code com.musicplayer:type=Metrics}, or with {@code -Dmusicplayer.metrics=true}) or while a JFR
+ * recording is running. When off, an update costs one volatile read: use {@link #start()} for the
+ * start time of a measurement, it skips the clock read and makes the later record a no-op.
+ */
+public final class Metrics {
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled = Boolean.getBoolean("musicplayer.metrics");
+    private static volatile boolean flightRecording;
+    // enabled || flightRecording, folded into one field for the hot path
+    private static volatile boolean active = enabled;
+
+    static {
+        if (FlightRecorder.isAvailable()) {
+            FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recordingStateChanged(Recording recording) {
+                    updateFlightRecording();
+                }
+            });
+            if (FlightRecorder.isInitialized()) {
+                updateFlightRecording(); // started with -XX:StartFlightRecording
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    private static void updateFlightRecording() {
+        boolean running = false;
+        for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings()) {
+            running |= recording.getState() == RecordingState.RUNNING;
+        }
+        flightRecording = running;
+        active = enabled || running;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+        active = on || flightRecording;
+    }
+
+    public static boolean isActive() {
+        return active;
+    }
+
+    /** Start time for a measurement, or 0 when not recording (recording against 0 is ignored). */
+    public static long start() {
+        return active ? System.nanoTime() : 0;
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /** Histogram of durations in nanoseconds. */
+    public static Histogram timer(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(n, null));
+    }
+
+    /** Histogram of plain values, e.g. a rate; {@code unit} is only used for display. */
+    public static Histogram histogram(String name, String unit) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(n, unit));
+    }
+
+    public static void reset() {
+        counters.values().forEach(Counter::reset);
+        histograms.values().forEach(Histogram::reset);
+    }
+
+    /** Registers the JMX view; safe to call more than once. */
+    public static void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("com.musicplayer:type=Metrics");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), name);
+            }
+        } catch (Exception ignored) {
+            // JMX is an optional window onto the metrics; the app works the same without it
+        }
+    }
+
+    /** Starts reporting FX application thread stalls longer than {@code thresholdMillis}. */
+    public static void watchFxThread(long thresholdMillis) {
+        FxStallMonitor.start(thresholdMillis);
+    }
+
+    /** Human-readable table of every metric, sorted by name. */
+    public static String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-28s %9s %10s %10s %10s %10s %10s%n",
+                "histogram", "count", "mean", "p50", "p90", "p99", "max"));
+        for (Histogram histogram : new TreeMap<>(histograms).values()) {
+            out.append(histogram.summary()).append('\n');
+        }
+        out.append(String.format("%n%-28s %9s%n", "counter", "value"));
+        for (Counter counter : new TreeMap<>(counters).values()) {
+            out.append(String.format("%-28s %9d%n", counter.name, counter.get()));
+        }
+        return out.toString();
+    }
+
+    /** Writes {@link #report()} to a new timestamped file in the app's data directory. */
+    public static Path dump() throws IOException {
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path file = AppPaths.resolve("metrics/metrics-" + stamp + ".txt");
+        Files.write(file, report().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    public static final class Counter {
+        private final String name;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public void increment() {
+            add(1);
+        }
+
+        public void add(long amount) {
+            if (!active) {
+                return;
+            }
+            value.add(amount);
+            MetricEvent event = new MetricEvent();
+            if (event.shouldCommit()) {
+                event.metric = name;
+                event.value = amount;
+                event.commit();
+            }
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        private void reset() {
+            value.reset();
+        }
+    }
+
+    /**
+     * Log-linear histogram: 8 buckets per power of two, so percentiles are within about 12% of the
+     * true value whatever the range; updates are lock-free.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+        private final String name;
+        private final String unit; // null for nanosecond durations
+        private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private Histogram(String name, String unit) {
+            this.name = name;
+            this.unit = unit;
+        }
+
+        /** Records the time since {@code startNanos} (from {@link Metrics#start()}). */
+        public void recordSince(long startNanos) {
+            recordSince(startNanos, null);
+        }
+
+        /** Same, tagging the JFR event with an outcome such as "hit" or "error". */
+        public void recordSince(long startNanos, String detail) {
+            if (startNanos != 0 && active) {
+                record(System.nanoTime() - startNanos, detail);
+            }
+        }
+
+        public void record(long value) {
+            record(value, null);
+        }
+
+        public void record(long value, String detail) {
+            if (!active) {
+                return;
+            }
+            value = Math.max(0, value);
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+            MetricEvent event = new MetricEvent();
+            if (event.shouldCommit()) {
+                event.metric = name;
+                event.detail = detail;
+                if (unit == null) {
+                    event.elapsed = value;
+                } else {
+                    event.value = value;
+                }
+                event.commit();
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        /** Upper bound of the bucket holding the given quantile (0..1), or 0 if empty. */
+        public long getPercentile(double quantile) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * n));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        String summary() {
+            return String.format("%-28s %9d %10s %10s %10s %10s %10s", name, getCount(), format(getMean()),
+                    format(getPercentile(0.5)), format(getPercentile(0.9)), format(getPercentile(0.99)),
+                    format(getMax()));
+        }
+
+        // Durations in ms, other values in their own unit
+        String format(double value) {
+            return unit == null ? String.format("%.2fms", value / 1_000_000) : String.format("%.0f%s", value, unit);
+        }
+
+        double scaled(double value) {
+            return unit == null ? value / 1_000_000 : value;
+        }
+
+        private static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            long base = 1L << exponent;
+            return base + ((sub + 1) << (exponent - SUB_BITS)) - 1;
+        }
+
+        private void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+    }
+
+    public interface MetricsMXBean {
+        boolean isEnabled();
+
+        void setEnabled(boolean enabled);
+
+        Map<String, Long> getCounters();
+
+        /** Per histogram: count, mean, p50, p99 and max (durations in ms). */
+        Map<String, double[]> getHistograms();
+
+        String getReport();
+
+        void reset();
+
+        /** Writes the report to a file and returns its path. */
+        String dump() throws IOException;
+    }
+
+    private static final class MBean implements MetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean on) {
+            Metrics.setEnabled(on);
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> values = new TreeMap<>();
+            counters.forEach((name, counter) -> values.put(name, counter.get()));
+            return values;
+        }
+
+        @Override
+        public Map<String, double[]> getHistograms() {
+            Map<String, double[]> values = new TreeMap<>();
+            histograms.forEach((name, h) -> values.put(name, new double[] {h.getCount(), h.scaled(h.getMean()),
+                    h.scaled(h.getPercentile(0.5)), h.scaled(h.getPercentile(0.99)), h.scaled(h.getMax())}));
+            return values;
+        }
+
+        @Override
+        public String getReport() {
+            return Metrics.report();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+
+        @Override
+        public String dump() throws IOException {
+            return Metrics.dump().toString();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.musicplayer.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * When each track was last played, keyed by path. Like {@link LibraryCatalog} the file is an
+ * append-only log of records where the last one for a path wins; every play appends one record,
+ * and the log is compacted on load once stale records outnumber live ones. Plays are recorded in
+ * memory straight away and appended to the file on a background thread.
+ */
+public class PlayHistory {
+
+    private static final int MAGIC = 0x4D504850; // "MPHP"
+    private static final int VERSION = 1;
+
+    private final Path historyFile;
+    private final Map<String, Long> lastPlayed = new ConcurrentHashMap<>();
+    // One thread, so records are appended in the order they were played
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "play-history-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PlayHistory(Path historyFile) {
+        this.historyFile = historyFile;
+    }
+
+    public synchronized void load() {
+        lastPlayed.clear();
+        if (!Files.exists(historyFile)) {
+            return;
+        }
+        int records = 0;
+        boolean needsRewrite = false;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(historyFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                needsRewrite = true;
+            } else {
+                while (in.available() > 0) {
+                    String path = in.readUTF();
+                    lastPlayed.put(path, in.readLong());
+                    records++;
+                }
+            }
+        } catch (EOFException e) {
+            // Torn trailing record from an interrupted append
+            needsRewrite = true;
+        } catch (IOException e) {
+            needsRewrite = true;
+        }
+        if (needsRewrite || records > 2 * lastPlayed.size() + 64) {
+            rewrite();
+        }
+    }
+
+    /** Epoch millis of the last play, or 0 if the file was never played. */
+    public long lastPlayed(File file) {
+        Long millis = lastPlayed.get(file.getAbsolutePath());
+        return millis != null ? millis : 0;
+    }
+
+    public void recordPlay(File file, long millis) {
+        String path = file.getAbsolutePath();
+        lastPlayed.put(path, millis);
+        writer.execute(() -> append(path, millis));
+    }
+
+    private synchronized void append(String path, long millis) {
+        boolean fresh = !Files.exists(historyFile);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(historyFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            if (fresh) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            out.writeUTF(path);
+            out.writeLong(millis);
+        } catch (IOException ignored) {
+            // Still known for this session
+        }
+    }
+
+    private void rewrite() {
+        Path temp = historyFile.resolveSibling(historyFile.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                for (Map.Entry<String, Long> entry : lastPlayed.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+            }
+            try {
+                Files.move(temp, historyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, historyFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ignored) {
+            // Compacted on a later load
+        }
+    }
+}
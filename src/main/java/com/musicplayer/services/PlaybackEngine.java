@@ -0,0 +1,503 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Owns the play queue and playback state, independent of any UI. The queue is an observable song
+ * list (normally the playlist); the engine follows its changes, drives a {@link Player} and reports
+ * what happened to its {@link Listener}s, so the same logic runs headless against a fake player.
+ *
+ * <p>Positions are found in O(1) through an array indexed by {@link Song#getId()}. Appends keep it
+ * current; other structural changes mark it stale and it is rebuilt on the next lookup.
+ *
+ * <p>Shuffle never reorders the queue: it plays through a separate {@link ShuffleOrder} that follows
+ * the queue's adds and removes and keeps the history {@link #previous()} walks back through.
+ *
+ * <p>Not thread-safe: call from one thread (the FX thread in the app).
+ */
+public class PlaybackEngine {
+
+    public enum State {
+        /** Nothing loaded. */
+        IDLE,
+        /** A song was requested and is opening. */
+        LOADING,
+        PLAYING,
+        PAUSED,
+        /** A song is loaded but stopped, or the end of the queue was reached. */
+        STOPPED,
+        /** The current song failed to load or play. */
+        ERROR
+    }
+
+    public enum RepeatMode {
+        NONE, ALL, ONE
+    }
+
+    /** What the engine needs from an audio backend; implemented by {@link AudioService}. */
+    public interface Player {
+        void setPlaybackListener(AudioService.PlaybackListener listener);
+
+        void loadSong(Song song);
+
+        void play();
+
+        void pause();
+
+        void stop();
+
+        /** Plays the loaded song again from the start. */
+        void restart();
+    }
+
+    public interface Listener {
+        default void onSongChanged(Song song) {}
+
+        default void onStateChanged(State state) {}
+
+        default void onReady(Song song, Duration totalDuration) {}
+
+        default void onError(String message) {}
+    }
+
+    private static final Metrics.Histogram SWITCH_GAP = Metrics.timer("playback.switch");
+
+    private final ObservableList<Song> queue;
+    private final Player player;
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Random random = new Random();
+
+    private int[] positionById = new int[0];
+    private boolean positionsStale = true;
+
+    private State state = State.IDLE;
+    private RepeatMode repeatMode = RepeatMode.ALL;
+    private Song current;
+    // Where the current song is, or was before it got removed, so next/previous carry on from there
+    private int anchor = -1;
+    // Non-null while shuffling
+    private ShuffleOrder shuffleOrder;
+    // When the pending track switch was asked for (or the previous track ended), for the switch-gap metric
+    private long switchStartNanos;
+
+    public PlaybackEngine(ObservableList<Song> queue, Player player) {
+        this.queue = queue;
+        this.player = player;
+        queue.addListener((ListChangeListener<Song>) this::onQueueChanged);
+        player.setPlaybackListener(new AudioService.PlaybackListener() {
+            @Override
+            public void onReady(Song song, Duration totalDuration) {
+                playerReady(song, totalDuration);
+            }
+
+            @Override
+            public void onPlaybackEnd() {
+                playerEnded();
+            }
+
+            @Override
+            public void onError(String message) {
+                playerFailed(message);
+            }
+        });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Song getCurrentSong() {
+        return current;
+    }
+
+    /** Queue index of the current song, or -1. */
+    public int getCurrentPosition() {
+        return current == null ? -1 : positionOf(current);
+    }
+
+    public RepeatMode getRepeatMode() {
+        return repeatMode;
+    }
+
+    public void setRepeatMode(RepeatMode repeatMode) {
+        this.repeatMode = repeatMode;
+    }
+
+    public boolean isShuffle() {
+        return shuffleOrder != null;
+    }
+
+    /** Turns shuffle on or off; a fresh shuffle starts from the current song without touching the queue. */
+    public void setShuffle(boolean shuffle) {
+        if (shuffle == isShuffle()) {
+            return;
+        }
+        if (!shuffle) {
+            shuffleOrder = null;
+            return;
+        }
+        int[] ids = new int[queue.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = queue.get(i).getId();
+        }
+        shuffleOrder = new ShuffleOrder(ids, random);
+        if (current != null) {
+            shuffleOrder.jumpTo(current.getId());
+        }
+    }
+
+    public boolean isActive() {
+        return state == State.LOADING || state == State.PLAYING;
+    }
+
+    // --- commands ---
+
+    /** Loads and starts {@code song}, which must be in the queue. */
+    public void play(Song song) {
+        int position = positionOf(song);
+        if (position < 0) {
+            throw new IllegalArgumentException("Song is not in the queue: " + song);
+        }
+        start(song, position);
+    }
+
+    public void playAt(int position) {
+        start(queue.get(position), position);
+    }
+
+    /** Resumes the paused or stopped song, or starts the queue if nothing is loaded. */
+    public void resume() {
+        if (current != null && (state == State.PAUSED || state == State.STOPPED)) {
+            player.play();
+            setState(State.PLAYING);
+        } else if (current == null && shuffleOrder != null) {
+            next();
+        } else if (current == null && !queue.isEmpty()) {
+            playAt(Math.max(0, Math.min(anchor, queue.size() - 1)));
+        }
+    }
+
+    public void pause() {
+        if (isActive()) {
+            player.pause();
+            setState(State.PAUSED);
+        }
+    }
+
+    public void stop() {
+        if (current != null && state != State.STOPPED) {
+            player.stop();
+            setState(State.STOPPED);
+        }
+    }
+
+    /** Skips forward in play order; at the end of the queue wraps with repeat-all, otherwise stops. */
+    public void next() {
+        if (shuffleOrder != null) {
+            Song song = songById(nextShuffled());
+            if (song != null) {
+                start(song, positionOf(song));
+            } else {
+                stop();
+            }
+            return;
+        }
+        int position = nextPosition();
+        if (position >= 0) {
+            playAt(position);
+        } else {
+            stop();
+        }
+    }
+
+    /**
+     * Skips back in play order, always wrapping around. While shuffling it walks back through the
+     * songs played so far, and restarts the current song once the history runs out.
+     */
+    public void previous() {
+        if (queue.isEmpty()) {
+            return;
+        }
+        if (shuffleOrder != null) {
+            Song song = songById(shuffleOrder.previous());
+            if (song == null) {
+                song = current;
+            }
+            if (song != null) {
+                start(song, positionOf(song));
+            }
+            return;
+        }
+        int base = current != null ? positionOf(current) : anchor;
+        playAt((Math.max(base, 0) - 1 + queue.size()) % queue.size());
+    }
+
+    /** The next {@code count} songs in play order, honouring repeat mode. */
+    public List<Song> upcoming(int count) {
+        List<Song> upcoming = new ArrayList<>(count);
+        if (shuffleOrder != null) {
+            for (int i = 1; i <= count; i++) {
+                Song song = songById(shuffleOrder.peek(i));
+                if (song == null) {
+                    break;
+                }
+                upcoming.add(song);
+            }
+            return upcoming;
+        }
+        int base = current != null ? positionOf(current) : -1;
+        if (base < 0 || queue.isEmpty()) {
+            return upcoming;
+        }
+        for (int i = 1; i <= count && i < queue.size(); i++) {
+            int position = base + i;
+            if (position >= queue.size()) {
+                if (repeatMode != RepeatMode.ALL) {
+                    break;
+                }
+                position -= queue.size();
+            }
+            upcoming.add(queue.get(position));
+        }
+        return upcoming;
+    }
+
+    /** The songs the user is most likely to switch to next: the next and the previous one. */
+    public List<Song> neighbours() {
+        List<Song> candidates = new ArrayList<>(2);
+        if (shuffleOrder != null) {
+            addIfPresent(candidates, songById(shuffleOrder.peek(1)));
+            addIfPresent(candidates, songById(shuffleOrder.peekPrevious()));
+            return candidates;
+        }
+        int base = current != null ? positionOf(current) : -1;
+        if (base < 0) {
+            return candidates;
+        }
+        int next = nextPosition();
+        if (next >= 0) {
+            candidates.add(queue.get(next));
+        }
+        candidates.add(queue.get((base - 1 + queue.size()) % queue.size()));
+        return candidates;
+    }
+
+    // --- player events ---
+
+    private void playerReady(Song song, Duration totalDuration) {
+        if (song != current) {
+            return; // a player that was replaced before it got ready
+        }
+        if (state == State.LOADING) {
+            setState(State.PLAYING);
+        }
+        SWITCH_GAP.recordSince(switchStartNanos);
+        switchStartNanos = 0;
+        for (Listener listener : listeners) {
+            listener.onReady(song, totalDuration);
+        }
+    }
+
+    private void playerEnded() {
+        if (repeatMode == RepeatMode.ONE) {
+            player.restart();
+        } else {
+            long ended = Metrics.start();
+            next();
+            if (state == State.LOADING) {
+                switchStartNanos = ended; // the gap starts when the old track went silent
+            }
+        }
+    }
+
+    private void playerFailed(String message) {
+        if (current != null) {
+            setState(State.ERROR);
+        }
+        for (Listener listener : listeners) {
+            listener.onError(message);
+        }
+    }
+
+    // --- internals ---
+
+    private void start(Song song, int position) {
+        if (shuffleOrder != null) {
+            shuffleOrder.jumpTo(song.getId()); // no-op when the song came from the shuffle order
+        }
+        switchStartNanos = Metrics.start();
+        player.stop();
+        current = song;
+        anchor = position;
+        setState(State.LOADING);
+        for (Listener listener : listeners) {
+            listener.onSongChanged(song);
+        }
+        player.loadSong(song);
+        if (state == State.LOADING) { // loadSong reports unplayable files synchronously
+            player.play();
+        }
+    }
+
+    private int nextPosition() {
+        if (queue.isEmpty()) {
+            return -1;
+        }
+        int position = current != null ? positionOf(current) + 1 : Math.max(anchor, 0);
+        if (position >= queue.size()) {
+            return repeatMode == RepeatMode.ALL ? 0 : -1;
+        }
+        return position;
+    }
+
+    // Next id in shuffle order, starting a new cycle with repeat-all; -1 when there's nothing left
+    private int nextShuffled() {
+        int id = shuffleOrder.next();
+        if (id < 0 && repeatMode == RepeatMode.ALL) {
+            shuffleOrder.restartCycle();
+            id = shuffleOrder.next();
+            if (id < 0) {
+                id = shuffleOrder.current(); // a single song repeats itself
+            }
+        }
+        return id;
+    }
+
+    private static void addIfPresent(List<Song> songs, Song song) {
+        if (song != null) {
+            songs.add(song);
+        }
+    }
+
+    private int positionOf(Song song) {
+        int position = positionOfId(song.getId());
+        return position >= 0 && queue.get(position) == song ? position : -1;
+    }
+
+    private Song songById(int id) {
+        int position = positionOfId(id);
+        return position >= 0 ? queue.get(position) : null;
+    }
+
+    private int positionOfId(int id) {
+        if (id < 0) {
+            return -1;
+        }
+        if (positionsStale) {
+            rebuildPositions();
+        }
+        int position = id < positionById.length ? positionById[id] : -1;
+        return position >= 0 && position < queue.size() && queue.get(position).getId() == id ? position : -1;
+    }
+
+    private void rebuildPositions() {
+        Arrays.fill(positionById, -1);
+        for (int i = 0; i < queue.size(); i++) {
+            recordPosition(queue.get(i), i);
+        }
+        positionsStale = false;
+    }
+
+    private void recordPosition(Song song, int position) {
+        int id = song.getId();
+        if (id >= positionById.length) {
+            int oldLength = positionById.length;
+            positionById = Arrays.copyOf(positionById, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(positionById, oldLength, positionById.length, -1);
+        }
+        positionById[id] = position;
+    }
+
+    private void onQueueChanged(ListChangeListener.Change<? extends Song> change) {
+        boolean currentRemoved = false;
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                positionsStale = true;
+                continue;
+            }
+            if (change.wasRemoved()) {
+                positionsStale = true;
+                if (shuffleOrder != null) {
+                    for (Song song : change.getRemoved()) {
+                        shuffleOrder.remove(song.getId());
+                    }
+                }
+                if (current != null && change.getRemoved().contains(current)) {
+                    currentRemoved = true;
+                    anchor = change.getFrom();
+                }
+            }
+            if (change.wasAdded()) {
+                if (shuffleOrder != null) {
+                    for (Song song : change.getAddedSubList()) {
+                        shuffleOrder.add(song.getId());
+                    }
+                }
+                // Appends (imports) keep the index current; inserts shift everything after them
+                if (!positionsStale && change.getFrom() == queue.size() - change.getAddedSize()) {
+                    for (int i = change.getFrom(); i < change.getTo(); i++) {
+                        recordPosition(queue.get(i), i);
+                    }
+                } else {
+                    positionsStale = true;
+                }
+            }
+        }
+        if (currentRemoved && positionOf(current) < 0) {
+            player.stop();
+            current = null;
+            setState(queue.isEmpty() ? State.IDLE : State.STOPPED);
+            for (Listener listener : listeners) {
+                listener.onSongChanged(null);
+            }
+        }
+    }
+
+    private void setState(State next) {
+        if (next == state) {
+            return;
+        }
+        if (!canTransition(state, next)) {
+            throw new IllegalStateException("Illegal playback transition " + state + " -> " + next);
+        }
+        state = next;
+        for (Listener listener : listeners) {
+            listener.onStateChanged(next);
+        }
+    }
+
+    private static boolean canTransition(State from, State to) {
+        switch (to) {
+            case LOADING:
+                return true;
+            case PLAYING:
+                return from == State.LOADING || from == State.PAUSED || from == State.STOPPED;
+            case PAUSED:
+                return from == State.LOADING || from == State.PLAYING;
+            case STOPPED:
+                return from != State.IDLE;
+            case ERROR:
+                return from != State.IDLE;
+            case IDLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
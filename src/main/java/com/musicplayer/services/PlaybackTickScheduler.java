@@ -0,0 +1,120 @@
+package com.musicplayer.services;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Samples the playback position once per animation pulse (optionally capped to a lower rate) and
+ * hands the same sample to every subscriber whose own rate is due, instead of fanning every
+ * {@code currentTimeProperty} change out to all listeners. Subscribers only hear about positions that
+ * changed; a jump bigger than their interval (a seek) is delivered right away.
+ *
+ * <p>Runs only while playback is active; {@link #requestTick()} delivers updates for a short burst
+ * while paused, long enough for an asynchronous seek to land.
+ */
+public class PlaybackTickScheduler {
+
+    @FunctionalInterface
+    public interface Subscriber {
+        void onTick(double positionSeconds);
+    }
+
+    public final class Subscription {
+        private final Subscriber subscriber;
+        private final long intervalNanos;
+        private final double intervalSeconds;
+        private long lastDeliveredNanos;
+        private double lastPosition = Double.NaN;
+
+        private Subscription(Subscriber subscriber, double hz) {
+            this.subscriber = subscriber;
+            this.intervalNanos = hz <= 0 ? 0 : (long) (1_000_000_000L / hz);
+            this.intervalSeconds = intervalNanos / 1_000_000_000.0;
+        }
+
+        public void cancel() {
+            subscriptions.remove(this);
+        }
+
+        private void offer(long now, double position, boolean force) {
+            if (position == lastPosition) {
+                return;
+            }
+            boolean due = now - lastDeliveredNanos >= intervalNanos;
+            boolean jumped = Double.isNaN(lastPosition) || Math.abs(position - lastPosition) > 2 * intervalSeconds + 0.25;
+            if (due || jumped || force) {
+                lastDeliveredNanos = now;
+                lastPosition = position;
+                subscriber.onTick(position);
+            }
+        }
+    }
+
+    private static final long BURST_NANOS = 300_000_000L;
+
+    private final DoubleSupplier positionSeconds;
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private long minSampleIntervalNanos;
+    private long lastSampleNanos;
+    private boolean running;
+    private long burstUntilNanos;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pulse(now);
+        }
+    };
+
+    public PlaybackTickScheduler(DoubleSupplier positionSeconds) {
+        this.positionSeconds = positionSeconds;
+    }
+
+    /** Caps how often the position is sampled; 0 (the default) samples on every animation pulse. */
+    public void setMaxSampleRate(double hz) {
+        this.minSampleIntervalNanos = hz <= 0 ? 0 : (long) (1_000_000_000L / hz);
+    }
+
+    /** Subscribes at the given rate in Hz; 0 means every sample. Must be called on the FX thread. */
+    public Subscription subscribe(double hz, Subscriber subscriber) {
+        Subscription subscription = new Subscription(subscriber, hz);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public void start() {
+        running = true;
+        timer.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (System.nanoTime() >= burstUntilNanos) {
+            timer.stop();
+        }
+    }
+
+    /** Delivers every position change to all subscribers for a moment, e.g. after a seek while paused. */
+    public void requestTick() {
+        burstUntilNanos = System.nanoTime() + BURST_NANOS;
+        timer.start();
+    }
+
+    private void pulse(long now) {
+        boolean force = now < burstUntilNanos;
+        if (!force && now - lastSampleNanos < minSampleIntervalNanos) {
+            return;
+        }
+        lastSampleNanos = now;
+        double position = positionSeconds.getAsDouble();
+        for (int i = 0; i < subscriptions.size(); i++) {
+            subscriptions.get(i).offer(now, position, force);
+        }
+        if (!force && !running) {
+            timer.stop();
+        }
+    }
+}
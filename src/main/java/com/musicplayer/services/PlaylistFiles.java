@@ -0,0 +1,503 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Reading and writing saved playlists. The native {@code .mpl} format is a small versioned binary
+ * file that stores each entry's resolved tags together with the file's size and modification time,
+ * so reloading an unchanged library needs no re-probing. M3U/M3U8, PLS, XSPF and the old
+ * one-path-per-line text files are read and written for interoperability.
+ *
+ * <p>Readers are streaming: entries are handed to a callback as they are parsed, in playlist order.
+ */
+public final class PlaylistFiles {
+
+    private static final int MAGIC = 0x4D50504C; // "MPPL"
+    private static final int VERSION = 1;
+    private static final String XSPF_NS = "http://xspf.org/ns/0/";
+
+    public enum Format {
+        NATIVE("mpl"), M3U8("m3u8"), PLS("pls"), XSPF("xspf"), TEXT("txt");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /** Picks the format from the file extension; unknown extensions are treated as plain text. */
+        public static Format of(File file) {
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".mpl")) return NATIVE;
+            if (name.endsWith(".m3u8") || name.endsWith(".m3u")) return M3U8;
+            if (name.endsWith(".pls")) return PLS;
+            if (name.endsWith(".xspf")) return XSPF;
+            return TEXT;
+        }
+    }
+
+    /**
+     * One playlist entry as stored on disk. Everything except the file may be unknown: tags are
+     * null, and duration, size and modification time are -1.
+     */
+    public static final class Entry {
+        final File file;
+        final String title;
+        final String artist;
+        final String album;
+        final long durationMillis;
+        final long lastModified;
+        final long size;
+        final boolean favorite;
+
+        Entry(File file, String title, String artist, String album, long durationMillis,
+              long lastModified, long size, boolean favorite) {
+            this.file = file;
+            this.title = title;
+            this.artist = artist;
+            this.album = album;
+            this.durationMillis = durationMillis;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.favorite = favorite;
+        }
+
+        Entry(File file, String title, String artist, long durationMillis) {
+            this(file, title, artist, null, durationMillis, -1, -1, false);
+        }
+
+        /** Snapshots a song's current values; call on the FX thread, then write from any thread. */
+        public static Entry of(Song song) {
+            return new Entry(song.getFile(), song.getTitle(), song.getArtist(), song.getAlbum(),
+                    song.getDurationMillis(), -1, -1, song.isFavorite());
+        }
+
+        public File getFile() {
+            return file;
+        }
+    }
+
+    private PlaylistFiles() {
+    }
+
+    public static List<Entry> snapshot(List<Song> songs) {
+        List<Entry> entries = new ArrayList<>(songs.size());
+        for (Song song : songs) {
+            entries.add(Entry.of(song));
+        }
+        return entries;
+    }
+
+    public static void save(List<Entry> entries, File file) throws IOException {
+        switch (Format.of(file)) {
+            case NATIVE: writeNative(entries, file); break;
+            case M3U8: writeM3u(entries, file); break;
+            case PLS: writePls(entries, file); break;
+            case XSPF: writeXspf(entries, file); break;
+            default: writeText(entries, file); break;
+        }
+    }
+
+    /** Streams the entries of a playlist in any supported format to {@code sink}, in order. */
+    public static void read(File file, Consumer<Entry> sink) throws IOException {
+        switch (Format.of(file)) {
+            case NATIVE: readNative(file, sink); break;
+            case M3U8: readM3u(file, sink); break;
+            case PLS: readPls(file, sink); break;
+            case XSPF: readXspf(file, sink); break;
+            default: readText(file, sink); break;
+        }
+    }
+
+    /** Writes one absolute path per line. */
+    public static void saveText(List<Song> songs, File file) throws IOException {
+        writeText(snapshot(songs), file);
+    }
+
+    /** Reads a playlist written by {@link #saveText}, dropping entries that no longer exist. */
+    public static List<File> loadText(File file) throws IOException {
+        List<File> files = new ArrayList<>();
+        readText(file, entry -> files.add(entry.file));
+        return files.stream()
+                .filter(f -> f.exists() && LibraryImporter.isAudioFile(f))
+                .collect(Collectors.toList());
+    }
+
+    // --- native ---
+
+    private static void writeNative(List<Entry> entries, File file) throws IOException {
+        writeAtomically(file, out -> {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            for (Entry entry : entries) {
+                // Size and mtime let the reader trust the stored tags while the file is unchanged
+                File audio = entry.file;
+                data.writeBoolean(true);
+                data.writeUTF(audio.getAbsolutePath());
+                data.writeLong(audio.lastModified());
+                data.writeLong(audio.length());
+                data.writeUTF(nonNull(entry.title));
+                data.writeUTF(nonNull(entry.artist));
+                data.writeUTF(nonNull(entry.album));
+                data.writeLong(entry.durationMillis);
+                data.writeBoolean(entry.favorite);
+            }
+            data.writeBoolean(false);
+            data.flush();
+        });
+    }
+
+    private static void readNative(File file, Consumer<Entry> sink) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a playlist file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported playlist version " + version);
+            }
+            while (in.readBoolean()) {
+                File audio = new File(in.readUTF());
+                long lastModified = in.readLong();
+                long size = in.readLong();
+                String title = in.readUTF();
+                String artist = in.readUTF();
+                String album = in.readUTF();
+                long durationMillis = in.readLong();
+                boolean favorite = in.readBoolean();
+                sink.accept(new Entry(audio, title, artist, album, durationMillis, lastModified, size, favorite));
+            }
+        } catch (EOFException e) {
+            // Truncated file: keep the entries read so far
+        }
+    }
+
+    // --- M3U / M3U8 ---
+
+    private static void writeM3u(List<Entry> entries, File file) throws IOException {
+        writeTextAtomically(file, writer -> {
+            writer.write("#EXTM3U\n");
+            for (Entry entry : entries) {
+                long seconds = entry.durationMillis < 0 ? -1 : entry.durationMillis / 1000;
+                writer.write("#EXTINF:" + seconds + "," + displayName(entry) + "\n");
+                writer.write(entry.file.getAbsolutePath() + "\n");
+            }
+        });
+    }
+
+    private static void readM3u(File file, Consumer<Entry> sink) throws IOException {
+        Path base = baseDirectory(file);
+        try (BufferedReader reader = newReader(file)) {
+            String line;
+            String title = null;
+            String artist = null;
+            long durationMillis = -1;
+            while ((line = reader.readLine()) != null) {
+                line = stripBom(line).trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith("#EXTINF:")) {
+                    int comma = line.indexOf(',');
+                    durationMillis = comma < 0 ? -1 : parseSeconds(line.substring(8, comma));
+                    String name = comma < 0 ? "" : line.substring(comma + 1).trim();
+                    int dash = name.indexOf(" - ");
+                    artist = dash > 0 ? name.substring(0, dash).trim() : null;
+                    title = name.isEmpty() ? null : dash > 0 ? name.substring(dash + 3).trim() : name;
+                } else if (!line.startsWith("#")) {
+                    File audio = resolveLocation(base, line);
+                    if (audio != null) {
+                        sink.accept(new Entry(audio, title, artist, durationMillis));
+                    }
+                    title = null;
+                    artist = null;
+                    durationMillis = -1;
+                }
+            }
+        }
+    }
+
+    // --- PLS ---
+
+    private static void writePls(List<Entry> entries, File file) throws IOException {
+        writeTextAtomically(file, writer -> {
+            writer.write("[playlist]\n");
+            int n = 1;
+            for (Entry entry : entries) {
+                writer.write("File" + n + "=" + entry.file.getAbsolutePath() + "\n");
+                writer.write("Title" + n + "=" + displayName(entry) + "\n");
+                writer.write("Length" + n + "=" + (entry.durationMillis < 0 ? -1 : entry.durationMillis / 1000) + "\n");
+                n++;
+            }
+            writer.write("NumberOfEntries=" + entries.size() + "\n");
+            writer.write("Version=2\n");
+        });
+    }
+
+    // PLS keys entries by number and doesn't promise to group them, so entries are gathered before emitting
+    private static void readPls(File file, Consumer<Entry> sink) throws IOException {
+        Path base = baseDirectory(file);
+        Map<Integer, String[]> fields = new TreeMap<>();
+        try (BufferedReader reader = newReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = stripBom(line).trim();
+                int equals = line.indexOf('=');
+                if (equals < 0) {
+                    continue;
+                }
+                String key = line.substring(0, equals).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(equals + 1).trim();
+                int field = key.startsWith("file") ? 0 : key.startsWith("title") ? 1 : key.startsWith("length") ? 2 : -1;
+                if (field < 0) {
+                    continue;
+                }
+                try {
+                    int n = Integer.parseInt(key.substring(field == 0 ? 4 : field == 1 ? 5 : 6));
+                    fields.computeIfAbsent(n, k -> new String[3])[field] = value;
+                } catch (NumberFormatException ignored) {
+                    // NumberOfEntries and friends
+                }
+            }
+        }
+        for (String[] values : fields.values()) {
+            File audio = values[0] == null ? null : resolveLocation(base, values[0]);
+            if (audio != null) {
+                sink.accept(new Entry(audio, values[1], null, values[2] == null ? -1 : parseSeconds(values[2])));
+            }
+        }
+    }
+
+    // --- XSPF ---
+
+    private static void writeXspf(List<Entry> entries, File file) throws IOException {
+        writeAtomically(file, out -> {
+            try {
+                XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+                xml.writeStartDocument("UTF-8", "1.0");
+                xml.writeStartElement("playlist");
+                xml.writeDefaultNamespace(XSPF_NS);
+                xml.writeAttribute("version", "1");
+                xml.writeStartElement("trackList");
+                for (Entry entry : entries) {
+                    xml.writeStartElement("track");
+                    writeElement(xml, "location", entry.file.toPath().toAbsolutePath().toUri().toString());
+                    writeElement(xml, "title", entry.title);
+                    writeElement(xml, "creator", entry.artist);
+                    writeElement(xml, "album", entry.album == null || entry.album.isEmpty() ? null : entry.album);
+                    writeElement(xml, "duration", entry.durationMillis < 0 ? null : Long.toString(entry.durationMillis));
+                    xml.writeEndElement();
+                }
+                xml.writeEndElement();
+                xml.writeEndElement();
+                xml.writeEndDocument();
+                xml.close();
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            }
+        });
+    }
+
+    private static void writeElement(XMLStreamWriter xml, String name, String value) throws XMLStreamException {
+        if (value != null) {
+            xml.writeStartElement(name);
+            xml.writeCharacters(value);
+            xml.writeEndElement();
+        }
+    }
+
+    private static void readXspf(File file, Consumer<Entry> sink) throws IOException {
+        Path base = baseDirectory(file);
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            String location = null;
+            String title = null;
+            String artist = null;
+            String album = null;
+            long durationMillis = -1;
+            boolean inTrack = false;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (name.equals("track")) {
+                        inTrack = true;
+                        location = title = artist = album = null;
+                        durationMillis = -1;
+                    } else if (inTrack) {
+                        switch (name) {
+                            case "location": location = xml.getElementText().trim(); break;
+                            case "title": title = xml.getElementText().trim(); break;
+                            case "creator": artist = xml.getElementText().trim(); break;
+                            case "album": album = xml.getElementText().trim(); break;
+                            case "duration": durationMillis = parseLong(xml.getElementText().trim()); break;
+                            default: break;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("track")) {
+                    inTrack = false;
+                    File audio = location == null ? null : resolveLocation(base, location);
+                    if (audio != null) {
+                        sink.accept(new Entry(audio, title, artist, album, durationMillis, -1, -1, false));
+                    }
+                }
+            }
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid XSPF playlist: " + e.getMessage(), e);
+        }
+    }
+
+    // --- plain text ---
+
+    private static void writeText(List<Entry> entries, File file) throws IOException {
+        writeTextAtomically(file, writer -> {
+            for (Entry entry : entries) {
+                writer.write(entry.file.getAbsolutePath() + "\n");
+            }
+        });
+    }
+
+    private static void readText(File file, Consumer<Entry> sink) throws IOException {
+        Path base = baseDirectory(file);
+        try (BufferedReader reader = newReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = stripBom(line).trim();
+                File audio = line.isEmpty() ? null : resolveLocation(base, line);
+                if (audio != null) {
+                    sink.accept(new Entry(audio, null, null, -1));
+                }
+            }
+        }
+    }
+
+    // --- helpers ---
+
+    private interface StreamWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private interface TextWriter {
+        void write(Writer writer) throws IOException;
+    }
+
+    // Writes next to the target and moves it into place, so a failed save never truncates the old playlist
+    private static void writeAtomically(File file, StreamWriter body) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), "playlist", ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                body.write(out);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeTextAtomically(File file, TextWriter body) throws IOException {
+        writeAtomically(file, out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            body.write(writer);
+            writer.flush();
+        });
+    }
+
+    // Lenient UTF-8: malformed bytes in hand-edited playlists become U+FFFD instead of failing the load
+    private static BufferedReader newReader(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    private static Path baseDirectory(File playlist) {
+        Path parent = playlist.getAbsoluteFile().toPath().getParent();
+        return parent != null ? parent : playlist.getAbsoluteFile().toPath();
+    }
+
+    /** Absolute paths, paths relative to the playlist, and file: URIs; other URIs (streams) are skipped. */
+    private static File resolveLocation(Path base, String location) {
+        try {
+            if (location.regionMatches(true, 0, "file:", 0, 5)) {
+                return new File(URI.create(location));
+            }
+            if (location.matches("^[A-Za-z][A-Za-z0-9+.-]+://.*")) {
+                return null;
+            }
+            return base.resolve(location).normalize().toFile();
+        } catch (RuntimeException e) {
+            return null; // malformed URI or path
+        }
+    }
+
+    private static String displayName(Entry entry) {
+        String title = entry.title != null ? entry.title : entry.file.getName();
+        return entry.artist == null || entry.artist.isEmpty() ? title : entry.artist + " - " + title;
+    }
+
+    private static long parseSeconds(String value) {
+        long seconds = parseLong(value.trim());
+        return seconds < 0 ? -1 : seconds * 1000;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+
+    private static String nonNull(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,278 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Trigram index over case- and accent-folded title/artist/album text, kept in sync with a song list.
+ * A query starts from the shortest posting list among its trigrams (or from the previous result when
+ * the user is just typing more characters) and verifies candidates against the precomputed keys, so
+ * no per-song strings are allocated while searching.
+ *
+ * <p>Posting lists are append-only: removed or re-keyed songs leave stale entries behind that are
+ * filtered out during verification and dropped by an occasional rebuild.
+ *
+ * <p>The result of the latest {@link #search} stays current: songs added, removed or re-keyed while
+ * it is active are re-tested against it, so its predicate never goes stale.
+ */
+public class SearchIndex {
+
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final Map<Song, Integer> slots = new IdentityHashMap<>();
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private String[] keys = new String[1024];
+    private final IntList freeSlots = new IntList();
+    private int slotCount;
+    private int stalePostings;
+    private int livePostings;
+    private long modCount;
+
+    private String lastQuery = "";
+    private IntList lastResult;
+    private long lastModCount = -1;
+    // Slots matching the latest query, kept in sync with the songs; null while there is no query
+    private BitSet activeMatches;
+
+    public SearchIndex(ObservableList<Song> source) {
+        for (Song song : source) {
+            add(song);
+        }
+        source.addListener((ListChangeListener<Song>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated()) {
+                    continue;
+                }
+                for (Song removed : change.getRemoved()) {
+                    remove(removed);
+                }
+                for (Song added : change.getAddedSubList()) {
+                    add(added);
+                }
+            }
+        });
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Re-indexes songs whose title, artist or album changed (e.g. after their tags were probed).
+     * Returns whether one of them moved in or out of the latest search's results.
+     */
+    public boolean update(List<Song> changed) {
+        boolean moved = false;
+        for (Song song : changed) {
+            Integer slot = slots.get(song);
+            if (slot == null) {
+                continue;
+            }
+            String key = keyOf(song);
+            if (!key.equals(keys[slot])) {
+                stalePostings += trigramCount(keys[slot]);
+                keys[slot] = key;
+                indexTrigrams(slot, key);
+                modCount++;
+                moved |= retest(slot);
+            }
+        }
+        compactIfNeeded();
+        return moved;
+    }
+
+    /** Returns a predicate matching songs whose title, artist or album contains the query. */
+    public Predicate<Song> search(String query) {
+        String folded = query == null ? "" : fold(query.trim());
+        if (folded.isEmpty()) {
+            lastQuery = "";
+            lastResult = null;
+            activeMatches = null;
+            return song -> true;
+        }
+
+        IntList candidates;
+        boolean candidatesAreAllSlots = false;
+        if (lastResult != null && lastModCount == modCount && folded.contains(lastQuery)) {
+            // Refinement: every match of the longer query is also a match of the previous one
+            candidates = lastResult;
+        } else if (folded.length() >= 3) {
+            candidates = smallestPosting(folded);
+        } else {
+            candidates = null;
+            candidatesAreAllSlots = true;
+        }
+
+        IntList result = new IntList();
+        BitSet matches = new BitSet(slotCount);
+        if (candidatesAreAllSlots) {
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (keys[slot] != null && keys[slot].contains(folded)) {
+                    matches.set(slot);
+                    result.add(slot);
+                }
+            }
+        } else if (candidates != null) {
+            for (int i = 0; i < candidates.size; i++) {
+                int slot = candidates.values[i];
+                if (!matches.get(slot) && keys[slot] != null && keys[slot].contains(folded)) {
+                    matches.set(slot);
+                    result.add(slot);
+                }
+            }
+        }
+
+        lastQuery = folded;
+        lastResult = result;
+        lastModCount = modCount;
+        activeMatches = matches;
+        return song -> {
+            Integer slot = slots.get(song);
+            return slot != null && matches.get(slot);
+        };
+    }
+
+    private IntList smallestPosting(String folded) {
+        IntList best = null;
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            IntList posting = postings.get(trigram(folded, i));
+            if (posting == null) {
+                return null; // some trigram never occurs, so nothing can match
+            }
+            if (best == null || posting.size < best.size) {
+                best = posting;
+            }
+        }
+        return best;
+    }
+
+    private void add(Song song) {
+        if (slots.containsKey(song)) {
+            return;
+        }
+        int slot;
+        if (freeSlots.size > 0) {
+            slot = freeSlots.values[--freeSlots.size];
+        } else {
+            slot = slotCount++;
+            if (slot == keys.length) {
+                keys = Arrays.copyOf(keys, slot * 2);
+            }
+        }
+        String key = keyOf(song);
+        keys[slot] = key;
+        slots.put(song, slot);
+        indexTrigrams(slot, key);
+        modCount++;
+        // Also overwrites whatever a song that had this slot before left behind
+        retest(slot);
+    }
+
+    private void remove(Song song) {
+        Integer slot = slots.remove(song);
+        if (slot == null) {
+            return;
+        }
+        stalePostings += trigramCount(keys[slot]);
+        keys[slot] = null;
+        if (activeMatches != null) {
+            activeMatches.clear(slot);
+        }
+        freeSlots.add(slot);
+        modCount++;
+        compactIfNeeded();
+    }
+
+    // Re-tests a slot against the latest query; returns whether its match changed
+    private boolean retest(int slot) {
+        if (activeMatches == null) {
+            return false;
+        }
+        boolean matches = keys[slot].contains(lastQuery);
+        if (matches == activeMatches.get(slot)) {
+            return false;
+        }
+        activeMatches.set(slot, matches);
+        return true;
+    }
+
+    private void indexTrigrams(int slot, String key) {
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            if (key.charAt(i) == FIELD_SEPARATOR || key.charAt(i + 1) == FIELD_SEPARATOR
+                    || key.charAt(i + 2) == FIELD_SEPARATOR) {
+                continue;
+            }
+            postings.computeIfAbsent(trigram(key, i), k -> new IntList()).add(slot);
+            livePostings++;
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (stalePostings > 4096 && stalePostings > livePostings / 2) {
+            postings.clear();
+            livePostings = 0;
+            stalePostings = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (keys[slot] != null) {
+                    indexTrigrams(slot, keys[slot]);
+                }
+            }
+        }
+    }
+
+    private static int trigramCount(String key) {
+        return key == null ? 0 : Math.max(0, key.length() - 2);
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static String keyOf(Song song) {
+        return fold(song.getTitle()) + FIELD_SEPARATOR + fold(song.getArtist()) + FIELD_SEPARATOR + fold(song.getAlbum());
+    }
+
+    /** Lower-cases and strips diacritics, so "Beyoncé" matches "beyonce". */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        boolean ascii = true;
+        for (int i = 0; i < text.length() && ascii; i++) {
+            ascii = text.charAt(i) < 0x80;
+        }
+        String decomposed = ascii ? text : Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
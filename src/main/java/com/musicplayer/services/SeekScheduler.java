@@ -0,0 +1,112 @@
+package com.musicplayer.services;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Feeds seek requests to the player one at a time. Every seek makes the decoder flush and re-sync,
+ * so a drag across the seek bar must not turn into a seek per mouse event: while a seek is in flight
+ * (until the player's position lands near its target) newer requests only replace the pending target,
+ * and the latest one is issued once the backend has caught up. Until then {@link #positionSeconds()}
+ * reports the requested target, so the UI follows the drag instantly.
+ *
+ * <p>Used on the FX thread only.
+ */
+final class SeekScheduler {
+
+    private static final Metrics.Histogram SEEK_LATENCY = Metrics.timer("audio.seek");
+    private static final Metrics.Counter COALESCED = Metrics.counter("audio.seek.coalesced");
+
+    // Never more often than this, even if the backend lands seeks faster
+    private static final long MIN_INTERVAL_NANOS = 50_000_000L;
+    // A seek that hasn't visibly landed by then is assumed done (the position may not move while paused)
+    private static final long LANDING_TIMEOUT_NANOS = 750_000_000L;
+    private static final double LANDING_TOLERANCE_SECONDS = 0.3;
+
+    private final DoubleConsumer backend;
+    private final DoubleSupplier actualSeconds;
+
+    private double pendingSeconds = Double.NaN;
+    private double inFlightSeconds = Double.NaN;
+    private long issuedNanos;
+    private long lastIssuedNanos;
+    private long lastLatencyNanos;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pulse(now);
+        }
+    };
+
+    SeekScheduler(DoubleConsumer backend, DoubleSupplier actualSeconds) {
+        this.backend = backend;
+        this.actualSeconds = actualSeconds;
+    }
+
+    /** Requests a seek; supersedes any request that hasn't been issued yet. */
+    void seek(double seconds) {
+        if (!Double.isNaN(pendingSeconds)) {
+            COALESCED.increment();
+        }
+        pendingSeconds = seconds;
+        long now = System.nanoTime();
+        if (Double.isNaN(inFlightSeconds) && now - lastIssuedNanos >= MIN_INTERVAL_NANOS) {
+            issue(now);
+        }
+        timer.start();
+    }
+
+    /** Where playback is, or is about to be once the outstanding seeks land. */
+    double positionSeconds() {
+        if (!Double.isNaN(pendingSeconds)) {
+            return pendingSeconds;
+        }
+        if (!Double.isNaN(inFlightSeconds)) {
+            return inFlightSeconds;
+        }
+        return actualSeconds.getAsDouble();
+    }
+
+    /** Time from issuing the most recent seek that landed to the player reaching its target. */
+    double getLastLatencyMillis() {
+        return lastLatencyNanos / 1_000_000.0;
+    }
+
+    /** Forgets outstanding seeks, e.g. when another track is loaded. */
+    void reset() {
+        pendingSeconds = Double.NaN;
+        inFlightSeconds = Double.NaN;
+        timer.stop();
+    }
+
+    private void issue(long now) {
+        inFlightSeconds = pendingSeconds;
+        pendingSeconds = Double.NaN;
+        issuedNanos = now;
+        lastIssuedNanos = now;
+        backend.accept(inFlightSeconds);
+    }
+
+    private void pulse(long now) {
+        if (!Double.isNaN(inFlightSeconds)) {
+            long elapsed = now - issuedNanos;
+            // While playing, the position keeps moving on from the target once it has landed
+            double tolerance = LANDING_TOLERANCE_SECONDS + elapsed / 1_000_000_000.0;
+            boolean landed = Math.abs(actualSeconds.getAsDouble() - inFlightSeconds) <= tolerance;
+            if (!landed && elapsed < LANDING_TIMEOUT_NANOS) {
+                return;
+            }
+            lastLatencyNanos = elapsed;
+            SEEK_LATENCY.record(elapsed, landed ? "landed" : "timeout");
+            inFlightSeconds = Double.NaN;
+        }
+        if (Double.isNaN(pendingSeconds)) {
+            timer.stop();
+        } else if (now - lastIssuedNanos >= MIN_INTERVAL_NANOS) {
+            issue(now);
+        }
+    }
+}
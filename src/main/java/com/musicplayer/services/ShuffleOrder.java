@@ -0,0 +1,239 @@
+package com.musicplayer.services;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Shuffled play order over song ids, kept apart from the playlist itself. {@code order[0..generated)}
+ * is the order decided so far (the back-history, the current song at {@code cursor}, and any songs
+ * already picked ahead of it); {@code order[generated..length)} is an unordered bag of songs not yet
+ * picked. Each step forward is one Fisher-Yates draw from the bag, so the order is generated lazily
+ * and every operation is O(1) (removals from the history leave a tombstone, compacted in bulk).
+ */
+final class ShuffleOrder {
+
+    private static final int REMOVED = -1;
+
+    private final Random random;
+    private int[] order;
+    private int length;
+    private int generated;
+    private int cursor = -1;
+    private int tombstones;
+    // slotById[id] is where the id sits in order, or -1
+    private int[] slotById = new int[0];
+
+    ShuffleOrder(int[] ids, Random random) {
+        this.random = random;
+        this.order = Arrays.copyOf(ids, Math.max(16, ids.length));
+        this.length = ids.length;
+        for (int i = 0; i < length; i++) {
+            setSlot(order[i], i);
+        }
+    }
+
+    /** Id of the current song, or -1 before the first step. */
+    int current() {
+        return cursor < 0 ? -1 : order[cursor];
+    }
+
+    boolean contains(int id) {
+        return id < slotById.length && slotById[id] >= 0;
+    }
+
+    /** Makes {@code id} the current song, right after the current one; forward picks go back into the bag. */
+    void jumpTo(int id) {
+        if (!contains(id) || current() == id) {
+            return;
+        }
+        // Songs picked ahead go back into the bag, which can't hold tombstones: fill each hole with
+        // the last element (walking down, everything above the hole is already a live id)
+        for (int slot = generated - 1; slot > cursor; slot--) {
+            if (order[slot] == REMOVED) {
+                int last = --length;
+                if (slot != last) {
+                    place(order[last], slot);
+                }
+                tombstones--;
+            }
+        }
+        generated = cursor + 1;
+        int slot = slotById[id];
+        if (slot < generated) {
+            // Replaying a song from the history: it moves up to the present
+            order[slot] = REMOVED;
+            tombstones++;
+            if (generated < length) {
+                append(order[generated]);
+                place(id, generated);
+            } else {
+                append(id);
+            }
+        } else {
+            swap(slot, generated);
+        }
+        cursor = generated++;
+        compactIfNeeded();
+    }
+
+    /** Moves forward and returns the new current id, or -1 once every song has been played this cycle. */
+    int next() {
+        int slot = peekSlot(1);
+        if (slot < 0) {
+            return -1;
+        }
+        cursor = slot;
+        return order[cursor];
+    }
+
+    /** Moves back through the history and returns the new current id, or -1 at its start. */
+    int previous() {
+        for (int slot = cursor - 1; slot >= 0; slot--) {
+            if (order[slot] != REMOVED) {
+                cursor = slot;
+                return order[slot];
+            }
+        }
+        return -1;
+    }
+
+    /** Id {@code steps} songs ahead without moving (drawing from the bag as needed), or -1. */
+    int peek(int steps) {
+        int slot = peekSlot(steps);
+        return slot < 0 ? -1 : order[slot];
+    }
+
+    /** Id of the song before the current one in the history, or -1. */
+    int peekPrevious() {
+        for (int slot = cursor - 1; slot >= 0; slot--) {
+            if (order[slot] != REMOVED) {
+                return order[slot];
+            }
+        }
+        return -1;
+    }
+
+    /** Starts a new cycle after the last song: everything but the current song goes back into the bag. */
+    void restartCycle() {
+        int currentId = current();
+        compact();
+        generated = 0;
+        cursor = -1;
+        if (currentId >= 0) {
+            swap(slotById[currentId], 0);
+            cursor = 0;
+            generated = 1;
+        }
+    }
+
+    void add(int id) {
+        if (!contains(id)) {
+            append(id);
+        }
+    }
+
+    void remove(int id) {
+        if (!contains(id)) {
+            return;
+        }
+        int slot = slotById[id];
+        slotById[id] = -1;
+        if (slot >= generated) {
+            // Bag order doesn't matter: fill the hole with the last element
+            int last = --length;
+            if (slot != last) {
+                place(order[last], slot);
+            }
+        } else {
+            order[slot] = REMOVED;
+            tombstones++;
+            compactIfNeeded();
+        }
+    }
+
+    private int peekSlot(int steps) {
+        int slot = cursor;
+        while (steps > 0) {
+            slot++;
+            if (slot >= length) {
+                return -1;
+            }
+            if (slot == generated) {
+                // Lazy Fisher-Yates: draw the next song from the bag
+                swap(generated + random.nextInt(length - generated), generated);
+                generated++;
+            }
+            if (order[slot] != REMOVED) {
+                steps--;
+            }
+        }
+        return slot;
+    }
+
+    private void append(int id) {
+        if (length == order.length) {
+            order = Arrays.copyOf(order, length * 2);
+        }
+        place(id, length++);
+    }
+
+    private void place(int id, int slot) {
+        order[slot] = id;
+        setSlot(id, slot);
+    }
+
+    private void swap(int a, int b) {
+        if (a == b) {
+            return;
+        }
+        int idA = order[a];
+        place(order[b], a);
+        place(idA, b);
+    }
+
+    private void setSlot(int id, int slot) {
+        if (id >= slotById.length) {
+            int oldLength = slotById.length;
+            slotById = Arrays.copyOf(slotById, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(slotById, oldLength, slotById.length, -1);
+        }
+        slotById[id] = slot;
+    }
+
+    private void compactIfNeeded() {
+        if (tombstones > 64 && tombstones > length / 2) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        if (tombstones == 0) {
+            return;
+        }
+        int write = 0;
+        int newCursor = -1;
+        int newGenerated = 0;
+        for (int read = 0; read < length; read++) {
+            if (read == generated) {
+                newGenerated = write;
+            }
+            if (order[read] == REMOVED) {
+                if (read == cursor) {
+                    newCursor = write - 1;
+                }
+                continue;
+            }
+            if (read == cursor) {
+                newCursor = write;
+            }
+            place(order[read], write++);
+        }
+        if (generated == length) {
+            newGenerated = write;
+        }
+        length = write;
+        generated = newGenerated;
+        cursor = newCursor;
+        tombstones = 0;
+    }
+}
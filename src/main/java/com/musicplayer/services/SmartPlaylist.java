@@ -0,0 +1,87 @@
+package com.musicplayer.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A named, saved {@link SmartQuery}. Saved playlists are stored one per line as
+ * {@code name<TAB>query} in a UTF-8 text file, so they can also be edited by hand.
+ */
+public final class SmartPlaylist {
+
+    private final String name;
+    private final String queryText;
+    private final SmartQuery query;
+
+    /** Throws IllegalArgumentException if the query doesn't compile. */
+    public SmartPlaylist(String name, String queryText) {
+        this.name = name.replaceAll("[\\t\\r\\n]", " ").trim();
+        this.queryText = queryText.replaceAll("[\\r\\n]", " ").trim();
+        this.query = SmartQuery.parse(this.queryText);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getQueryText() {
+        return queryText;
+    }
+
+    public SmartQuery getQuery() {
+        return query;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /** Reads saved playlists; lines that no longer compile are skipped. */
+    public static List<SmartPlaylist> load(Path file) {
+        List<SmartPlaylist> playlists = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return playlists;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    continue;
+                }
+                try {
+                    playlists.add(new SmartPlaylist(line.substring(0, tab), line.substring(tab + 1)));
+                } catch (IllegalArgumentException ignored) {
+                    // Hand-edited into something invalid: leave it out rather than lose the rest
+                }
+            }
+        } catch (IOException ignored) {
+            // Nothing saved yet, or unreadable: start without smart playlists
+        }
+        return playlists;
+    }
+
+    public static void save(List<SmartPlaylist> playlists, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (SmartPlaylist playlist : playlists) {
+                out.write(playlist.name);
+                out.write('\t');
+                out.write(playlist.queryText);
+                out.newLine();
+            }
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A compiled smart-playlist query. The language:
+ * <pre>
+ *   query   := term | query [AND] query | query OR query | NOT query | ( query )
+ *   term    := favorite
+ *            | played | played-last-&lt;n&gt;d | played-last-&lt;n&gt;h
+ *            | (artist|album|title) : value      exact match, ignoring case and accents
+ *            | (artist|album|title) ~ value      contains
+ *            | duration (&lt;|&lt;=|&gt;|&gt;=|=) seconds    also as m:ss
+ * </pre>
+ * Keywords are case-insensitive, AND binds tighter than OR, and values with spaces are quoted,
+ * e.g. {@code favorite AND artist:"Daft Punk" AND duration<240 AND NOT played-last-7d}.
+ *
+ * <p>Every node evaluates to a {@link BitSet} of song ids over a {@link LibraryIndex}, and can also
+ * test a single song so results can be kept up to date as songs change.
+ */
+public abstract class SmartQuery {
+
+    public static final SmartQuery FAVORITE = new Favorite();
+
+    abstract BitSet evaluate(LibraryIndex index);
+
+    abstract boolean matches(LibraryIndex index, int id);
+
+    public static SmartQuery and(SmartQuery left, SmartQuery right) {
+        return new And(left, right);
+    }
+
+    /** Compiles a query, or throws IllegalArgumentException saying what is wrong and where. */
+    public static SmartQuery parse(String text) {
+        Parser parser = new Parser(text);
+        SmartQuery query = parser.parseOr();
+        parser.skipSpaces();
+        if (parser.pos < text.length()) {
+            throw parser.error("Unexpected '" + text.charAt(parser.pos) + "'");
+        }
+        return query;
+    }
+
+    // --- nodes ---
+
+    private static final class And extends SmartQuery {
+        private final SmartQuery left;
+        private final SmartQuery right;
+
+        And(SmartQuery left, SmartQuery right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index) {
+            BitSet result = left.evaluate(index);
+            result.and(right.evaluate(index));
+            return result;
+        }
+
+        @Override
+        boolean matches(LibraryIndex index, int id) {
+            return left.matches(index, id) && right.matches(index, id);
+        }
+    }
+
+    private static final class Or extends SmartQuery {
+        private final SmartQuery left;
+        private final SmartQuery right;
+
+        Or(SmartQuery left, SmartQuery right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index) {
+            BitSet result = left.evaluate(index);
+            result.or(right.evaluate(index));
+            return result;
+        }
+
+        @Override
+        boolean matches(LibraryIndex index, int id) {
+            return left.matches(index, id) || right.matches(index, id);
+        }
+    }
+
+    private static final class Not extends SmartQuery {
+        private final SmartQuery operand;
+
+        Not(SmartQuery operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index) {
+            BitSet result = index.present();
+            result.andNot(operand.evaluate(index));
+            return result;
+        }
+
+        @Override
+        boolean matches(LibraryIndex index, int id) {
+            return !operand.matches(index, id);
+        }
+    }
+
+    private static final class Favorite extends SmartQuery {
+        @Override
+        BitSet evaluate(LibraryIndex index) {
+            return Song.favoriteIds();
+        }
+
+        @Override
+        boolean matches(LibraryIndex index, int id) {
+            return Song.isFavoriteId(id);
+        }
+    }
+
+    private static final class Text extends SmartQuery {
+        private final int field;
+        private final String folded;
+        private final boolean contains;
+        // Dictionary codes known to match, and how much of the dictionary has been checked
+        private final BitSet codes = new BitSet();
+        private LibraryIndex checkedIndex;
+        private int checkedCodes;
+
+        Text(int field, String value, boolean contains) {
+            this.field = field;
+            this.folded = SearchIndex.fold(value.trim());
+            this.contains = contains;
+        }
+
+        // Dictionaries only grow, so only codes added since the last call need checking
+        private BitSet codes(LibraryIndex index) {
+            if (checkedIndex != index) {
+                checkedIndex = index;
+                checkedCodes = 0;
+                codes.clear();
+            }
+            checkedCodes = index.matchCodes(field, folded, contains, codes, checkedCodes);
+            return codes;
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index) {
+            return index.idsWithCode(field, codes(index));
+        }
+
+        @Override
+        boolean matches(LibraryIndex index, int id) {
+            return codes(index).get(index.codeAt(field, id));
+        }
+    }
+
+    private static final class Duration extends SmartQuery {
+        private final int minSeconds;
+        private final int maxSeconds;
+
+        Duration(int minSeconds, int maxSeconds) {
+            this.minSeconds = minSeconds;
+            this.maxSeconds = maxSeconds;
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index) {
+            return index.idsWithDuration(minSeconds, maxSeconds);
+        }
+
+        @Override
+        boolean matches(LibraryIndex index, int id) {
+            int seconds = index.durationAt(id);
+            return seconds >= minSeconds && seconds <= maxSeconds;
+        }
+    }
+
+    // Relative to the time of evaluation, so the same query moves along with the clock
+    private static final class Played extends SmartQuery {
+        private final long windowMillis;
+
+        Played(long windowMillis) {
+            this.windowMillis = windowMillis;
+        }
+
+        private long since() {
+            return windowMillis < 0 ? 1 : System.currentTimeMillis() - windowMillis;
+        }
+
+        @Override
+        BitSet evaluate(LibraryIndex index) {
+            return index.idsPlayedSince(since());
+        }
+
+        @Override
+        boolean matches(LibraryIndex index, int id) {
+            long lastPlayed = index.lastPlayedAt(id);
+            return lastPlayed != 0 && lastPlayed >= since();
+        }
+    }
+
+    // --- parser ---
+
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        SmartQuery parseOr() {
+            SmartQuery left = parseAnd();
+            while (keyword("OR")) {
+                left = new Or(left, parseAnd());
+            }
+            return left;
+        }
+
+        SmartQuery parseAnd() {
+            SmartQuery left = parseUnary();
+            while (true) {
+                skipSpaces();
+                if (pos >= text.length() || text.charAt(pos) == ')' || peekKeyword("OR")) {
+                    return left;
+                }
+                keyword("AND"); // optional: juxtaposed terms are ANDed
+                left = new And(left, parseUnary());
+            }
+        }
+
+        SmartQuery parseUnary() {
+            if (keyword("NOT")) {
+                return new Not(parseUnary());
+            }
+            skipSpaces();
+            if (pos < text.length() && text.charAt(pos) == '(') {
+                pos++;
+                SmartQuery inner = parseOr();
+                skipSpaces();
+                if (pos >= text.length() || text.charAt(pos) != ')') {
+                    throw error("Missing ')'");
+                }
+                pos++;
+                return inner;
+            }
+            return parseTerm();
+        }
+
+        SmartQuery parseTerm() {
+            int start = pos;
+            String word = identifier().toLowerCase(Locale.ROOT);
+            if (word.isEmpty()) {
+                throw error(pos < text.length() ? "Unexpected '" + text.charAt(pos) + "'" : "Query ends too early");
+            }
+            switch (word) {
+                case "favorite":
+                case "favourite":
+                    return FAVORITE;
+                case "played":
+                    return new Played(-1);
+                case "artist":
+                    return text(LibraryIndex.ARTIST);
+                case "album":
+                    return text(LibraryIndex.ALBUM);
+                case "title":
+                    return text(LibraryIndex.TITLE);
+                case "duration":
+                    return duration();
+                default:
+                    if (word.startsWith("played-last-") && word.length() > "played-last-".length() + 1) {
+                        return playedLast(word, start);
+                    }
+                    pos = start;
+                    throw error("Unknown term '" + word + "'");
+            }
+        }
+
+        private SmartQuery text(int field) {
+            if (pos >= text.length() || (text.charAt(pos) != ':' && text.charAt(pos) != '~')) {
+                throw error("Expected ':' or '~'");
+            }
+            boolean contains = text.charAt(pos++) == '~';
+            return new Text(field, value(), contains);
+        }
+
+        private String value() {
+            if (pos < text.length() && text.charAt(pos) == '"') {
+                StringBuilder value = new StringBuilder();
+                pos++;
+                while (pos < text.length() && text.charAt(pos) != '"') {
+                    char c = text.charAt(pos++);
+                    if (c == '\\' && pos < text.length()) {
+                        c = text.charAt(pos++);
+                    }
+                    value.append(c);
+                }
+                if (pos >= text.length()) {
+                    throw error("Missing closing '\"'");
+                }
+                pos++;
+                return value.toString();
+            }
+            int start = pos;
+            while (pos < text.length() && !Character.isWhitespace(text.charAt(pos)) && text.charAt(pos) != ')') {
+                pos++;
+            }
+            if (pos == start) {
+                throw error("Expected a value");
+            }
+            return text.substring(start, pos);
+        }
+
+        private SmartQuery duration() {
+            String op;
+            if (text.startsWith("<=", pos) || text.startsWith(">=", pos)) {
+                op = text.substring(pos, pos + 2);
+            } else if (pos < text.length() && "<>=".indexOf(text.charAt(pos)) >= 0) {
+                op = text.substring(pos, pos + 1);
+            } else {
+                throw error("Expected <, <=, >, >= or =");
+            }
+            pos += op.length();
+            int seconds = seconds();
+            switch (op) {
+                case "<":
+                    return new Duration(0, seconds - 1);
+                case "<=":
+                    return new Duration(0, seconds);
+                case ">":
+                    return new Duration(seconds + 1, Integer.MAX_VALUE);
+                case ">=":
+                    return new Duration(seconds, Integer.MAX_VALUE);
+                default:
+                    return new Duration(seconds, seconds);
+            }
+        }
+
+        // Plain seconds, or m:ss
+        private int seconds() {
+            int start = pos;
+            while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == ':')) {
+                pos++;
+            }
+            String number = text.substring(start, pos);
+            try {
+                int colon = number.indexOf(':');
+                if (colon < 0) {
+                    return Integer.parseInt(number);
+                }
+                return Integer.parseInt(number.substring(0, colon)) * 60 + Integer.parseInt(number.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("Expected a number of seconds");
+            }
+        }
+
+        private SmartQuery playedLast(String word, int start) {
+            String amount = word.substring("played-last-".length(), word.length() - 1);
+            char unit = word.charAt(word.length() - 1);
+            try {
+                long count = Long.parseLong(amount);
+                if (unit == 'd') {
+                    return new Played(TimeUnit.DAYS.toMillis(count));
+                }
+                if (unit == 'h') {
+                    return new Played(TimeUnit.HOURS.toMillis(count));
+                }
+            } catch (NumberFormatException ignored) {
+                // Reported below
+            }
+            pos = start;
+            throw error("Expected played-last-<n>d or played-last-<n>h");
+        }
+
+        private String identifier() {
+            skipSpaces();
+            int start = pos;
+            while (pos < text.length() && isIdentifierChar(text.charAt(pos))) {
+                pos++;
+            }
+            return text.substring(start, pos);
+        }
+
+        private static boolean isIdentifierChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '-';
+        }
+
+        private boolean peekKeyword(String keyword) {
+            skipSpaces();
+            int end = pos + keyword.length();
+            return text.regionMatches(true, pos, keyword, 0, keyword.length())
+                    && (end >= text.length() || !isIdentifierChar(text.charAt(end)));
+        }
+
+        private boolean keyword(String keyword) {
+            if (peekKeyword(keyword)) {
+                pos += keyword.length();
+                return true;
+            }
+            return false;
+        }
+
+        void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + (pos + 1));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.musicplayer.services;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Locale;
+
+/**
+ * WAV/AIFF/AU through {@code javax.sound.sampled}. Linear PCM (8-32 bit, either byte order) and
+ * 32-bit float are converted here; anything else (e.g. u-law) is first converted to 16-bit PCM by
+ * the sound API.
+ */
+public class WavDecoder implements AudioDecoder {
+
+    private static final int READ_BYTES = 64 * 1024;
+
+    @Override
+    public boolean canDecode(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".wav") || name.endsWith(".aif") || name.endsWith(".aiff") || name.endsWith(".au");
+    }
+
+    @Override
+    public Stream open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()), READ_BYTES);
+        try {
+            AudioInputStream audio = AudioSystem.getAudioInputStream(in);
+            AudioFormat format = audio.getFormat();
+            if (!isDirectlyReadable(format)) {
+                AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+                        format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+                if (!AudioSystem.isConversionSupported(pcm, format)) {
+                    throw new UnsupportedFormatException("Unsupported encoding: " + format.getEncoding());
+                }
+                audio = AudioSystem.getAudioInputStream(pcm, audio);
+            }
+            return new PcmStream(audio);
+        } catch (UnsupportedAudioFileException e) {
+            in.close();
+            throw new UnsupportedFormatException("Not a supported audio file: " + file, e);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static boolean isDirectlyReadable(AudioFormat format) {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        int bits = format.getSampleSizeInBits();
+        if (encoding.equals(AudioFormat.Encoding.PCM_SIGNED)) {
+            return bits == 8 || bits == 16 || bits == 24 || bits == 32;
+        }
+        if (encoding.equals(AudioFormat.Encoding.PCM_UNSIGNED)) {
+            return bits == 8;
+        }
+        return encoding.equals(AudioFormat.Encoding.PCM_FLOAT) && bits == 32;
+    }
+
+    private static final class PcmStream implements Stream {
+        private final AudioInputStream audio;
+        private final AudioFormat format;
+        private final int bytesPerSample;
+        private final boolean bigEndian;
+        private final boolean unsigned;
+        private final boolean floating;
+        private byte[] bytes = new byte[0];
+
+        PcmStream(AudioInputStream audio) {
+            this.audio = audio;
+            this.format = audio.getFormat();
+            this.bytesPerSample = format.getSampleSizeInBits() / 8;
+            this.bigEndian = format.isBigEndian();
+            this.unsigned = format.getEncoding().equals(AudioFormat.Encoding.PCM_UNSIGNED);
+            this.floating = format.getEncoding().equals(AudioFormat.Encoding.PCM_FLOAT);
+        }
+
+        @Override
+        public float getSampleRate() {
+            return format.getSampleRate();
+        }
+
+        @Override
+        public int getChannels() {
+            return format.getChannels();
+        }
+
+        // AudioInputStream only hands out whole frames, so a read never splits a sample
+        @Override
+        public int read(float[] samples) throws IOException {
+            int wanted = samples.length / format.getChannels() * format.getFrameSize();
+            if (wanted == 0) {
+                throw new IllegalArgumentException("Buffer smaller than one frame");
+            }
+            if (bytes.length < wanted) {
+                bytes = new byte[wanted];
+            }
+            int read;
+            do {
+                read = audio.read(bytes, 0, wanted);
+            } while (read == 0);
+            if (read < 0) {
+                return -1;
+            }
+            int count = read / bytesPerSample;
+            for (int i = 0; i < count; i++) {
+                samples[i] = sample(i * bytesPerSample);
+            }
+            return count;
+        }
+
+        private float sample(int offset) {
+            if (bytesPerSample == 1) {
+                int value = bytes[offset];
+                return unsigned ? ((value & 0xFF) - 128) / 128f : value / 128f;
+            }
+            int bits = 0;
+            for (int b = 0; b < bytesPerSample; b++) {
+                int index = bigEndian ? offset + b : offset + bytesPerSample - 1 - b;
+                bits = (bits << 8) | (bytes[index] & 0xFF);
+            }
+            if (floating) {
+                return Float.intBitsToFloat(bits);
+            }
+            int shift = 32 - bytesPerSample * 8;
+            return (bits << shift >> shift) / (float) (1L << (bytesPerSample * 8 - 1));
+        }
+
+        @Override
+        public void close() throws IOException {
+            audio.close();
+        }
+    }
+}
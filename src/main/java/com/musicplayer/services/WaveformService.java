@@ -0,0 +1,269 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+import com.musicplayer.model.Waveform;
+import javafx.application.Platform;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Waveform peaks for the seek bar. Each track is decoded once, in the background, by the first
+ * {@link AudioDecoder} that accepts it; the peaks are streamed into a small per-track file keyed
+ * by the file's path, size and modification time, and read back through a memory map. Tracks are
+ * decoded in parallel, each with a constant amount of memory.
+ *
+ * <p>Peak file layout: magic, version, peak count (ints), seconds per peak (double), then one
+ * {@code min, max} byte pair per peak.
+ *
+ * <p>{@link #getWaveform} is meant to be called on the FX thread; callbacks are delivered there too.
+ */
+public class WaveformService {
+
+    private static final int MAGIC = 0x4D505746; // "MPWF"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+    private static final int PEAKS_PER_SECOND = 200;
+    private static final int SAMPLE_BUFFER = 16 * 1024;
+    private static final int WRITE_BUFFER = 64 * 1024;
+    private static final int MEMORY_CACHE_SIZE = 8;
+    private static final Metrics.Histogram COMPUTE_TIME = Metrics.timer("waveform.compute");
+    private static final System.Logger LOG = System.getLogger(WaveformService.class.getName());
+
+    private final Path cacheDir;
+    private final List<AudioDecoder> decoders = new CopyOnWriteArrayList<>();
+    private final Map<String, List<Consumer<Waveform>>> inFlight = new HashMap<>();
+    // Mapped waveforms hold no heap, but each keeps a file mapping open until it is collected
+    private final Map<String, Waveform> recent = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Waveform> eldest) {
+            return size() > MEMORY_CACHE_SIZE;
+        }
+    };
+    private final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)), runnable -> {
+                Thread thread = new Thread(runnable, "waveform-decoder");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+
+    public WaveformService(Path cacheDir) {
+        this.cacheDir = cacheDir;
+        decoders.add(new WavDecoder());
+    }
+
+    /** Adds support for another format; later decoders are tried first. */
+    public void addDecoder(AudioDecoder decoder) {
+        decoders.add(0, decoder);
+    }
+
+    public boolean canDecode(File file) {
+        return decoderFor(file) != null;
+    }
+
+    /**
+     * Returns the waveform if it is already loaded, otherwise null while it is read or computed in
+     * the background; {@code onLoaded} is then called with it, unless the track can't be decoded.
+     */
+    public Waveform getWaveform(Song song, Consumer<Waveform> onLoaded) {
+        File file = song.getFile();
+        String key = file.getAbsolutePath();
+        Waveform cached = recent.get(key);
+        if (cached != null || !canDecode(file)) {
+            return cached;
+        }
+        schedule(file, key).add(onLoaded);
+        return null;
+    }
+
+    /** Computes peaks for tracks likely to be played soon, so their waveform is on disk when they start. */
+    public void precompute(List<Song> songs) {
+        for (Song song : songs) {
+            File file = song.getFile();
+            String key = file.getAbsolutePath();
+            if (!recent.containsKey(key) && canDecode(file)) {
+                schedule(file, key);
+            }
+        }
+    }
+
+    // Starts loading the track unless it already is; returns the list of callbacks waiting for it
+    private List<Consumer<Waveform>> schedule(File file, String key) {
+        return inFlight.computeIfAbsent(key, k -> {
+            executor.execute(() -> {
+                Waveform waveform = load(file);
+                Platform.runLater(() -> {
+                    List<Consumer<Waveform>> callbacks = inFlight.remove(key);
+                    // Only precomputed: nobody is showing it, so leave the memory cache to tracks that are
+                    if (waveform == null || callbacks.isEmpty()) {
+                        return;
+                    }
+                    recent.put(key, waveform);
+                    for (Consumer<Waveform> callback : callbacks) {
+                        callback.accept(waveform);
+                    }
+                });
+            });
+            return new ArrayList<>();
+        });
+    }
+
+    private AudioDecoder decoderFor(File file) {
+        for (AudioDecoder decoder : decoders) {
+            if (decoder.canDecode(file)) {
+                return decoder;
+            }
+        }
+        return null;
+    }
+
+    // Cached peaks if present, otherwise decodes and caches them; null if the track can't be decoded
+    private Waveform load(File file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            String cacheKey = AlbumArtService.diskKey(file, attrs);
+            Path peaks = cacheDir.resolve(cacheKey + ".peaks");
+            Path failedMarker = cacheDir.resolve(cacheKey + ".none");
+            if (Files.exists(failedMarker)) {
+                return null;
+            }
+            if (!Files.exists(peaks)) {
+                Files.createDirectories(cacheDir);
+                try {
+                    compute(file, peaks);
+                } catch (AudioDecoder.UnsupportedFormatException e) {
+                    // Not decodable despite its extension: don't try again until the file changes
+                    Files.write(failedMarker, new byte[0]);
+                    return null;
+                } catch (IOException | RuntimeException e) {
+                    // Possibly transient (locked file, full disk, a decoder bug): try again next time
+                    LOG.log(System.Logger.Level.WARNING, "Couldn't compute the waveform of " + file, e);
+                    return null;
+                }
+            }
+            try {
+                return map(peaks);
+            } catch (IOException e) {
+                // Truncated or corrupt: drop it so the next request recomputes it
+                Files.deleteIfExists(peaks);
+                return null;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Never throws: the caller must get to clear the in-flight entry, or the track is never tried again
+            return null;
+        }
+    }
+
+    private static Waveform map(Path peaks) throws IOException {
+        try (FileChannel channel = FileChannel.open(peaks, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a peak file: " + peaks);
+            }
+            int count = buffer.getInt(8);
+            double secondsPerPeak = buffer.getDouble(12);
+            if (count < 0 || HEADER_BYTES + 2L * count > buffer.capacity() || !(secondsPerPeak > 0)) {
+                throw new IOException("Truncated or corrupt peak file: " + peaks);
+            }
+            buffer.position(HEADER_BYTES).limit(HEADER_BYTES + 2 * count);
+            return new Waveform(buffer.slice(), secondsPerPeak);
+        }
+    }
+
+    // Streams the decoded audio into min/max pairs, written out a buffer at a time
+    private void compute(File file, Path target) throws IOException {
+        long started = Metrics.start();
+        AudioDecoder decoder = decoderFor(file);
+        if (decoder == null) {
+            throw new AudioDecoder.UnsupportedFormatException("No decoder for " + file);
+        }
+        Path temp = Files.createTempFile(cacheDir, "peaks", ".tmp");
+        try (AudioDecoder.Stream stream = decoder.open(file);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            int channels = stream.getChannels();
+            long framesPerPeak = Math.max(1, Math.round(stream.getSampleRate() / PEAKS_PER_SECOND));
+            float[] samples = new float[Math.max(channels, SAMPLE_BUFFER / channels * channels)];
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+            buffer.position(HEADER_BYTES);
+
+            int count = 0;
+            long frames = 0;
+            float min = 0;
+            float max = 0;
+            int read;
+            while ((read = stream.read(samples)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    float sample = samples[i];
+                    min = Math.min(min, sample);
+                    max = Math.max(max, sample);
+                    if ((i + 1) % channels == 0 && ++frames == framesPerPeak) {
+                        if (buffer.remaining() < 2) {
+                            drain(buffer, out);
+                        }
+                        buffer.put(toByte(min)).put(toByte(max));
+                        count++;
+                        frames = 0;
+                        min = 0;
+                        max = 0;
+                    }
+                }
+            }
+            if (frames > 0) {
+                if (buffer.remaining() < 2) {
+                    drain(buffer, out);
+                }
+                buffer.put(toByte(min)).put(toByte(max));
+                count++;
+            }
+            drain(buffer, out);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putDouble(framesPerPeak / (double) stream.getSampleRate());
+            header.flip();
+            out.write(header, 0);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        COMPUTE_TIME.recordSince(started);
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte toByte(float sample) {
+        return (byte) Math.round(Math.max(-1f, Math.min(1f, sample)) * 127);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
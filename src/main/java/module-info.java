@@ -5,6 +5,9 @@ module com.musicplayer {
     requires javafx.graphics;  // Add this
     requires javafx.base;      // Add this
     requires java.desktop;     // Add this for file operations
+    requires java.xml;         // XSPF playlists
+    requires java.management;  // metrics over JMX
+    requires jdk.jfr;          // metrics as flight recorder events
     requires okhttp3;
     requires org.json;
 
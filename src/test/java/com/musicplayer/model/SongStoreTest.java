@@ -0,0 +1,87 @@
+package com.musicplayer.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SongStoreTest {
+
+    @Test
+    void freshRowIsEmpty() {
+        SongStore store = new SongStore();
+        int id = store.allocate();
+
+        assertEquals("", store.artist(id));
+        assertEquals("", store.album(id));
+        assertNull(store.title(id));
+        assertEquals(-1, store.durationMillis(id));
+        assertFalse(store.isFavorite(id));
+    }
+
+    @Test
+    void songFromAFileNameHasNoAlbum() {
+        Song song = new Song(new File("Some Artist - Some Title.mp3"));
+
+        assertEquals("Some Artist", song.getArtist());
+        assertEquals("Some Title", song.getTitle());
+        assertEquals("", song.getAlbum());
+    }
+
+    @Test
+    void reusedIdForgetsThePreviousSong() {
+        SongStore store = new SongStore();
+        int id = store.allocate();
+        store.setFile(id, new File("/music/old", "old.mp3"));
+        store.setTitle(id, "Old Title");
+        store.setArtist(id, "Old Artist");
+        store.setAlbum(id, "Old Album");
+        store.setDurationMillis(id, 180_000);
+        store.setFavorite(id, true);
+        store.release(id);
+
+        int reused = store.allocate();
+        assertEquals(id, reused);
+        assertEquals("", store.artist(reused));
+        assertEquals("", store.album(reused));
+        assertNull(store.title(reused));
+        assertEquals(-1, store.durationMillis(reused));
+        assertFalse(store.isFavorite(reused));
+
+        store.setFile(reused, new File("new.mp3"));
+        assertEquals(new File("new.mp3"), store.file(reused));
+    }
+
+    @Test
+    void compactionKeepsLiveText() {
+        SongStore store = new SongStore();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int id = store.allocate();
+            store.setFile(id, new File("/music", "song " + i + ".mp3"));
+            store.setTitle(id, "title " + i);
+            ids.add(id);
+        }
+        // Rewrite one title until well past the compaction threshold, and release half the rows
+        String padding = "x".repeat(4096);
+        for (int i = 0; i < 1_000; i++) {
+            store.setTitle(ids.get(0), padding + i);
+        }
+        for (int i = 1; i < 100; i += 2) {
+            store.release(ids.get(i));
+        }
+        for (int i = 0; i < 1_000; i++) {
+            store.setTitle(ids.get(2), padding + i);
+        }
+
+        assertEquals(padding + 999, store.title(ids.get(0)));
+        assertEquals(padding + 999, store.title(ids.get(2)));
+        for (int i = 4; i < 100; i += 2) {
+            assertEquals("title " + i, store.title(ids.get(i)));
+            assertEquals(new File("/music", "song " + i + ".mp3"), store.file(ids.get(i)));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateDetectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Song write(String name, byte[] bytes) throws Exception {
+        Path path = tempDir.resolve(name);
+        Files.write(path, bytes);
+        return new Song(path.toFile());
+    }
+
+    // An ID3v2 tag of the given body size (syncsafe), followed by the payload
+    private static byte[] tagged(int tagBody, byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[] {'I', 'D', '3', 3, 0, 0,
+                (byte) ((tagBody >> 21) & 0x7F), (byte) ((tagBody >> 14) & 0x7F),
+                (byte) ((tagBody >> 7) & 0x7F), (byte) (tagBody & 0x7F)});
+        out.writeBytes(new byte[tagBody]);
+        out.writeBytes(payload);
+        return out.toByteArray();
+    }
+
+    @Test
+    void importFindsARetaggedCopyInTheLibrary() throws Exception {
+        byte[] payload = new byte[300 * 1024];
+        new Random(1).nextBytes(payload);
+        byte[] other = new byte[payload.length];
+        new Random(2).nextBytes(other);
+
+        Song original = write("Artist - Original.mp3", tagged(4096, payload));
+        Song unrelated = write("Artist - Unrelated.mp3", tagged(4096, other));
+        Song tiny = write("Artist - Tiny.mp3", new byte[100]);
+        Song imported = write("Someone - Imported.mp3", payload);
+
+        DuplicateDetector detector = new DuplicateDetector(tempDir.resolve("hashes.bin"));
+        try {
+            List<DuplicateDetector.Group> groups = detector
+                    .findAsync(List.of(original, unrelated, tiny), List.of(imported))
+                    .get(30, TimeUnit.SECONDS);
+
+            assertEquals(1, groups.size());
+            assertEquals(DuplicateDetector.Kind.IDENTICAL_AUDIO, groups.get(0).getKind());
+            assertEquals(List.of(original, imported), groups.get(0).getSongs());
+        } finally {
+            detector.shutdown();
+        }
+    }
+
+    @Test
+    void libraryOnlyDuplicatesAreNotReportedOnImport() throws Exception {
+        byte[] payload = new byte[64 * 1024];
+        new Random(3).nextBytes(payload);
+        Song first = write("A - One.mp3", payload);
+        Song second = write("A - Two.mp3", tagged(128, payload));
+        byte[] fresh = new byte[64 * 1024];
+        new Random(4).nextBytes(fresh);
+        Song imported = write("B - New.mp3", fresh);
+
+        DuplicateDetector detector = new DuplicateDetector(tempDir.resolve("hashes.bin"));
+        try {
+            assertTrue(detector.findAsync(List.of(first, second), List.of(imported))
+                    .get(30, TimeUnit.SECONDS).isEmpty());
+            assertEquals(1, detector.scanAsync(List.of(first, second, imported))
+                    .get(30, TimeUnit.SECONDS).size());
+        } finally {
+            detector.shutdown();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.musicplayer.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LyricsClientTest {
+
+    private static final int THRESHOLD = LyricsClient.FAILURE_THRESHOLD;
+    private static final long BACKOFF = LyricsClient.INITIAL_BACKOFF_MILLIS;
+
+    private StubLyricsServer server;
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private LyricsClient client;
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new StubLyricsServer();
+        client = new LyricsClient(server.baseUrl(), now::get);
+    }
+
+    @AfterEach
+    void stop() {
+        threads.shutdownNow();
+        server.close();
+    }
+
+    @Test
+    void concurrentFetchesOfOneSongShareOneCall() throws Exception {
+        server.setDelayMillis(500);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(threads.submit(() -> client.fetch("Artist", "Title")));
+        }
+
+        for (Future<String> result : results) {
+            assertEquals("first line\nsecond line", result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, server.requests());
+    }
+
+    @Test
+    void notFoundIsAnAnswerNotAFailure() throws Exception {
+        server.respond(404, "{}");
+        for (int i = 0; i < THRESHOLD + 1; i++) {
+            assertNull(client.fetch("Artist", "Title " + i));
+        }
+        assertTrue(client.isAvailable());
+        assertEquals(THRESHOLD + 1, server.requests());
+    }
+
+    @Test
+    void breakerOpensAfterRepeatedFailuresAndRejectsWithoutARequest() throws Exception {
+        server.respond(503, "down");
+        failTimes(THRESHOLD);
+        assertEquals(THRESHOLD, server.requests());
+        assertFalse(client.isAvailable());
+
+        assertThrows(LyricsClient.UnavailableException.class, () -> client.fetch("Artist", "Other"));
+        assertEquals(THRESHOLD, server.requests());
+    }
+
+    @Test
+    void oneTrialAfterTheBackoffAndTheBackoffDoublesWhenItFails() throws Exception {
+        server.respond(503, "down");
+        failTimes(THRESHOLD);
+
+        now.addAndGet(BACKOFF);
+        assertTrue(client.isAvailable());
+        IOException trial = assertThrows(IOException.class, () -> client.fetch("Artist", "Trial"));
+        assertFalse(trial instanceof LyricsClient.UnavailableException);
+        assertEquals(THRESHOLD + 1, server.requests());
+
+        // Still open after the first backoff's length: it doubled
+        now.addAndGet(BACKOFF);
+        assertThrows(LyricsClient.UnavailableException.class, () -> client.fetch("Artist", "Early"));
+        assertEquals(THRESHOLD + 1, server.requests());
+
+        now.addAndGet(BACKOFF);
+        server.respond(200, "{\"lyrics\":\"back\"}");
+        assertEquals("back", client.fetch("Artist", "Second trial"));
+        assertTrue(client.isAvailable());
+        assertEquals("back", client.fetch("Artist", "Closed again"));
+        assertEquals(THRESHOLD + 3, server.requests());
+    }
+
+    @Test
+    void onlyOneTrialIsLetThrough() throws Exception {
+        server.respond(503, "down");
+        failTimes(THRESHOLD);
+        now.addAndGet(BACKOFF);
+
+        server.setDelayMillis(1000);
+        Future<String> trial = threads.submit(() -> client.fetch("Artist", "Trial"));
+        awaitRequests(THRESHOLD + 1);
+
+        assertThrows(LyricsClient.UnavailableException.class, () -> client.fetch("Artist", "Meanwhile"));
+        assertThrows(Exception.class, () -> trial.get(10, TimeUnit.SECONDS));
+        assertEquals(THRESHOLD + 1, server.requests());
+    }
+
+    @Test
+    void cancelledTicketsDoNotCountAgainstTheBreaker() throws Exception {
+        server.setDelayMillis(2000);
+        for (int i = 0; i < THRESHOLD + 1; i++) {
+            LyricsClient.Ticket ticket = new LyricsClient.Ticket();
+            String title = "Cancelled " + i;
+            Future<String> fetch = threads.submit(() -> client.fetch("Artist", title, ticket));
+            awaitRequests(i + 1);
+            ticket.cancel();
+            Exception failure = assertThrows(Exception.class, () -> fetch.get(5, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof IOException, failure.toString());
+        }
+        assertTrue(client.isAvailable());
+
+        server.setDelayMillis(0);
+        assertEquals("first line\nsecond line", client.fetch("Artist", "After"));
+        assertEquals(THRESHOLD + 2, server.requests());
+    }
+
+    @Test
+    void cancellingOneWaiterKeepsTheSharedCallForTheOthers() throws Exception {
+        server.setDelayMillis(1000);
+        Future<String> prefetch = threads.submit(() -> client.fetch("Artist", "Title"));
+        awaitRequests(1);
+        LyricsClient.Ticket ticket = new LyricsClient.Ticket();
+        Future<String> load = threads.submit(() -> client.fetch("Artist", "Title", ticket));
+        Thread.sleep(100);
+        ticket.cancel();
+
+        Exception failure = assertThrows(Exception.class, () -> load.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof InterruptedIOException, failure.toString());
+        assertEquals("first line\nsecond line", prefetch.get(5, TimeUnit.SECONDS));
+        assertEquals(1, server.requests());
+    }
+
+    private void failTimes(int count) {
+        for (int i = 0; i < count; i++) {
+            String title = "Failing " + i;
+            assertThrows(IOException.class, () -> client.fetch("Artist", title));
+        }
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.requests() < count) {
+            assertTrue(System.nanoTime() < deadline, "stub server never saw request " + count);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LyricsServiceTest {
+
+    private static final String ARTIST = "Stub Artist";
+    private static final String TITLE = "Stub Title";
+
+    @TempDir
+    Path tempDir;
+
+    private StubLyricsServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new StubLyricsServer();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    private LyricsService service(Path cacheDir) {
+        return new LyricsService(server.baseUrl(), new LyricsCache(cacheDir), Runnable::run);
+    }
+
+    private Song song() {
+        return new Song(new File(tempDir.toFile(), ARTIST + " - " + TITLE + ".mp3"));
+    }
+
+    private LyricsService.Snapshot load(LyricsService service) throws InterruptedException {
+        return load(service, song());
+    }
+
+    private LyricsService.Snapshot load(LyricsService service, Song song) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        service.loadLyrics(song, done::countDown);
+        assertTrue(done.await(10, TimeUnit.SECONDS), "load didn't complete");
+        LyricsService.Snapshot snapshot = service.getSnapshot();
+        assertTrue(snapshot.isFor(song));
+        return snapshot;
+    }
+
+    @Test
+    void cachedLyricsAreServedWithoutARequest() throws Exception {
+        LyricsService service = service(tempDir.resolve("cache"));
+        service.getCache().putFound(ARTIST, TITLE, "cached line");
+
+        LyricsService.Snapshot snapshot = load(service);
+
+        assertEquals("cached line", snapshot.getTimeline().lineAt(0));
+        assertFalse(snapshot.isSynced());
+        assertEquals(0, server.requests());
+    }
+
+    @Test
+    void fetchedLyricsAreCachedForTheNextPlay() throws Exception {
+        LyricsService service = service(tempDir.resolve("cache"));
+
+        LyricsService.Snapshot first = load(service);
+        LyricsService.Snapshot second = load(service);
+
+        assertEquals("first line", first.getTimeline().lineAt(0));
+        assertEquals("second line", second.getTimeline().lineAt(1));
+        assertEquals(1, server.requests());
+    }
+
+    @Test
+    void notFoundIsCachedAsMissing() throws Exception {
+        server.respond(404, "{\"error\":\"No lyrics found\"}");
+        LyricsService service = service(tempDir.resolve("cache"));
+
+        load(service);
+        LyricsCache.CachedLyrics cached = service.getCache().get(ARTIST, TITLE);
+        load(service);
+
+        assertNotNull(cached);
+        assertFalse(cached.isFound());
+        assertEquals(1, server.requests());
+    }
+
+    @Test
+    void serverErrorsAreNotCached() throws Exception {
+        server.respond(503, "unavailable");
+        LyricsService service = service(tempDir.resolve("cache"));
+
+        load(service);
+        assertFalse(service.getCache().contains(ARTIST, TITLE));
+        load(service);
+
+        assertEquals(2, server.requests());
+    }
+
+    @Test
+    void timelineBelongsToTheLoadedSongInstanceOnly() throws Exception {
+        LyricsService service = service(tempDir.resolve("cache"));
+        Song song = song();
+        load(service, song);
+
+        // Same file, different song: ids are reused after collection, so they can't tell songs apart
+        Song other = song();
+        assertEquals("first line", service.getTimeline(song).lineAt(0));
+        assertTrue(service.getTimeline(other).isEmpty());
+    }
+
+    @Test
+    void localLyricsMatchAnyAudioExtension() {
+        LyricsService service = service(tempDir.resolve("cache"));
+        Song upperCase = new Song(new File(tempDir.toFile(), "Track.MP3"));
+        Song flac = new Song(new File(tempDir.toFile(), "Other.flac"));
+        Song unrelated = new Song(new File(tempDir.toFile(), "Third.mp3"));
+
+        List<Song> affected = service.localLyricsChanged(List.of(upperCase, flac, unrelated),
+                List.of(new File("Track.lrc"), new File("Other.lrc")));
+
+        assertEquals(List.of(upperCase, flac), affected);
+        assertEquals("src/main/resources/lyrics/Track.lrc", upperCase.getLyricsPath());
+    }
+
+    @Test
+    void diskCacheSurvivesARestart() throws Exception {
+        Path cacheDir = tempDir.resolve("cache");
+        load(service(cacheDir));
+        assertEquals(1, server.requests());
+
+        // A new service over the same directory: nothing in memory, so the answer comes from disk
+        LyricsService restarted = service(cacheDir);
+        LyricsService.Snapshot snapshot = load(restarted);
+
+        assertEquals("first line", snapshot.getTimeline().lineAt(0));
+        assertEquals(1, server.requests());
+    }
+}
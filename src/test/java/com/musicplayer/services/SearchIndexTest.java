@@ -0,0 +1,92 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchIndexTest {
+
+    private static Song song(String artist, String title) {
+        return new Song(new File(artist + " - " + title + ".mp3"));
+    }
+
+    @Test
+    void findsTitleArtistAndAlbumIgnoringCaseAndAccents() {
+        Song beyonce = song("Beyoncé", "Halo");
+        Song other = song("Someone", "Else");
+        other.setAlbum("Halo Remixes");
+        SearchIndex index = new SearchIndex(FXCollections.observableArrayList(beyonce, other));
+
+        assertTrue(index.search("beyonce").test(beyonce));
+        assertFalse(index.search("beyonce").test(other));
+        Predicate<Song> halo = index.search("HALO");
+        assertTrue(halo.test(beyonce));
+        assertTrue(halo.test(other));
+    }
+
+    @Test
+    void songsAddedDuringASearchAreTested() {
+        ObservableList<Song> songs = FXCollections.observableArrayList(song("Artist", "Morning"));
+        SearchIndex index = new SearchIndex(songs);
+        Predicate<Song> search = index.search("night");
+
+        Song matching = song("Artist", "Midnight");
+        Song other = song("Artist", "Noon");
+        songs.addAll(matching, other);
+
+        assertTrue(search.test(matching));
+        assertFalse(search.test(other));
+    }
+
+    @Test
+    void aReusedSlotDoesNotInheritTheRemovedSongsMatch() {
+        Song removed = song("Artist", "Midnight");
+        ObservableList<Song> songs = FXCollections.observableArrayList(removed, song("Artist", "Morning"));
+        SearchIndex index = new SearchIndex(songs);
+        Predicate<Song> search = index.search("night");
+        assertTrue(search.test(removed));
+
+        songs.remove(removed);
+        Song replacement = song("Artist", "Noon");
+        songs.add(replacement);
+
+        assertFalse(search.test(removed));
+        assertFalse(search.test(replacement));
+    }
+
+    @Test
+    void updatedSongsAreRetestedAgainstTheActiveSearch() {
+        Song probed = song("Unknown", "track01");
+        Song unchanged = song("Artist", "Morning");
+        SearchIndex index = new SearchIndex(FXCollections.observableArrayList(probed, unchanged));
+        Predicate<Song> search = index.search("night");
+        assertFalse(search.test(probed));
+
+        probed.setTitle("Midnight City");
+        assertTrue(index.update(List.of(probed, unchanged)));
+        assertTrue(search.test(probed));
+
+        assertFalse(index.update(List.of(probed)));
+        probed.setTitle("Daylight");
+        assertTrue(index.update(List.of(probed)));
+        assertFalse(search.test(probed));
+    }
+
+    @Test
+    void refiningAfterAChangeStillSeesNewSongs() {
+        ObservableList<Song> songs = FXCollections.observableArrayList(song("Artist", "Midnight"));
+        SearchIndex index = new SearchIndex(songs);
+        index.search("mid");
+        Song added = song("Artist", "Midnight Sun");
+        songs.add(added);
+
+        assertTrue(index.search("midnight s").test(added));
+    }
+}
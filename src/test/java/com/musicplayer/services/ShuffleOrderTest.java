@@ -0,0 +1,119 @@
+package com.musicplayer.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShuffleOrderTest {
+
+    @Test
+    void jumpAfterRemovingAPeekedSong() {
+        ShuffleOrder order = new ShuffleOrder(new int[] {0, 1, 2, 3, 4, 5}, new Random(1));
+        order.next();
+        int peeked = order.peek(1);
+        order.remove(peeked);
+        int other = otherThan(order, peeked, order.current());
+
+        order.jumpTo(other);
+
+        assertEquals(other, order.current());
+        assertPermutation(order, idsWithout(6, peeked));
+    }
+
+    @Test
+    void randomOperationsKeepAPermutation() {
+        for (int seed = 0; seed < 2_000; seed++) {
+            Random random = new Random(seed);
+            int size = 1 + random.nextInt(12);
+            int[] ids = new int[size];
+            Set<Integer> present = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                ids[i] = i;
+                present.add(i);
+            }
+            int nextId = size;
+            ShuffleOrder order = new ShuffleOrder(ids, new Random(seed));
+
+            for (int step = 0; step < 200; step++) {
+                int op = random.nextInt(7);
+                if (op == 0) {
+                    if (order.next() < 0) {
+                        order.restartCycle();
+                    }
+                } else if (op == 1) {
+                    order.previous();
+                } else if (op == 2) {
+                    order.peek(1 + random.nextInt(4));
+                } else if (op == 3 && !present.isEmpty()) {
+                    int id = pick(present, random);
+                    order.remove(id);
+                    present.remove(id);
+                } else if (op == 4) {
+                    order.add(nextId);
+                    present.add(nextId++);
+                } else if (op == 5 && !present.isEmpty()) {
+                    int id = pick(present, random);
+                    order.jumpTo(id);
+                    assertEquals(id, order.current(), "seed " + seed);
+                } else if (op == 6) {
+                    order.peekPrevious();
+                }
+                for (int id = 0; id < nextId; id++) {
+                    assertEquals(present.contains(id), order.contains(id), "seed " + seed + ", id " + id);
+                }
+            }
+            assertPermutation(order, present);
+        }
+    }
+
+    // Rewinds to the start of the history, then steps through to the end of the cycle: every song
+    // still in the order must come up exactly once
+    private static void assertPermutation(ShuffleOrder order, Set<Integer> expected) {
+        List<Integer> seen = new ArrayList<>();
+        while (order.previous() >= 0) {
+            // rewinding; current() is -1 if the current song was removed, or before the first step
+        }
+        if (order.current() >= 0) {
+            seen.add(order.current());
+        }
+        for (int id = order.next(); id >= 0; id = order.next()) {
+            seen.add(id);
+        }
+        assertEquals(expected.size(), seen.size(), "order " + seen);
+        assertEquals(expected, new HashSet<>(seen), "order " + seen);
+    }
+
+    private static int pick(Set<Integer> ids, Random random) {
+        int skip = random.nextInt(ids.size());
+        for (int id : ids) {
+            if (skip-- == 0) {
+                return id;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    private static int otherThan(ShuffleOrder order, int a, int b) {
+        for (int id = 0; ; id++) {
+            if (id != a && id != b && order.contains(id)) {
+                return id;
+            }
+        }
+    }
+
+    private static Set<Integer> idsWithout(int count, int removed) {
+        Set<Integer> ids = new HashSet<>();
+        for (int id = 0; id < count; id++) {
+            if (id != removed) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
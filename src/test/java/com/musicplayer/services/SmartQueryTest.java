@@ -0,0 +1,207 @@
+package com.musicplayer.services;
+
+import com.musicplayer.model.Song;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmartQueryTest {
+
+    private static final String[] ARTISTS = {"Daft Punk", "Beyoncé", "Björk", "The Beatles", "Unknown Artist"};
+    private static final String[] ALBUMS = {"", "Discovery", "Homogenic", "Abbey Road", "Lemonade"};
+    private static final String[] TITLES = {"One More Time", "Halo", "Jóga", "Something", "Formation", "Intro"};
+
+    @TempDir
+    Path tempDir;
+
+    // Keeps removed songs reachable, so their ids aren't reused mid-test
+    private final List<Song> keep = new ArrayList<>();
+
+    private LibraryIndex index(ObservableList<Song> songs) {
+        return new LibraryIndex(songs, new PlayHistory(tempDir.resolve("play-history.bin")));
+    }
+
+    private Song song(String artist, String title, String album, long durationSeconds) {
+        Song song = new Song(new File(tempDir.toFile(), artist + " - " + title + ".mp3"));
+        song.setAlbum(album);
+        song.setDurationMillis(durationSeconds < 0 ? -1 : durationSeconds * 1000);
+        keep.add(song);
+        return song;
+    }
+
+    private static List<Song> matching(LibraryIndex index, String query, List<Song> songs) {
+        BitSet ids = index.evaluate(SmartQuery.parse(query));
+        List<Song> result = new ArrayList<>();
+        for (Song song : songs) {
+            if (ids.get(song.getId())) {
+                result.add(song);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void parsesTheDocumentedLanguage() {
+        Song daft = song("Daft Punk", "One More Time", "Discovery", 320);
+        Song beyonce = song("Beyoncé", "Halo", "", 261);
+        Song bjork = song("Björk", "Jóga", "Homogenic", -1);
+        ObservableList<Song> songs = FXCollections.observableArrayList(daft, beyonce, bjork);
+        LibraryIndex index = index(songs);
+
+        assertEquals(List.of(daft), matching(index, "artist:\"daft punk\"", songs));
+        assertEquals(List.of(beyonce), matching(index, "artist:beyonce", songs));
+        assertEquals(List.of(bjork), matching(index, "title~JOG", songs));
+        assertEquals(List.of(daft, bjork), matching(index, "album:discovery OR album:homogenic", songs));
+        assertEquals(List.of(beyonce), matching(index, "duration<5:00", songs));
+        assertEquals(List.of(daft), matching(index, "duration>=320", songs));
+        assertEquals(List.of(beyonce), matching(index, "duration=261", songs));
+        // Unknown durations never match a comparison, but do match its negation
+        assertEquals(List.of(bjork), matching(index, "NOT duration>0", songs));
+        assertEquals(List.of(beyonce, bjork), matching(index, "not (artist~daft and duration>300)", songs));
+        // AND binds tighter than OR; juxtaposed terms are ANDed
+        assertEquals(List.of(daft, beyonce), matching(index, "artist~beyon OR artist~daft album:discovery", songs));
+        assertEquals(List.of(daft), matching(index, "(artist~beyon OR artist~daft) AND album:discovery", songs));
+    }
+
+    @Test
+    void playedTermsFollowTheHistory() {
+        Song recent = song("Daft Punk", "One More Time", "Discovery", 320);
+        Song old = song("The Beatles", "Something", "Abbey Road", 182);
+        Song never = song("Björk", "Jóga", "Homogenic", 305);
+        ObservableList<Song> songs = FXCollections.observableArrayList(recent, old, never);
+        LibraryIndex index = index(songs);
+        long now = System.currentTimeMillis();
+        index.recordPlay(recent, now - TimeUnit.HOURS.toMillis(2));
+        index.recordPlay(old, now - TimeUnit.DAYS.toMillis(30));
+
+        assertEquals(List.of(recent, old), matching(index, "played", songs));
+        assertEquals(List.of(recent), matching(index, "played-last-7d", songs));
+        assertEquals(List.of(), matching(index, "played-last-1h", songs));
+        assertEquals(List.of(recent), matching(index, "PLAYED-LAST-3H", songs));
+        assertEquals(List.of(old, never), matching(index, "NOT played-last-7d", songs));
+    }
+
+    @Test
+    void reportsWhatIsWrongAndWhere() {
+        assertError("Unknown term 'genre' at position 1", "genre:rock");
+        assertError("Expected ':' or '~' at position 7", "artist=x");
+        assertError("Missing ')' at position 20", "(favorite OR played");
+        assertError("Missing closing '\"' at position 12", "title:\"Halo");
+        assertError("Expected <, <=, >, >= or = at position 9", "duration!3");
+        assertError("Expected a number of seconds at position 10", "duration<abc");
+        assertError("Expected played-last-<n>d or played-last-<n>h at position 1", "played-last-7w");
+        assertError("Query ends too early at position 13", "favorite AND");
+        assertError("Unexpected ')' at position 9", "favorite)");
+    }
+
+    private static void assertError(String message, String query) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> SmartQuery.parse(query));
+        assertEquals(message, e.getMessage());
+    }
+
+    // evaluate() scans columns into bitsets and matches() tests one song: for every query and song they
+    // must agree, including after songs are added, changed and removed
+    @Test
+    void evaluateAgreesWithMatches() {
+        Random random = new Random(42);
+        ObservableList<Song> songs = FXCollections.observableArrayList();
+        for (int i = 0; i < 200; i++) {
+            songs.add(randomSong(random));
+        }
+        LibraryIndex index = index(songs);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 50; i++) {
+            index.recordPlay(songs.get(random.nextInt(songs.size())), now - random.nextInt(20) * TimeUnit.DAYS.toMillis(1));
+        }
+
+        List<SmartQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            queries.add(SmartQuery.parse(randomQuery(random, 3)));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (SmartQuery query : queries) {
+                assertAgree(index, query, songs);
+            }
+            // Change the library between rounds: queries cache dictionary matches across calls
+            for (int i = 0; i < 20; i++) {
+                songs.add(randomSong(random));
+            }
+            for (int i = 0; i < 10; i++) {
+                songs.remove(random.nextInt(songs.size()));
+            }
+            List<Song> changed = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                Song song = songs.get(random.nextInt(songs.size()));
+                song.setArtist(ARTISTS[random.nextInt(ARTISTS.length)] + (random.nextBoolean() ? "" : " " + round));
+                song.setDurationMillis(random.nextInt(400) * 1000L);
+                song.setFavorite(!song.isFavorite());
+                changed.add(song);
+            }
+            index.update(changed);
+        }
+    }
+
+    private static void assertAgree(LibraryIndex index, SmartQuery query, List<Song> songs) {
+        BitSet evaluated = index.evaluate(query);
+        int matched = 0;
+        for (Song song : songs) {
+            boolean matches = index.matches(query, song);
+            assertEquals(evaluated.get(song.getId()), matches, "song " + song.getId());
+            matched += matches ? 1 : 0;
+        }
+        // Nothing outside the list (removed songs, other songs' favorites) leaks into the result
+        assertEquals(matched, evaluated.cardinality());
+    }
+
+    private Song randomSong(Random random) {
+        Song song = song(ARTISTS[random.nextInt(ARTISTS.length)], TITLES[random.nextInt(TITLES.length)],
+                ALBUMS[random.nextInt(ALBUMS.length)], random.nextInt(10) == 0 ? -1 : random.nextInt(400));
+        song.setFavorite(random.nextInt(4) == 0);
+        return song;
+    }
+
+    private static String randomQuery(Random random, int depth) {
+        int kind = random.nextInt(depth > 0 ? 9 : 5);
+        switch (kind) {
+            case 0:
+                return "favorite";
+            case 1:
+                return random.nextBoolean() ? "played" : "played-last-" + (1 + random.nextInt(14)) + "d";
+            case 2: {
+                String[] fields = {"artist", "album", "title"};
+                String[][] values = {ARTISTS, ALBUMS, TITLES};
+                int field = random.nextInt(3);
+                String value = values[field][random.nextInt(values[field].length)];
+                boolean contains = random.nextBoolean();
+                if (contains && value.length() > 3) {
+                    value = value.substring(1, 1 + random.nextInt(value.length() - 2) + 1).toUpperCase();
+                }
+                return fields[field] + (contains ? "~" : ":") + "\"" + value + "\"";
+            }
+            case 3:
+            case 4: {
+                String[] ops = {"<", "<=", ">", ">=", "="};
+                return "duration" + ops[random.nextInt(ops.length)] + random.nextInt(400);
+            }
+            case 5:
+                return "NOT " + randomQuery(random, depth - 1);
+            case 6:
+                return "(" + randomQuery(random, depth - 1) + " OR " + randomQuery(random, depth - 1) + ")";
+            case 7:
+                return randomQuery(random, depth - 1) + " AND " + randomQuery(random, depth - 1);
+            default:
+                return "(" + randomQuery(random, depth - 1) + " " + randomQuery(random, depth - 1) + ")";
+        }
+    }
+}